@@ -1,12 +1,27 @@
 package com.jetbrains.index;
 
 import com.jetbrains.index.index.IndexSearchService;
+import com.jetbrains.index.metrics.MetricsLogger;
+import com.jetbrains.index.metrics.MetricsMBean;
+import com.jetbrains.index.metrics.MetricsRegistry;
+import com.jetbrains.index.server.QueryServer;
 import com.jetbrains.index.token.factory.CachingTokenFactory;
+import com.jetbrains.index.token.factory.DictionaryTokenFactory;
+import com.jetbrains.index.token.factory.TokenFactory;
+import com.jetbrains.index.token.tokenizer.CodeTokenizer;
+import com.jetbrains.index.token.tokenizer.ParallelFileTokenizer;
+import com.jetbrains.index.token.tokenizer.Tokenizer;
 import com.jetbrains.index.token.tokenizer.WhiteSpaceTokenizer;
+import com.jetbrains.index.watcher.CoalescingListener;
 import com.jetbrains.index.watcher.FileSystemWatcher;
+import com.jetbrains.index.watcher.WatchMode;
+import com.jetbrains.index.watcher.filter.PathFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.JMException;
+import java.io.IOException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
@@ -15,17 +30,64 @@ import java.util.Scanner;
 public class Main {
 
     private static final Logger log = LoggerFactory.getLogger(Main.class);
+    private static final String NO_DELAY_PROPERTY = "sun.net.httpserver.nodelay";
 
     public static void main(String[] args) throws InterruptedException {
         if(args.length == 0) {
-            System.out.println("Usage: java Main -p<file>");
+            System.out.println("Usage: java Main -p<file> [-t<whitespace|code>] [-f<caching|dictionary>] [-w<polling|events|hybrid>] [-q<milliseconds>] [-i<glob>] [-e<glob>] [-g] [-m<seconds>] [-s<port>]");
             return;
         }
 
         List<String> paths = new ArrayList<>();
+        String tokenizerName = "whitespace";
+        String factoryName = "caching";
+        WatchMode watchMode = WatchMode.POLLING;
+        long quietPeriodMs = 200;
+        List<String> includes = new ArrayList<>();
+        List<String> excludes = new ArrayList<>();
+        boolean honorIgnoreFiles = false;
+        long metricsLogSeconds = 60;
+        int serverPort = -1;
         for (String arg : args) {
             if (arg.startsWith("-p")) {
                 paths.add(arg.substring("-p".length()));
+            } else if (arg.startsWith("-t")) {
+                tokenizerName = arg.substring("-t".length());
+            } else if (arg.startsWith("-f")) {
+                factoryName = arg.substring("-f".length());
+            } else if (arg.startsWith("-w")) {
+                watchMode = watchMode(arg.substring("-w".length()));
+                if (watchMode == null) {
+                    System.out.println("Unknown watch mode: " + arg.substring("-w".length()));
+                    return;
+                }
+            } else if (arg.startsWith("-q")) {
+                try {
+                    quietPeriodMs = Long.parseLong(arg.substring("-q".length()));
+                } catch (NumberFormatException e) {
+                    System.out.println("Invalid quiet period: " + arg.substring("-q".length()));
+                    return;
+                }
+            } else if (arg.startsWith("-i")) {
+                includes.add(arg.substring("-i".length()));
+            } else if (arg.startsWith("-e")) {
+                excludes.add(arg.substring("-e".length()));
+            } else if (arg.equals("-g")) {
+                honorIgnoreFiles = true;
+            } else if (arg.startsWith("-m")) {
+                try {
+                    metricsLogSeconds = Long.parseLong(arg.substring("-m".length()));
+                } catch (NumberFormatException e) {
+                    System.out.println("Invalid metrics interval: " + arg.substring("-m".length()));
+                    return;
+                }
+            } else if (arg.startsWith("-s")) {
+                try {
+                    serverPort = Integer.parseInt(arg.substring("-s".length()));
+                } catch (NumberFormatException e) {
+                    System.out.println("Invalid server port: " + arg.substring("-s".length()));
+                    return;
+                }
             }else{
                 System.out.println("Unknown option: " + arg);
                 return;
@@ -33,10 +95,50 @@ public class Main {
         }
 
         try (FileSystemWatcher watcher = new FileSystemWatcher(paths)) {
-            var fact = CachingTokenFactory.getInstance();
-            IndexSearchService svc = new IndexSearchService(new WhiteSpaceTokenizer(fact),fact);
-            watcher.registerListener(svc);
+            var fact = tokenFactory(factoryName);
+            if (fact == null) {
+                System.out.println("Unknown token factory: " + factoryName);
+                return;
+            }
+            var tokenizer = tokenizer(tokenizerName, fact);
+            if (tokenizer == null) {
+                System.out.println("Unknown tokenizer: " + tokenizerName);
+                return;
+            }
+            var metrics = new MetricsRegistry();
+            IndexSearchService svc = new IndexSearchService(new ParallelFileTokenizer(tokenizer),fact, metrics);
+            CoalescingListener coalescer = null;
+            if (quietPeriodMs > 0) {
+                coalescer = new CoalescingListener(svc, Duration.ofMillis(quietPeriodMs));
+                metrics.gauge("coalescer.received", coalescer::receivedCount);
+                metrics.gauge("coalescer.emitted", coalescer::emittedCount);
+                watcher.registerListener(coalescer);
+            } else {
+                watcher.registerListener(svc);
+            }
+            watcher.setMetrics(metrics);
+            try {
+                MetricsMBean.register(metrics, "FileIndexer");
+            } catch (JMException e) {
+                log.warn("Unable to expose metrics over JMX", e);
+            }
+            var metricsLogger = metricsLogSeconds > 0 ? new MetricsLogger(metrics, Duration.ofSeconds(metricsLogSeconds)) : null;
+            watcher.setWatchMode(watchMode);
+            watcher.setPathFilter(new PathFilter(includes, excludes, honorIgnoreFiles));
             watcher.start();
+            QueryServer server = null;
+            if (serverPort >= 0) {
+                //headers and body are written separately, with Nagle's algorithm every response waits for a delayed ACK
+                if (System.getProperty(NO_DELAY_PROPERTY) == null) {
+                    System.setProperty(NO_DELAY_PROPERTY, "true");
+                }
+                try {
+                    server = new QueryServer(svc, metrics, serverPort);
+                    server.start();
+                } catch (IOException e) {
+                    log.warn("Unable to start the query server on port {}", serverPort, e);
+                }
+            }
 
             Scanner scanner = new Scanner(System.in);
             CommandMode currentMode = CommandMode.MENU;
@@ -68,11 +170,45 @@ public class Main {
                     break;
                 }
             } while (scanner.hasNextLine());
+            if (server != null) {
+                server.close();
+            }
+            if (coalescer != null) {
+                coalescer.close();
+            }
             svc.close();
+            if (metricsLogger != null) {
+                metricsLogger.close();
+            }
         }
     }
 
 
+    private static WatchMode watchMode(String name) {
+        return switch (name) {
+            case "polling" -> WatchMode.POLLING;
+            case "events" -> WatchMode.EVENTS;
+            case "hybrid" -> WatchMode.HYBRID;
+            default -> null;
+        };
+    }
+
+    private static TokenFactory tokenFactory(String name) {
+        return switch (name) {
+            case "caching" -> new CachingTokenFactory();
+            case "dictionary" -> new DictionaryTokenFactory();
+            default -> null;
+        };
+    }
+
+    private static Tokenizer tokenizer(String name, TokenFactory factory) {
+        return switch (name) {
+            case "whitespace" -> new WhiteSpaceTokenizer(factory);
+            case "code" -> new CodeTokenizer(factory);
+            default -> null;
+        };
+    }
+
     private static CommandMode nextMode(String line) {
         return switch (line) {
             case "search" -> CommandMode.QUERY;
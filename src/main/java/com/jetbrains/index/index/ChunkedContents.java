@@ -0,0 +1,165 @@
+package com.jetbrains.index.index;
+
+import com.jetbrains.index.token.Token;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Chunk layout of contents indexed in chunks, see {@link FileChunker}.
+ * <p>
+ * The tokens of every chunk are kept once per chunk digest, together with the amount of chunk occurrences
+ * referencing them, so a chunk shared by several contents or versions of a file is tokenized once.
+ * Every content counts in how many of its chunks each token occurs. When a content is derived from its previous
+ * version only the chunks which differ are applied to these counts, a token is added to or removed from the
+ * content when its count leaves or reaches zero.
+ * <p>
+ * Tokens of known chunks can be looked up concurrently, all other methods have to be guarded by the caller.
+ */
+class ChunkedContents {
+    private final Map<Long, Chunk> chunks = new ConcurrentHashMap<>();
+    private final Map<ContentId, Layout> contents = new HashMap<>();
+
+    /**
+     * @return tokens of a chunk referenced by any content, {@code null} if it is unknown
+     */
+    Set<Token> knownTokens(long digest) {
+        var chunk = chunks.get(digest);
+        return chunk == null ? null : chunk.tokens;
+    }
+
+    boolean contains(ContentId content) {
+        return contents.containsKey(content);
+    }
+
+    /**
+     * Store the layout of a content, replacing a previous layout of it
+     *
+     * @return all tokens of the content
+     */
+    Set<Token> put(ContentId content, Chunks layout) {
+        remove(content);
+        Map<Token, Integer> counts = new HashMap<>();
+        for (long digest : layout.digests()) {
+            for (Token token : acquire(digest, layout)) {
+                counts.merge(token, 1, Integer::sum);
+            }
+        }
+        contents.put(content, new Layout(layout.digests(), counts));
+        return counts.keySet();
+    }
+
+    /**
+     * Replace the layout of {@code base} by the layout of {@code content}, only chunks which differ are applied
+     *
+     * @return tokens which {@code content} has and {@code base} had not and the other way around
+     */
+    Delta derive(ContentId base, ContentId content, Chunks layout) {
+        var previous = contents.remove(base);
+        Map<Long, Integer> difference = new HashMap<>();
+        previous.digests.forEach(digest -> difference.merge(digest, -1, Integer::sum));
+        layout.digests().forEach(digest -> difference.merge(digest, 1, Integer::sum));
+        Set<Token> added = new HashSet<>();
+        Set<Token> removed = new HashSet<>();
+        var counts = previous.counts;
+        //additions first, so a token moving between chunks never drops to zero
+        difference.forEach((digest, occurrences) -> {
+            for (int i = 0; i < occurrences; i++) {
+                for (Token token : acquire(digest, layout)) {
+                    if (counts.merge(token, 1, Integer::sum) == 1) {
+                        added.add(token);
+                    }
+                }
+            }
+        });
+        difference.forEach((digest, occurrences) -> {
+            for (int i = 0; i < -occurrences; i++) {
+                for (Token token : release(digest)) {
+                    if (counts.merge(token, -1, (count, decrement) -> count + decrement == 0 ? null : count + decrement) == null) {
+                        removed.add(token);
+                    }
+                }
+            }
+        });
+        if (!base.equals(content)) {
+            remove(content);
+        }
+        contents.put(content, new Layout(layout.digests(), counts));
+        return new Delta(added, removed);
+    }
+
+    void remove(ContentId content) {
+        var layout = contents.remove(content);
+        if (layout != null) {
+            layout.digests.forEach(this::release);
+        }
+    }
+
+    void rename(ContentId from, ContentId to) {
+        var layout = contents.remove(from);
+        if (layout != null) {
+            remove(to);
+            contents.put(to, layout);
+        }
+    }
+
+    /**
+     * @return amount of distinct chunks
+     */
+    int chunkCount() {
+        return chunks.size();
+    }
+
+    private Set<Token> acquire(long digest, Chunks layout) {
+        return chunks.compute(digest, (_, chunk) -> {
+            if (chunk != null) {
+                chunk.references++;
+                return chunk;
+            }
+            var tokens = layout.tokens().get(digest);
+            if (tokens == null) {
+                throw new IllegalStateException("No tokens for chunk " + Long.toHexString(digest));
+            }
+            return new Chunk(tokens);
+        }).tokens;
+    }
+
+    private Set<Token> release(long digest) {
+        var tokens = chunks.get(digest).tokens;
+        chunks.computeIfPresent(digest, (_, chunk) -> --chunk.references == 0 ? null : chunk);
+        return tokens;
+    }
+
+    /**
+     * Chunks of a file as read by {@link FileChunker}
+     *
+     * @param digests digests of all chunks in file order
+     * @param tokens  tokens of every distinct chunk
+     */
+    record Chunks(List<Long> digests, Map<Long, Set<Token>> tokens) {
+    }
+
+    /**
+     * @param added   tokens which have to be added to the container
+     * @param removed tokens which have to be removed from the container
+     */
+    record Delta(Collection<Token> added, Collection<Token> removed) {
+    }
+
+    private record Layout(List<Long> digests, Map<Token, Integer> counts) {
+    }
+
+    private static final class Chunk {
+        private final Set<Token> tokens;
+        private int references = 1;
+
+        Chunk(Set<Token> tokens) {
+            this.tokens = tokens;
+        }
+    }
+}
@@ -1,8 +1,14 @@
 package com.jetbrains.index.index;
 
+import com.jetbrains.index.jfr.IndexEvent;
+
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -18,6 +24,9 @@ import java.util.concurrent.ConcurrentHashMap;
  * The former relation is used for efficiently searching occurrences
  * of a particular Token, while the latter is used for removing Tokens
  * associated with a container
+ * <p>
+ * Ingestion, update and removal of a container are recorded as {@link IndexEvent}s, the largest posting touched
+ * is only tracked while the event is enabled.
  *
  * @param <T> Tokens found in a particular identifiable container
  * @param <C> Container which has a {@link Collection} of tokens
@@ -34,16 +43,27 @@ public class ConcurrentIndex<T, C> {
      * @param container owning container
      */
     public void ingestTokens(Iterable<T> tokens, C container) {
+        var event = new IndexEvent();
+        event.begin();
+        boolean recorded = event.isEnabled();
         HashSet<T> tokenSet = new HashSet<>();
-        tokens.forEach(token -> {
+        int largestPosting = 0;
+        for (T token : tokens) {
             tokenSet.add(token);
-            ingestSingleToken(container, token);
-        });
+            int containers = ingestSingleToken(container, token);
+            if (recorded) {
+                largestPosting = Math.max(largestPosting, containers);
+            }
+        }
         index.put(container, tokenSet);
+        event.commit("ingest", container, tokenSet.size(), largestPosting);
     }
 
-    private void ingestSingleToken(C container, T token) {
-        reverseIndex.compute(token, (k, v) -> {
+    /**
+     * @return amount of containers of the token afterward
+     */
+    private int ingestSingleToken(C container, T token) {
+        return reverseIndex.compute(token, (k, v) -> {
             var present = v;
             if (present == null) {
                 present = reverseMapping(container);
@@ -51,7 +71,7 @@ public class ConcurrentIndex<T, C> {
             }
             present.add(container);
             return present;
-        });
+        }).size();
     }
 
     /**
@@ -77,31 +97,111 @@ public class ConcurrentIndex<T, C> {
      * @param container container
      */
     public Collection<T> remove(C container) {
+        var event = new IndexEvent();
+        event.begin();
         var tokens = index.remove(container);
         if (tokens == null) {
+            event.commit("remove", container, 0, 0);
             return Collections.emptyList();
         }
-        tokens.forEach(token -> {
-            reverseIndex.computeIfPresent(token, (_, v) -> {
+        boolean recorded = event.isEnabled();
+        int largestPosting = 0;
+        for (T token : tokens) {
+            var remaining = reverseIndex.computeIfPresent(token, (_, v) -> {
                 v.remove(container);
                 return v;
             });
-        });
+            if (recorded && remaining != null) {
+                largestPosting = Math.max(largestPosting, remaining.size());
+            }
+        }
+        event.commit("remove", container, tokens.size(), largestPosting);
         return tokens;
     }
 
+    /**
+     * Add tokens to a container without touching its other tokens, a container which is not indexed yet is inserted
+     *
+     * @param tokens    tokens the container does not have yet
+     * @param container owning container
+     */
+    public void addTokens(Iterable<T> tokens, C container) {
+        index.compute(container, (_, existingTokens) -> {
+            var indexTokens = existingTokens == null ? new HashSet<T>() : existingTokens;
+            for (T token : tokens) {
+                if (indexTokens.add(token)) {
+                    ingestSingleToken(container, token);
+                }
+            }
+            return indexTokens;
+        });
+    }
+
+    /**
+     * Remove tokens from a container without touching its other tokens
+     *
+     * @param tokens    tokens the container no longer has
+     * @param container owning container
+     */
+    public void removeTokens(Iterable<T> tokens, C container) {
+        index.computeIfPresent(container, (_, existingTokens) -> {
+            for (T token : tokens) {
+                if (existingTokens.remove(token)) {
+                    reverseIndex.computeIfPresent(token, (_, associatedFiles) -> {
+                        associatedFiles.remove(container);
+                        return associatedFiles.isEmpty() ? null : associatedFiles;
+                    });
+                }
+            }
+            return existingTokens;
+        });
+    }
+
+    /**
+     * Re-key a container in place, its tokens are kept and nothing is tokenized again.
+     * An existing container {@code to} is replaced.
+     *
+     * @param from current container
+     * @param to   new container
+     */
+    public void rename(C from, C to) {
+        if (from.equals(to)) {
+            return;
+        }
+        var tokens = index.remove(from);
+        if (tokens == null) {
+            return;
+        }
+        remove(to);
+        index.put(to, tokens);
+        tokens.forEach(token -> reverseIndex.computeIfPresent(token, (_, v) -> {
+            v.remove(from);
+            v.add(to);
+            return v;
+        }));
+    }
+
     /**
      * Update method which updates the index based on the difference
-     * of existing tokens and newly supplied tokens
+     * of existing tokens and newly supplied tokens. A container which
+     * is not indexed yet is inserted.
      * {@param tokens} new tokens which may overlap with existing ones
      * {@param container} container containing new tokens
      */
     public void update(Iterable<T> tokens, C container) {
-        index.computeIfPresent(container,(_,indexTokens)->{
+        var event = new IndexEvent();
+        event.begin();
+        boolean recorded = event.isEnabled();
+        int[] largestPosting = {0};
+        var updated = index.compute(container,(_,existingTokens)->{
+            var indexTokens = existingTokens == null ? new HashSet<T>() : existingTokens;
             var newTokens = new HashSet<T>();
             for (T newToken : tokens) {
                 newTokens.add(newToken);
-                ingestSingleToken(container, newToken);
+                int containers = ingestSingleToken(container, newToken);
+                if (recorded) {
+                    largestPosting[0] = Math.max(largestPosting[0], containers);
+                }
                 //indexTokens will now contain the difference
                 //between new updated tokens and existing tokens
                 indexTokens.remove(newToken);
@@ -119,10 +219,61 @@ public class ConcurrentIndex<T, C> {
             }
             return newTokens;
         });
+        event.commit("update", container, updated.size(), largestPosting[0]);
     }
 
 
 
+    /**
+     * Replace the tokens of several containers and remove other containers at once.
+     * The differences of all containers are collected first, afterward every affected entry
+     * of the {@code reverseIndex} is modified exactly once, no matter how many containers share the token.
+     *
+     * @param upserts    new tokens of containers which are inserted or updated
+     * @param removals   containers to be removed
+     */
+    public void applyBatch(Map<C, ? extends Iterable<T>> upserts, Collection<C> removals) {
+        Map<T, List<C>> added = new HashMap<>();
+        Map<T, List<C>> removed = new HashMap<>();
+        upserts.forEach((container, tokens) -> {
+            var newTokens = new HashSet<T>();
+            tokens.forEach(newTokens::add);
+            var oldTokens = index.put(container, newTokens);
+            for (T token : newTokens) {
+                if (oldTokens == null || !oldTokens.contains(token)) {
+                    added.computeIfAbsent(token, _ -> new ArrayList<>()).add(container);
+                }
+            }
+            if (oldTokens != null) {
+                for (T token : oldTokens) {
+                    if (!newTokens.contains(token)) {
+                        removed.computeIfAbsent(token, _ -> new ArrayList<>()).add(container);
+                    }
+                }
+            }
+        });
+        for (C container : removals) {
+            var oldTokens = index.remove(container);
+            if (oldTokens != null) {
+                oldTokens.forEach(token -> removed.computeIfAbsent(token, _ -> new ArrayList<>()).add(container));
+            }
+        }
+        added.forEach((token, containers) -> reverseIndex.compute(token, (_, v) -> {
+            var present = v == null ? new HashSet<C>() : v;
+            present.addAll(containers);
+            present.removeAll(removed.getOrDefault(token, List.of()));
+            return present.isEmpty() ? null : present;
+        }));
+        removed.forEach((token, containers) -> {
+            if (!added.containsKey(token)) {
+                reverseIndex.computeIfPresent(token, (_, v) -> {
+                    v.removeAll(containers);
+                    return v.isEmpty() ? null : v;
+                });
+            }
+        });
+    }
+
     /**
      * Helper method for creating a {@link Collection} used
      * in the {@code reverseIndex} to organize the former part of
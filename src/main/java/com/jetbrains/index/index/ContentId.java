@@ -0,0 +1,21 @@
+package com.jetbrains.index.index;
+
+import java.util.HexFormat;
+
+/**
+ * Identity of the content indexed as one container of the {@link ConcurrentIndex}.
+ * Files with the same content digest share one id, a file whose digest is unknown gets an id of its own.
+ *
+ * @param value  hex encoded digest or the path of the file
+ * @param shared true if the id is derived from a digest and can be held by several files
+ */
+record ContentId(String value, boolean shared) {
+
+    /**
+     * @param path   path of the file
+     * @param digest digest of its content, may be {@code null}
+     */
+    static ContentId of(String path, byte[] digest) {
+        return digest == null ? new ContentId(path, false) : new ContentId(HexFormat.of().formatHex(digest), true);
+    }
+}
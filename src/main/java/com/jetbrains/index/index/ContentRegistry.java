@@ -0,0 +1,129 @@
+package com.jetbrains.index.index;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assignment of files to the {@link ContentId} they currently hold.
+ * Every content is indexed once no matter how many files hold it, it has to be indexed when the first file
+ * is assigned to it and removed from the index when the last file is released from it.
+ * Modifications have to be serialized by the caller, the files of a content and the amount of contents
+ * can be read concurrently with them.
+ */
+class ContentRegistry {
+    private final Map<String, ContentId> contentOfPath = new HashMap<>();
+    private final Map<ContentId, Set<String>> pathsOfContent = new ConcurrentHashMap<>();
+
+    /**
+     * Assign the file to the content, releasing the content it held before
+     *
+     * @return whether the content has to be indexed and the previous content if no file holds it anymore
+     */
+    Assignment assign(String path, ContentId content) {
+        var previous = contentOfPath.put(path, content);
+        if (content.equals(previous)) {
+            //a file without digest has to be indexed again on every change
+            return new Assignment(!content.shared(), null);
+        }
+        var released = previous == null ? null : unlink(path, previous);
+        var holders = pathsOfContent.computeIfAbsent(content, _ -> ConcurrentHashMap.newKeySet());
+        holders.add(path);
+        return new Assignment(holders.size() == 1, released);
+    }
+
+    /**
+     * Forget the file
+     *
+     * @return the content it held if no other file holds it, {@code null} otherwise
+     */
+    ContentId release(String path) {
+        var previous = contentOfPath.remove(path);
+        return previous == null ? null : unlink(path, previous);
+    }
+
+    /**
+     * Move the content held by {@code from} to {@code to}, releasing the content {@code to} held before.
+     * A content without digest is bound to the path, so it gets the id of the new path.
+     *
+     * @return the old and new id of the moved content and the released content, {@code null} if {@code from} holds no content
+     */
+    Move move(String from, String to) {
+        var content = contentOfPath.get(from);
+        if (content == null || from.equals(to)) {
+            return null;
+        }
+        var released = release(to);
+        contentOfPath.remove(from);
+        if (content.shared()) {
+            pathsOfContent.get(content).remove(from);
+        } else {
+            pathsOfContent.remove(content);
+        }
+        var moved = content.shared() ? content : ContentId.of(to, null);
+        contentOfPath.put(to, moved);
+        pathsOfContent.computeIfAbsent(moved, _ -> ConcurrentHashMap.newKeySet()).add(to);
+        return new Move(content, moved, released);
+    }
+
+    private ContentId unlink(String path, ContentId content) {
+        var holders = pathsOfContent.get(content);
+        holders.remove(path);
+        if (holders.isEmpty()) {
+            pathsOfContent.remove(content);
+            return content;
+        }
+        return null;
+    }
+
+    /**
+     * @return content held by the file, {@code null} if it holds none
+     */
+    ContentId contentOf(String path) {
+        return contentOfPath.get(path);
+    }
+
+    /**
+     * @return files currently holding the content
+     */
+    Set<String> paths(ContentId content) {
+        var holders = pathsOfContent.get(content);
+        return holders == null ? Set.of() : Collections.unmodifiableSet(holders);
+    }
+
+    /**
+     * @return amount of files currently holding the content
+     */
+    int pathCount(ContentId content) {
+        var holders = pathsOfContent.get(content);
+        return holders == null ? 0 : holders.size();
+    }
+
+    boolean isReferenced(ContentId content) {
+        return pathsOfContent.containsKey(content);
+    }
+
+    /**
+     * @return amount of distinct contents
+     */
+    int contentCount() {
+        return pathsOfContent.size();
+    }
+
+    /**
+     * @param indexRequired true if no file held the content before, so it is not in the index yet
+     * @param released      content which is no longer held by any file and has to be removed from the index
+     */
+    record Assignment(boolean indexRequired, ContentId released) {
+    }
+
+    /**
+     * @param from     id of the content before the move
+     * @param to       id of the content after the move, differs only for contents without digest
+     * @param released content which is no longer held by any file and has to be removed from the index
+     */
+    record Move(ContentId from, ContentId to, ContentId released) {
+    }
+}
@@ -0,0 +1,111 @@
+package com.jetbrains.index.index;
+
+import com.jetbrains.index.watcher.hash.Xxh64;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Splits a file into content-defined chunks with a Gear rolling hash. A cut point is where the hash over the last
+ * 64 bytes has its top bits cleared, so the boundaries depend on the content around them and not on offsets:
+ * inserting a line only changes the chunks around the insertion, all following chunks keep their bytes and digests.
+ * <p>
+ * The chunk ends at the first white space byte following the cut point, white space is a delimiter of every tokenizer,
+ * so tokenizing the chunks one by one yields the same tokens as tokenizing the whole file,
+ * see {@link com.jetbrains.index.token.tokenizer.ParallelFileTokenizer}. Cut points are ignored within the first quarter
+ * of the average size and forced after four times the average size, a chunk without any white space is cut after
+ * sixteen times the average size.
+ */
+class FileChunker {
+    private static final long[] GEAR = gearTable();
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    private final int minSize;
+    private final int maxSize;
+    private final int hardMaxSize;
+    private final int maskShift;
+
+    /**
+     * @param averageSize expected chunk size, a power of two
+     */
+    FileChunker(int averageSize) {
+        if (averageSize < 64 || Integer.bitCount(averageSize) != 1 || averageSize > 1 << 26) {
+            throw new IllegalArgumentException("Average chunk size must be a power of two between 64 and 64 MB");
+        }
+        this.minSize = averageSize / 4;
+        this.maxSize = averageSize * 4;
+        this.hardMaxSize = averageSize * 16;
+        this.maskShift = 64 - Integer.numberOfTrailingZeros(averageSize);
+    }
+
+    /**
+     * Read the file once and pass every chunk to the consumer in file order
+     *
+     * @param file     path to an actual file
+     * @param consumer receives the chunks, the byte array is reused once it returns
+     */
+    void chunk(Path file, ChunkConsumer consumer) throws IOException, InterruptedException {
+        byte[] chunk = new byte[maxSize];
+        int length = 0;
+        long hash = 0;
+        boolean cutPending = false;
+        var buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer.clear()) > 0) {
+                byte[] read = buffer.array();
+                for (int i = 0; i < buffer.position(); i++) {
+                    byte b = read[i];
+                    if (length == chunk.length) {
+                        chunk = Arrays.copyOf(chunk, Math.min(hardMaxSize, chunk.length * 2));
+                    }
+                    chunk[length++] = b;
+                    hash = (hash << 1) + GEAR[b & 0xff];
+                    cutPending |= length >= minSize && (hash >>> maskShift == 0 || length >= maxSize);
+                    if (cutPending && isDelimiter(b) || length >= hardMaxSize) {
+                        emit(consumer, chunk, length);
+                        length = 0;
+                        cutPending = false;
+                    }
+                }
+            }
+        }
+        if (length > 0) {
+            emit(consumer, chunk, length);
+        }
+    }
+
+    private static void emit(ChunkConsumer consumer, byte[] chunk, int length) throws InterruptedException {
+        var hasher = new Xxh64();
+        hasher.update(chunk, 0, length);
+        consumer.accept(hasher.value(), chunk, length);
+    }
+
+    static boolean isDelimiter(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    private static long[] gearTable() {
+        //fixed seed, boundaries have to be the same in every run
+        var random = new SplittableRandom(0x5DEECE66DL);
+        long[] table = new long[256];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = random.nextLong();
+        }
+        return table;
+    }
+
+    @FunctionalInterface
+    interface ChunkConsumer {
+        /**
+         * @param digest XXH64 of the chunk
+         * @param bytes  content of the chunk, only the first {@code length} bytes are valid
+         * @param length size of the chunk
+         */
+        void accept(long digest, byte[] bytes, int length) throws InterruptedException;
+    }
+}
@@ -1,113 +1,878 @@
 package com.jetbrains.index.index;
 
+import com.jetbrains.index.jfr.SearchEvent;
+import com.jetbrains.index.metrics.Histogram;
+import com.jetbrains.index.metrics.MetricsRegistry;
 import com.jetbrains.index.token.Token;
 import com.jetbrains.index.token.factory.SimpleTokenFactory;
 import com.jetbrains.index.token.factory.TokenFactory;
 import com.jetbrains.index.token.tokenizer.Tokenizer;
-import com.jetbrains.index.watcher.FSListener;
+import com.jetbrains.index.watcher.BatchFSListener;
+import com.jetbrains.index.watcher.ChangeType;
+import com.jetbrains.index.watcher.DefaultFileEvent;
 import com.jetbrains.index.watcher.FileChangeEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.concurrent.CompletableFuture;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Encapsulates the full logic of "realtime" updating of the index.
  * Acts as an orchestrator between the {@link ConcurrentIndex}, {@link com.jetbrains.index.watcher.FileSystemWatcher}
  * Also is responsible for acquiring and releasing resources.
+ * <p>
+ * Events are applied by a {@link KeyedSerialExecutor}, so events of one file are applied in order while different
+ * files are indexed in parallel. Once {@code maxPendingEvents} are waiting, {@link #onFileChanged} blocks and with it
+ * the watcher publishing the events. Every event gets the next version number of its file and an event whose file
+ * received a newer event in the meantime is skipped, since the newer one reflects the file content anyway.
+ * CREATE and UPDATE are both applied as an upsert of the current content of the file.
+ * <p>
+ * A batch of events is applied as a single task: the files are tokenized in parallel and all changes are applied
+ * with one {@link ConcurrentIndex#applyBatch} call. Applying batches is deliberately serial: they run one after another
+ * in the order received, since consecutive batches touch the same files and contents shared between files, and the
+ * renames and releases of a batch rely on the assignments of the previous ones. The parallelism of a batch comes from
+ * tokenizing its files concurrently, which is the expensive part.
+ * A batch counts with each of its events against {@code maxPendingEvents}, so batches are throttled like single events,
+ * a batch larger than the bound waits until all pending events are applied. A batch is applied completely once its
+ * files were assigned, an interrupt while tokenizing it is restored afterwards.
+ * A watcher delivers either batches or single events to a listener, so the two never compete for the same file.
+ * <p>
+ * Files are indexed by content: every distinct {@link FileChangeEvent#contentDigest()} is tokenized once and stored
+ * as a single container, a search expands it into all files holding that content. Files of events without a digest
+ * are indexed on their own. All modifications of the index are guarded by one lock, tokenization happens outside
+ * of it. A search result stays a live view: it expands the contents into their files on every access, reading the
+ * files of a content without the lock. The content is read from one of the files when it is first seen,
+ * if that file changes before it is read, the tokens reflect the newer content until the next event of the file.
+ * <p>
+ * A {@link ChangeType#RENAME} within a batch moves the content to the new path without tokenizing it again,
+ * containers of files without digest are re-keyed with {@link ConcurrentIndex#rename}. A single rename event
+ * is applied as creation of the new path followed by deletion of the old one, which reuses the content as well
+ * unless the deletion is applied first.
+ * <p>
+ * Files of at least {@code chunkingThreshold} bytes are read in content-defined chunks, see {@link FileChunker},
+ * and only chunks which are not indexed yet are tokenized. A new version of such a file takes over the container of
+ * the previous version, the tokens are added and removed based on the chunks which differ, see {@link ChunkedContents}.
+ * <p>
+ * A {@link ChangeType#APPEND} only tokenizes the file from {@link FileChangeEvent#appendOffset()} and adds the tokens
+ * to the container of the previous content, which is re-keyed to the new digest. This requires the previous content
+ * to be held by no other file and to end with white space, so no token spans the offset, otherwise the file is
+ * indexed as a whole. An appended content loses its chunk layout, the next other change indexes it from scratch.
+ * Appends neither get a version nor are skipped as stale, since a later append does not cover their tail.
+ * <p>
+ * Every received event, and every received batch as a whole, gets the next sequence number. The watermark
+ * {@link #indexedSequence()} is the highest sequence up to which all events are applied, including skipped and dropped
+ * ones, so their changes are searchable. {@link #awaitIndexed(long, Duration)} and {@link #awaitIndexed(String, Duration)}
+ * block until a sequence or the pending events of a file are applied, giving callers read-your-writes consistency for
+ * changes the service received. Sequences are assigned on receipt rather than by the watcher, a
+ * {@link com.jetbrains.index.watcher.CoalescingListener} in between merges and reorders events.
+ * <p>
+ * Latencies of tokenizing, of applying tokens to the index (ingest) and of whole updates from receiving the event
+ * until it is applied are recorded in the {@link MetricsRegistry} under {@code index.*}, together with the pending
+ * events and skipped stale events. Searches record their latency and the amount of matched contents under
+ * {@code search.*}.
  */
-public class IndexSearchService implements StringSearch, FSListener, AutoCloseable {
+public class IndexSearchService implements StringSearch, BatchFSListener, AutoCloseable {
     private static final Logger log = LoggerFactory.getLogger(IndexSearchService.class);
 
     private static final int THREAD_POOL_SIZE = Runtime.getRuntime().availableProcessors();
+    private static final int DEFAULT_MAX_PENDING_EVENTS = 1024;
+    private static final long DEFAULT_CHUNKING_THRESHOLD = 16L * 1024 * 1024; //16 MB
+    //all batches share a key, applying them is serial on purpose so they are applied in order
+    private static final String BATCH_KEY = "";
     private final ExecutorService executor = Executors.newFixedThreadPool(THREAD_POOL_SIZE);
+    private final KeyedSerialExecutor<String> indexer;
+    private final ConcurrentHashMap<String, Long> versions = new ConcurrentHashMap<>();
+    private final Watermark watermark = new Watermark();
+    //sequence of the latest event of every file with pending events
+    private final ConcurrentHashMap<String, Long> sequences = new ConcurrentHashMap<>();
 
     private final TokenFactory tokenFactory;
     private final Tokenizer tokenizer;
-    private final ConcurrentIndex<Token, String> index;
+    private final ConcurrentIndex<Token, ContentId> index;
+    private final ContentRegistry contents = new ContentRegistry();
+    private final ReentrantLock contentLock = new ReentrantLock();
+    private final ChunkedContents chunked = new ChunkedContents();
+    private final FileChunker chunker;
+    private final long chunkingThreshold;
+    private final Histogram tokenizeLatency;
+    private final Histogram ingestLatency;
+    private final Histogram updateLatency;
+    private final LongAdder skippedEvents;
+    private final Histogram searchLatency;
+    private final Histogram searchResults;
 
 
     public IndexSearchService(Tokenizer tokenizer, TokenFactory tokenFactory) {
+        this(tokenizer, tokenFactory, DEFAULT_MAX_PENDING_EVENTS);
+    }
+
+    /**
+     * @param metrics receives the indexing and search metrics
+     */
+    public IndexSearchService(Tokenizer tokenizer, TokenFactory tokenFactory, MetricsRegistry metrics) {
+        this(tokenizer, tokenFactory, DEFAULT_MAX_PENDING_EVENTS, DEFAULT_CHUNKING_THRESHOLD, metrics);
+    }
+
+    /**
+     * @param maxPendingEvents amount of queued events after which {@link #onFileChanged} blocks
+     */
+    public IndexSearchService(Tokenizer tokenizer, TokenFactory tokenFactory, int maxPendingEvents) {
+        this(tokenizer, tokenFactory, maxPendingEvents, DEFAULT_CHUNKING_THRESHOLD);
+    }
+
+    /**
+     * @param maxPendingEvents  amount of queued events after which {@link #onFileChanged} blocks
+     * @param chunkingThreshold files of at least this size are indexed in chunks of about a sixteenth of it
+     */
+    public IndexSearchService(Tokenizer tokenizer, TokenFactory tokenFactory, int maxPendingEvents, long chunkingThreshold) {
+        this(tokenizer, tokenFactory, maxPendingEvents, chunkingThreshold, new MetricsRegistry());
+    }
+
+    /**
+     * @param maxPendingEvents  amount of queued events after which {@link #onFileChanged} blocks
+     * @param chunkingThreshold files of at least this size are indexed in chunks of about a sixteenth of it
+     * @param metrics           receives the indexing and search metrics
+     */
+    public IndexSearchService(Tokenizer tokenizer, TokenFactory tokenFactory, int maxPendingEvents, long chunkingThreshold,
+                              MetricsRegistry metrics) {
+        this.chunkingThreshold = chunkingThreshold;
+        this.chunker = new FileChunker(Integer.highestOneBit(Math.clamp(chunkingThreshold / 16, 64, 1 << 26)));
         this.tokenizer = tokenizer;
         this.tokenFactory = tokenFactory;
         this.index = new ConcurrentIndex<>();
+        this.indexer = new KeyedSerialExecutor<>(executor, maxPendingEvents);
+        this.tokenizeLatency = metrics.histogram("index.tokenize.micros");
+        this.ingestLatency = metrics.histogram("index.ingest.micros");
+        this.updateLatency = metrics.histogram("index.update.micros");
+        this.skippedEvents = metrics.counter("index.events.skipped");
+        this.searchLatency = metrics.histogram("search.micros");
+        this.searchResults = metrics.histogram("search.results");
+        metrics.gauge("index.events.pending", indexer::pending);
+        metrics.gauge("index.contents", contents::contentCount);
+        metrics.gauge("index.sequence.received", watermark::received);
+        metrics.gauge("index.sequence.indexed", watermark::value);
     }
 
 
     @Override
     public Collection<String> findWord(String word) {
-        var searchToken = tokenFactory.getToken(word);
-        return index.search(searchToken);
+        long start = System.nanoTime();
+        var event = new SearchEvent();
+        event.begin();
+        //Never create tokens while searching, otherwise arbitrary queries would grow the factory
+        var searchToken = tokenFactory.findToken(word);
+        if (searchToken == null) {
+            searchResults.record(0);
+            searchLatency.recordSince(start);
+            event.commit(word, 0);
+            return Collections.emptyList();
+        }
+        var found = index.search(searchToken);
+        searchResults.record(found.size());
+        searchLatency.recordSince(start);
+        event.commit(word, found.size());
+        return filesOf(found);
+    }
+
+    /**
+     * @return a live view like the result of the index, every access sees the files currently holding the contents.
+     * The files are looked up in the registry without the {@code contentLock}, so searches never wait for writers.
+     */
+    private Collection<String> filesOf(Collection<ContentId> found) {
+        return new AbstractCollection<>() {
+            @Override
+            public Iterator<String> iterator() {
+                return found.stream().flatMap(content -> contents.paths(content).stream()).iterator();
+            }
+
+            @Override
+            public int size() {
+                int size = 0;
+                for (var content : found) {
+                    size += contents.pathCount(content);
+                }
+                return size;
+            }
+        };
     }
 
 
     @Override
     public void onFileChanged(FileChangeEvent fileChangeEvent) {
-        switch (fileChangeEvent.change()) {
-            case CREATE -> CompletableFuture.supplyAsync(() -> {
-                addFileToIndex(fileChangeEvent.filePath());
-                return null;
-            }, executor);
-            case DELETE -> CompletableFuture.supplyAsync(() -> {
-                deleteFileFromIndex(fileChangeEvent.filePath());
-                return null;
-            }, executor);
-            case UPDATE -> CompletableFuture.supplyAsync(() -> {
-                updateFileInIndex(fileChangeEvent.filePath());
-                return null;
-            }, executor);
+        if (fileChangeEvent.change() == ChangeType.RENAME) {
+            //events of two files can not be ordered by the executor, the new path takes over the content first
+            var digest = fileChangeEvent.contentDigest();
+            onFileChanged(new DefaultFileEvent(fileChangeEvent.filePath(), ChangeType.CREATE, digest));
+            onFileChanged(new DefaultFileEvent(fileChangeEvent.previousPath(), ChangeType.DELETE, digest));
+            return;
+        }
+        var path = fileChangeEvent.filePath();
+        Runnable action = switch (fileChangeEvent.change()) {
+            case CREATE, UPDATE -> () -> updateFileInIndex(path, ContentId.of(path, fileChangeEvent.contentDigest()));
+            case DELETE -> () -> deleteFileFromIndex(path);
+            case APPEND -> () -> appendToIndex(path, fileChangeEvent.appendOffset(),
+                    ContentId.of(path, fileChangeEvent.contentDigest()));
             case null, default -> throw new IllegalStateException("Unexpected value: " + fileChangeEvent.change());
+        };
+        long received = System.nanoTime();
+        var paths = List.of(path);
+        long sequence = receive(paths);
+        try {
+            if (fileChangeEvent.change() == ChangeType.APPEND) {
+                indexer.submit(path, () -> {
+                    try {
+                        action.run();
+                        updateLatency.recordSince(received);
+                    } finally {
+                        applied(paths, sequence);
+                    }
+                });
+            } else {
+                long version = versions.merge(path, 1L, Long::sum);
+                indexer.submit(path, () -> {
+                    try {
+                        applyIfLatest(path, version, received, action);
+                    } finally {
+                        applied(paths, sequence);
+                    }
+                });
+            }
+        } catch (InterruptedException e) {
+            log.error("Interrupted while waiting to index {}", fileChangeEvent, e);
+            applied(paths, sequence);
+            Thread.currentThread().interrupt();
+        } catch (RejectedExecutionException e) {
+            log.error("Index is closed, dropping {}", fileChangeEvent);
+            applied(paths, sequence);
+        }
+    }
+
+    @Override
+    public void onFilesChanged(List<FileChangeEvent> fileChangeEvents) {
+        Map<String, Integer> eventsPerPath = new HashMap<>();
+        for (var event : fileChangeEvents) {
+            if (event.change() == null) {
+                throw new IllegalStateException("Unexpected value: null");
+            }
+            eventsPerPath.merge(event.filePath(), 1, Integer::sum);
+            if (event.change() == ChangeType.RENAME) {
+                eventsPerPath.merge(event.previousPath(), 1, Integer::sum);
+            }
+        }
+        //only the last event of a file matters, it reflects the current content
+        Map<String, FileChangeEvent> changes = new LinkedHashMap<>();
+        for (var event : fileChangeEvents) {
+            if (event.change() == ChangeType.RENAME
+                    && (eventsPerPath.get(event.filePath()) > 1 || eventsPerPath.get(event.previousPath()) > 1)) {
+                //a rename is only applied as such if neither of its paths has other events in the batch
+                var digest = event.contentDigest();
+                changes.put(event.previousPath(), new DefaultFileEvent(event.previousPath(), ChangeType.DELETE, digest));
+                changes.put(event.filePath(), new DefaultFileEvent(event.filePath(), ChangeType.CREATE, digest));
+            } else if (event.change() == ChangeType.APPEND && changes.containsKey(event.filePath())) {
+                changes.put(event.filePath(), mergeAppend(changes.get(event.filePath()), event));
+            } else {
+                changes.put(event.filePath(), event);
+            }
+        }
+        Map<String, Long> batchVersions = new HashMap<>();
+        changes.forEach((path, event) -> {
+            if (event.change() != ChangeType.APPEND) {
+                batchVersions.put(path, versions.merge(path, 1L, Long::sum));
+            }
+        });
+        long received = System.nanoTime();
+        var paths = eventsPerPath.keySet();
+        long sequence = receive(paths);
+        try {
+            indexer.submit(BATCH_KEY, Math.max(1, fileChangeEvents.size()), () -> {
+                try {
+                    applyBatch(changes, batchVersions);
+                    updateLatency.recordSince(received);
+                } finally {
+                    applied(paths, sequence);
+                }
+            });
+        } catch (InterruptedException e) {
+            log.error("Interrupted while waiting to index a batch of {} events", changes.size(), e);
+            applied(paths, sequence);
+            Thread.currentThread().interrupt();
+        } catch (RejectedExecutionException e) {
+            log.error("Index is closed, dropping a batch of {} events", changes.size());
+            applied(paths, sequence);
+        }
+    }
+
+    /**
+     * @return the change equivalent to {@code previous} followed by {@code append} of the same file
+     */
+    private static FileChangeEvent mergeAppend(FileChangeEvent previous, FileChangeEvent append) {
+        var path = append.filePath();
+        var digest = append.contentDigest();
+        return switch (previous.change()) {
+            case APPEND -> DefaultFileEvent.append(path, previous.appendOffset(), digest);
+            case CREATE -> new DefaultFileEvent(path, ChangeType.CREATE, digest);
+            case null, default -> new DefaultFileEvent(path, ChangeType.UPDATE, digest);
+        };
+    }
+
+    private void applyBatch(Map<String, FileChangeEvent> changes, Map<String, Long> batchVersions) {
+        try {
+            applyBatchChanges(changes, batchVersions);
+        } finally {
+            batchVersions.forEach(versions::remove);
         }
     }
 
-    private void addFileToIndex(String path) {
-        log.trace("Inserting into index {}", path);
-        var tokens = extractTokens(path);
-        index.ingestTokens(tokens,path);
+    private void applyBatchChanges(Map<String, FileChangeEvent> changes, Map<String, Long> batchVersions) {
+        //contents which have to be tokenized and the file they are read from
+        Map<ContentId, String> sources = new LinkedHashMap<>();
+        //previous contents of chunked files, their layout is reused by the new content
+        Map<ContentId, ContentId> bases = new HashMap<>();
+        List<ContentId> removals = new ArrayList<>();
+        List<FileChangeEvent> renames = new ArrayList<>();
+        List<FileChangeEvent> appends = new ArrayList<>();
+        List<FileChangeEvent> updates = new ArrayList<>();
+        List<FileChangeEvent> deletions = new ArrayList<>();
+        changes.forEach((path, event) -> {
+            if (event.change() == ChangeType.APPEND) {
+                appends.add(event);
+            } else if (versions.getOrDefault(path, batchVersions.get(path)).longValue() != batchVersions.get(path)) {
+                log.trace("Skipping stale event of {}", path);
+                skippedEvents.increment();
+            } else {
+                switch (event.change()) {
+                    case RENAME -> renames.add(event);
+                    case DELETE -> deletions.add(event);
+                    case null, default -> updates.add(event);
+                }
+            }
+        });
+        //grown files whose previous content was taken over, only their tails are tokenized
+        Map<ContentId, FileChangeEvent> extensions = new LinkedHashMap<>();
+        contentLock.lock();
+        try {
+            //deletions last, so a content which moved to another file is still held when its old file is released
+            for (var event : renames) {
+                var moved = moveContent(event.previousPath(), event.filePath());
+                var digest = event.contentDigest();
+                if (moved == null || digest != null && !moved.equals(ContentId.of(event.filePath(), digest))) {
+                    updates.add(event);
+                }
+            }
+            for (var event : appends) {
+                var content = ContentId.of(event.filePath(), event.contentDigest());
+                if (takeOverForAppend(event.filePath(), content)) {
+                    extensions.put(content, event);
+                } else {
+                    updates.add(event);
+                }
+            }
+            for (var event : updates) {
+                var path = event.filePath();
+                var content = ContentId.of(path, event.contentDigest());
+                var assignment = contents.assign(path, content);
+                var released = assignment.released();
+                if (released != null && assignment.indexRequired() && chunked.contains(released)) {
+                    bases.put(content, released);
+                } else if (released != null) {
+                    removals.add(released);
+                }
+                if (assignment.indexRequired()) {
+                    sources.putIfAbsent(content, path);
+                }
+            }
+            for (var event : deletions) {
+                var released = contents.release(event.filePath());
+                if (released != null) {
+                    removals.add(released);
+                }
+            }
+        } finally {
+            contentLock.unlock();
+        }
+        Map<ContentId, StructuredTaskScope.Subtask<Extraction>> tokenized = new HashMap<>();
+        Map<ContentId, StructuredTaskScope.Subtask<Set<Token>>> tails = new HashMap<>();
+        boolean interrupted = false;
+        try (var scope = new StructuredTaskScope<>()) {
+            sources.forEach((content, path) -> tokenized.put(content, scope.fork(() -> extract(path))));
+            extensions.forEach((content, event) ->
+                    tails.put(content, scope.fork(() -> extractTail(event.filePath(), event.appendOffset()))));
+            //the registry already holds the batch, leaving now would mark its contents indexed without tokens
+            while (true) {
+                try {
+                    scope.join();
+                    break;
+                } catch (InterruptedException e) {
+                    log.warn("Interrupted while tokenizing a batch, completing it first");
+                    interrupted = true;
+                }
+            }
+        }
+        Map<ContentId, Iterable<Token>> upserts = new HashMap<>();
+        List<ContentId> unreadable = new ArrayList<>();
+        long ingestStart = System.nanoTime();
+        contentLock.lock();
+        try {
+            tokenized.forEach((content, subtask) -> {
+                if (subtask.state() != StructuredTaskScope.Subtask.State.SUCCESS || subtask.get() == null) {
+                    log.error("Unable to tokenize {}", sources.get(content), subtask.exception());
+                    unreadable.add(content);
+                } else if (!contents.isReferenced(content)) {
+                    //a content may have been released and assigned again within the batch
+                    log.trace("Skipping released content of {}", sources.get(content));
+                } else if (subtask.get().chunks() != null) {
+                    store(content, subtask.get(), bases.get(content));
+                } else {
+                    chunked.remove(content);
+                    upserts.put(content, subtask.get().tokens());
+                }
+            });
+            tails.forEach((content, subtask) -> {
+                if (!contents.isReferenced(content)) {
+                    log.trace("Skipping released content of {}", extensions.get(content).filePath());
+                } else if (subtask.state() != StructuredTaskScope.Subtask.State.SUCCESS || subtask.get() == null) {
+                    unreadable.add(content);
+                } else {
+                    index.addTokens(subtask.get(), content);
+                }
+            });
+            //bases which were not taken over by their new content
+            removals.addAll(bases.values());
+            removals.removeIf(contents::isReferenced);
+            log.trace("Applying batch of {} updates and {} removals", upserts.size(), removals.size());
+            index.applyBatch(upserts, removals);
+            removals.forEach(chunked::remove);
+        } finally {
+            contentLock.unlock();
+        }
+        ingestLatency.recordSince(ingestStart);
+        for (var content : unreadable) {
+            //a tail which could not be tokenized on its own is indexed with the whole file
+            var tried = sources.containsKey(content) ? Set.of(sources.get(content)) : Set.<String>of();
+            indexContent(content, new HashSet<>(tried), null);
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Apply the event only if no newer event of the same file was received
+     */
+    private void applyIfLatest(String path, long version, long received, Runnable action) {
+        if (versions.getOrDefault(path, version) != version) {
+            log.trace("Skipping stale event {} of {}", version, path);
+            skippedEvents.increment();
+            return;
+        }
+        action.run();
+        updateLatency.recordSince(received);
+        //keeps the map bounded by the files with pending events
+        versions.remove(path, version);
+    }
+
+    private long receive(Collection<String> paths) {
+        long sequence = watermark.receive();
+        paths.forEach(path -> sequences.merge(path, sequence, Math::max));
+        return sequence;
+    }
+
+    private void applied(Collection<String> paths, long sequence) {
+        paths.forEach(path -> sequences.remove(path, sequence));
+        watermark.apply(sequence);
+    }
+
+    /**
+     * @return sequence of the last received event or batch, {@code 0} if none was received
+     */
+    public long receivedSequence() {
+        return watermark.received();
+    }
+
+    /**
+     * @return highest sequence up to which all received events are applied
+     */
+    public long indexedSequence() {
+        return watermark.value();
+    }
+
+    /**
+     * Wait until all events up to the sequence are applied
+     *
+     * @param sequence e.g. {@link #receivedSequence()} after delivering an event
+     * @return true if the events are applied, false if the timeout elapsed before
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitIndexed(long sequence, Duration timeout) throws InterruptedException {
+        return watermark.await(sequence, timeout);
+    }
+
+    /**
+     * Wait until all events of the file received so far are applied, returns immediately if none are pending.
+     * A change the watcher did not publish yet is not covered.
+     *
+     * @return true if the events are applied, false if the timeout elapsed before
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitIndexed(String path, Duration timeout) throws InterruptedException {
+        var sequence = sequences.get(path);
+        return sequence == null || watermark.await(sequence, timeout);
+    }
+
+    /**
+     * @return amount of events which are queued or being applied
+     */
+    public int pendingEvents() {
+        return indexer.pending();
+    }
+
+    /**
+     * @return amount of distinct contents in the index
+     */
+    public int indexedContents() {
+        return contents.contentCount();
     }
 
     private void deleteFileFromIndex(String filePath) {
         log.trace("Deleting from index {}", filePath);
-        index.remove(filePath);
+        contentLock.lock();
+        try {
+            var released = contents.release(filePath);
+            if (released != null) {
+                removeContent(released);
+            }
+        } finally {
+            contentLock.unlock();
+        }
     }
 
-    private void updateFileInIndex(String filePath) {
+    private void updateFileInIndex(String filePath, ContentId content) {
+        ContentRegistry.Assignment assignment;
+        ContentId base = null;
+        contentLock.lock();
+        try {
+            assignment = contents.assign(filePath, content);
+            var released = assignment.released();
+            if (released != null && assignment.indexRequired() && chunked.contains(released)) {
+                //the new version of a chunked file takes over its layout
+                base = released;
+            } else if (released != null) {
+                removeContent(released);
+            }
+        } finally {
+            contentLock.unlock();
+        }
+        if (!assignment.indexRequired()) {
+            log.trace("Content of {} is already indexed", filePath);
+            return;
+        }
         log.trace("Updating index {}", filePath);
-        var updatedTokens = extractTokens(filePath);
-        index.update(updatedTokens,filePath);
+        indexContent(content, new HashSet<>(), base);
+    }
+
+    private void appendToIndex(String filePath, long offset, ContentId content) {
+        boolean takenOver;
+        contentLock.lock();
+        try {
+            takenOver = takeOverForAppend(filePath, content);
+        } finally {
+            contentLock.unlock();
+        }
+        if (!takenOver) {
+            updateFileInIndex(filePath, content);
+            return;
+        }
+        log.trace("Indexing {} from offset {}", filePath, offset);
+        var tail = extractTail(filePath, offset);
+        if (tail == null) {
+            indexContent(content, new HashSet<>(), null);
+            return;
+        }
+        long ingestStart = System.nanoTime();
+        contentLock.lock();
+        try {
+            if (contents.isReferenced(content)) {
+                index.addTokens(tail, content);
+            }
+        } finally {
+            contentLock.unlock();
+        }
+        ingestLatency.recordSince(ingestStart);
+    }
+
+    /**
+     * Let the appended content of a file take over the container of its previous content,
+     * the caller holds the {@code contentLock}
+     *
+     * @return true if only the tail has to be added, false if the appended content has to be assigned as an update
+     */
+    private boolean takeOverForAppend(String filePath, ContentId content) {
+        var previous = contents.contentOf(filePath);
+        if (previous == null || !previous.equals(content)
+                && (contents.paths(previous).size() > 1 || contents.isReferenced(content))) {
+            //not indexed yet, held by other files as well or the appended content is indexed already
+            return false;
+        }
+        contents.assign(filePath, content);
+        //the tail is not chunked, the layout does not describe the content anymore
+        chunked.remove(previous);
+        if (!previous.equals(content)) {
+            index.rename(previous, content);
+        }
+        return true;
+    }
+
+    /**
+     * Move the content of a renamed file without tokenizing it again, the caller holds the {@code contentLock}
+     *
+     * @return the content now held by {@code to}, {@code null} if {@code from} held no content
+     */
+    private ContentId moveContent(String from, String to) {
+        var move = contents.move(from, to);
+        if (move == null) {
+            return null;
+        }
+        log.trace("Moving content of {} to {}", from, to);
+        if (move.released() != null) {
+            removeContent(move.released());
+        }
+        index.rename(move.from(), move.to());
+        chunked.rename(move.from(), move.to());
+        return move.to();
     }
 
     /**
-     * Method extracts tokens from the given path
+     * Remove a content no file holds anymore, the caller holds the {@code contentLock}
+     */
+    private void removeContent(ContentId content) {
+        index.remove(content);
+        chunked.remove(content);
+    }
+
+    /**
+     * Store an extracted content, the caller holds the {@code contentLock}.
+     * A chunked content takes over the container of {@code base} or of its own previous version, if there is any,
+     * and only the tokens of the chunks which differ are added or removed.
+     *
+     * @param base previous content of the file which no other file holds, may be {@code null}
+     */
+    private void store(ContentId content, Extraction extraction, ContentId base) {
+        if (extraction.chunks() == null) {
+            chunked.remove(content);
+            index.update(extraction.tokens(), content);
+            return;
+        }
+        ContentId previous = null;
+        if (base != null && !contents.isReferenced(base) && chunked.contains(base)) {
+            previous = base;
+        } else if (chunked.contains(content)) {
+            previous = content;
+        }
+        if (previous == null) {
+            index.update(chunked.put(content, extraction.chunks()), content);
+            return;
+        }
+        var delta = chunked.derive(previous, content, extraction.chunks());
+        log.trace("Applying {} added and {} removed tokens of chunked content", delta.added().size(), delta.removed().size());
+        index.rename(previous, content);
+        index.addTokens(delta.added(), content);
+        index.removeTokens(delta.removed(), content);
+    }
+
+    /**
+     * Remove {@code base} unless it was taken over or is held by a file again, the caller holds the {@code contentLock}
+     */
+    private void discardBase(ContentId base) {
+        if (base != null && !contents.isReferenced(base)) {
+            removeContent(base);
+        }
+    }
+
+    /**
+     * Tokenize the content from the first of its files which can be read.
+     * If none can be read, the content is indexed without tokens.
+     *
+     * @param content content to be indexed
+     * @param tried   files which were already tried
+     * @param base    previous content of the file which no other file holds, may be {@code null}
+     */
+    private void indexContent(ContentId content, Set<String> tried, ContentId base) {
+        while (true) {
+            String source;
+            contentLock.lock();
+            try {
+                if (!contents.isReferenced(content)) {
+                    discardBase(base);
+                    return;
+                }
+                source = contents.paths(content).stream().filter(path -> !tried.contains(path)).findFirst().orElse(null);
+                if (source == null) {
+                    store(content, new Extraction(List.of(), null), null);
+                    discardBase(base);
+                    return;
+                }
+            } finally {
+                contentLock.unlock();
+            }
+            tried.add(source);
+            var extraction = extract(source);
+            if (extraction != null) {
+                long ingestStart = System.nanoTime();
+                contentLock.lock();
+                try {
+                    //released while tokenizing
+                    if (contents.isReferenced(content)) {
+                        store(content, extraction, base);
+                    }
+                    discardBase(base);
+                } finally {
+                    contentLock.unlock();
+                }
+                ingestLatency.recordSince(ingestStart);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Method extracts tokens from the given path, files of at least {@code chunkingThreshold} bytes are read in chunks
      * @param path to a file
-     * @return
+     * @return tokens or chunks of the file or {@code null} if it could not be read
      */
-    private Iterable<Token> extractTokens(String path){
+    private Extraction extract(String path){
+        long start = System.nanoTime();
         try {
             Path filePath = Paths.get(path);
             if (!Files.exists(filePath)) {
                 throw new FileNotFoundException(path);
             }
-            try (var reader = new FileReader(path, StandardCharsets.UTF_8)) {
-                return tokenizer.tokenize(reader);
+            if (Files.size(filePath) >= chunkingThreshold) {
+                return new Extraction(null, extractChunks(filePath));
             }
+            return new Extraction(tokenizer.tokenize(filePath), null);
         } catch (IOException e) {
             log.error("Error while reading file {}", path, e);
-            return Collections.emptyList();
+            return null;
+        } catch (InterruptedException e) {
+            log.error("Interrupted while reading file {}", path, e);
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            tokenizeLatency.recordSince(start);
+        }
+    }
+
+    /**
+     * Read the chunks of a file, chunks which are not indexed yet are tokenized in parallel
+     */
+    private ChunkedContents.Chunks extractChunks(Path file) throws IOException, InterruptedException {
+        List<Long> digests = new ArrayList<>();
+        Map<Long, Set<Token>> chunkTokens = new ConcurrentHashMap<>();
+        //bounds the amount of chunks held in memory until they are tokenized
+        var permits = new Semaphore(THREAD_POOL_SIZE);
+        int[] tokenizedChunks = {0};
+        try (var scope = new StructuredTaskScope.ShutdownOnFailure()) {
+            chunker.chunk(file, (digest, bytes, length) -> {
+                digests.add(digest);
+                if (chunkTokens.containsKey(digest)) {
+                    return;
+                }
+                var known = chunked.knownTokens(digest);
+                if (known != null) {
+                    chunkTokens.put(digest, known);
+                    return;
+                }
+                var chunk = Arrays.copyOf(bytes, length);
+                //a placeholder, repeated chunks of the file are tokenized once
+                chunkTokens.put(digest, Set.of());
+                tokenizedChunks[0]++;
+                permits.acquire();
+                scope.fork(() -> {
+                    try {
+                        chunkTokens.put(digest, tokenizeChunk(chunk));
+                        return null;
+                    } finally {
+                        permits.release();
+                    }
+                });
+            });
+            scope.join().throwIfFailed(e -> e instanceof IOException io ? io : new IOException(e));
+        }
+        log.trace("Read {} chunks of {}, {} were tokenized", digests.size(), file, tokenizedChunks[0]);
+        return new ChunkedContents.Chunks(digests, chunkTokens);
+    }
+
+    /**
+     * Tokenize a file from the given offset
+     *
+     * @return tokens of the tail, {@code null} if a token may span the offset or the file could not be read
+     */
+    private Set<Token> extractTail(String path, long offset) {
+        long start = System.nanoTime();
+        try (var channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+            if (offset > 0) {
+                var previousByte = ByteBuffer.allocate(1);
+                if (channel.read(previousByte, offset - 1) != 1 || !FileChunker.isDelimiter(previousByte.get(0))) {
+                    log.trace("Content of {} does not end with white space at {}", path, offset);
+                    return null;
+                }
+            }
+            Set<Token> tokens = new HashSet<>();
+            var reader = new InputStreamReader(Channels.newInputStream(channel.position(offset)), StandardCharsets.UTF_8);
+            tokenizer.tokenize(reader).forEach(tokens::add);
+            return tokens;
+        } catch (IOException e) {
+            log.error("Error while reading file {} from {}", path, offset, e);
+            return null;
+        } finally {
+            tokenizeLatency.recordSince(start);
         }
     }
 
+    private Set<Token> tokenizeChunk(byte[] chunk) {
+        Set<Token> tokens = new HashSet<>();
+        tokenizer.tokenize(new InputStreamReader(new ByteArrayInputStream(chunk), StandardCharsets.UTF_8)).forEach(tokens::add);
+        return tokens;
+    }
+
+    /**
+     * Content read from a file, either all of its tokens or its chunks
+     */
+    private record Extraction(Iterable<Token> tokens, ChunkedContents.Chunks chunks) {
+    }
+
     @Override
     public void close() {
         executor.shutdown();
@@ -0,0 +1,137 @@
+package com.jetbrains.index.index;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs tasks on a shared {@link Executor} so that tasks submitted with the same key run one after another
+ * in submission order, while tasks of different keys run in parallel.
+ * <p>
+ * Every key with pending tasks owns a queue whose head is the running task. The first task of an idle key
+ * schedules a drain of its queue on the executor, later tasks are only appended to the queue. A key without
+ * pending tasks holds no memory.
+ * <p>
+ * The amount of queued and running tasks is bounded by {@code capacity}. Once reached, {@link #submit} blocks
+ * the caller until a task completes, which slows down the producer instead of growing the queues. A task standing for
+ * several units of work, e.g. a batch of events, can take a permit per unit with {@link #submit(Object, int, Runnable)}.
+ *
+ * @param <K> key, tasks of equal keys are serialized
+ */
+public class KeyedSerialExecutor<K> {
+    private static final Logger log = LoggerFactory.getLogger(KeyedSerialExecutor.class);
+
+    private final Executor executor;
+    private final Semaphore permits;
+    private final int capacity;
+    private final ConcurrentHashMap<K, Deque<Queued>> queues = new ConcurrentHashMap<>();
+
+    public KeyedSerialExecutor(Executor executor, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.executor = executor;
+        this.capacity = capacity;
+        this.permits = new Semaphore(capacity);
+    }
+
+    /**
+     * Queue the task after all pending tasks of the key, waiting while the executor is at capacity
+     *
+     * @param key  tasks of the same key never run concurrently
+     * @param task task to run
+     * @throws InterruptedException       if interrupted while waiting for capacity
+     * @throws RejectedExecutionException if the underlying executor was shut down
+     */
+    public void submit(K key, Runnable task) throws InterruptedException {
+        submit(key, 1, task);
+    }
+
+    /**
+     * Queue a task which counts as {@code weight} tasks against the capacity, waiting until that many are free.
+     * A weight above the capacity is capped, such a task waits until the executor is idle.
+     *
+     * @param key    tasks of the same key never run concurrently
+     * @param weight units of work of the task, at least {@code 1}
+     * @param task   task to run
+     * @throws InterruptedException       if interrupted while waiting for capacity
+     * @throws RejectedExecutionException if the underlying executor was shut down
+     */
+    public void submit(K key, int weight, Runnable task) throws InterruptedException {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("Weight must be positive");
+        }
+        var queued = new Queued(task, Math.min(weight, capacity));
+        permits.acquire(queued.permits());
+        boolean[] idle = {false};
+        queues.compute(key, (_, queue) -> {
+            var tasks = queue;
+            if (tasks == null) {
+                tasks = new ArrayDeque<>();
+                idle[0] = true;
+            }
+            tasks.addLast(queued);
+            return tasks;
+        });
+        if (idle[0]) {
+            try {
+                executor.execute(() -> drain(key, queued));
+            } catch (RejectedExecutionException e) {
+                var dropped = queues.remove(key);
+                permits.release(dropped == null ? queued.permits() : dropped.stream().mapToInt(Queued::permits).sum());
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Run the tasks of the key until its queue is empty. The finished task is removed only after
+     * it ran, so a concurrent {@link #submit} always sees a non-empty queue while a drain is active.
+     * The queue is only read within {@code compute} of the map, the first task is handed over by the submitter.
+     */
+    private void drain(K key, Queued first) {
+        var task = first;
+        while (task != null) {
+            try {
+                task.task().run();
+            } catch (RuntimeException e) {
+                log.error("Task for {} failed", key, e);
+            } finally {
+                permits.release(task.permits());
+            }
+            Queued[] next = {null};
+            queues.compute(key, (_, queue) -> {
+                queue.pollFirst();
+                next[0] = queue.peekFirst();
+                return next[0] == null ? null : queue;
+            });
+            task = next[0];
+        }
+    }
+
+    /**
+     * @return amount of tasks which are queued or running, weighted tasks count with their weight
+     */
+    public int pending() {
+        return capacity - permits.availablePermits();
+    }
+
+    /**
+     * @return true if the caller of {@link #submit} would have to wait
+     */
+    public boolean isSaturated() {
+        return permits.availablePermits() == 0;
+    }
+
+    /**
+     * @param permits permits held from submission until the task completed
+     */
+    private record Queued(Runnable task, int permits) {
+    }
+}
@@ -0,0 +1,88 @@
+package com.jetbrains.index.index;
+
+import java.time.Duration;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands out increasing sequence numbers for received work and tracks the highest sequence up to which all work
+ * was applied, even though work completes out of order. Waiting for a sequence parks the caller until the watermark
+ * reaches it instead of polling.
+ */
+class Watermark {
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition advanced = lock.newCondition();
+    private final NavigableSet<Long> pending = new TreeSet<>();
+    private long received;
+
+    /**
+     * @return sequence of the received work, starting at {@code 1}
+     */
+    long receive() {
+        lock.lock();
+        try {
+            pending.add(++received);
+            return received;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Mark the work of the sequence as applied, also if it failed or was dropped, so waiters are never stuck on it
+     */
+    void apply(long sequence) {
+        lock.lock();
+        try {
+            boolean lowest = !pending.isEmpty() && pending.first() == sequence;
+            if (pending.remove(sequence) && lowest) {
+                advanced.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long received() {
+        lock.lock();
+        try {
+            return received;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return highest sequence such that all work up to and including it was applied
+     */
+    long value() {
+        lock.lock();
+        try {
+            return pending.isEmpty() ? received : pending.first() - 1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return true once the watermark reached the sequence, false if the timeout elapsed before
+     * @throws InterruptedException if interrupted while waiting
+     */
+    boolean await(long sequence, Duration timeout) throws InterruptedException {
+        long remaining = timeout.toNanos();
+        lock.lock();
+        try {
+            while (value() < sequence) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = advanced.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.jetbrains.index.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Modification of a {@link com.jetbrains.index.index.ConcurrentIndex}
+ */
+@Name("com.jetbrains.index.IndexModification")
+@Label("Index Modification")
+@Category({"File Indexer", "Index"})
+@Description("Ingestion, update or removal of the tokens of a container")
+public final class IndexEvent extends Event {
+    @Label("Operation")
+    private String operation;
+
+    @Label("Container")
+    private String container;
+
+    @Label("Tokens")
+    @Description("Tokens passed to or removed by the operation")
+    private int tokens;
+
+    @Label("Largest Posting")
+    @Description("Most containers a single token touched by the operation has afterward")
+    private int largestPosting;
+
+    public void commit(String operation, Object container, int tokens, int largestPosting) {
+        end();
+        if (shouldCommit()) {
+            this.operation = operation;
+            this.container = String.valueOf(container);
+            this.tokens = tokens;
+            this.largestPosting = largestPosting;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.jetbrains.index.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.io.File;
+
+/**
+ * Inspection of a single file for changes, including the wait for an inspection permit
+ */
+@Name("com.jetbrains.index.Inspection")
+@Label("File Inspection")
+@Category({"File Indexer", "Watcher"})
+@Description("Check of a file for changes, its content is hashed unless its metadata is unchanged")
+public final class InspectionEvent extends Event {
+    @Label("Path")
+    private String path;
+
+    @Label("Size")
+    @DataAmount
+    private long size;
+
+    @Label("Change")
+    @Description("Published change, none if the file did not change")
+    private String change;
+
+    /**
+     * @param change name of the published change, {@code null} if none was published
+     */
+    public void commit(File file, String change) {
+        end();
+        if (shouldCommit()) {
+            this.path = file.getPath();
+            this.size = file.length();
+            this.change = change == null ? "NONE" : change;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.jetbrains.index.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * One scan cycle of a {@link com.jetbrains.index.watcher.task.WatcherTask}
+ */
+@Name("com.jetbrains.index.Scan")
+@Label("Scan")
+@Category({"File Indexer", "Watcher"})
+@Description("Walk of the watched paths or handling of a batch of file system notifications")
+public final class ScanEvent extends Event {
+    @Label("Watch Mode")
+    private String mode;
+
+    @Label("Paths")
+    @Description("Listed files or reported changes handled by the scan")
+    private int paths;
+
+    @Label("Deletions")
+    private int deletions;
+
+    @Label("Tracked Files")
+    private int trackedFiles;
+
+    public void commit(String mode, int paths, int deletions, int trackedFiles) {
+        end();
+        if (shouldCommit()) {
+            this.mode = mode;
+            this.paths = paths;
+            this.deletions = deletions;
+            this.trackedFiles = trackedFiles;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.jetbrains.index.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Lookup of a word by {@link com.jetbrains.index.index.StringSearch#findWord}
+ */
+@Name("com.jetbrains.index.Search")
+@Label("Search")
+@Category({"File Indexer", "Search"})
+@Description("Lookup of a word in the index")
+public final class SearchEvent extends Event {
+    @Label("Word")
+    private String word;
+
+    @Label("Results")
+    @Description("Contents holding the word, every content may be held by several files")
+    private int results;
+
+    public void commit(String word, int results) {
+        end();
+        if (shouldCommit()) {
+            this.word = word;
+            this.results = results;
+            commit();
+        }
+    }
+}
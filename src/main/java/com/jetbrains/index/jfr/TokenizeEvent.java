@@ -0,0 +1,35 @@
+package com.jetbrains.index.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Tokenization of one content by a {@link com.jetbrains.index.token.tokenizer.Tokenizer}
+ */
+@Name("com.jetbrains.index.Tokenize")
+@Label("Tokenize")
+@Category({"File Indexer", "Index"})
+@Description("Split of a content into tokens, a file read in ranges or chunks records one event per range or chunk")
+public final class TokenizeEvent extends Event {
+    @Label("Tokenizer")
+    private String tokenizer;
+
+    @Label("Characters")
+    private long characters;
+
+    @Label("Tokens")
+    private int tokens;
+
+    public void commit(String tokenizer, long characters, int tokens) {
+        end();
+        if (shouldCommit()) {
+            this.tokenizer = tokenizer;
+            this.characters = characters;
+            this.tokens = tokens;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.jetbrains.index.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Logs a {@link MetricsRegistry#snapshot()} on a fixed interval from a single daemon thread,
+ * a last snapshot is logged when closed.
+ */
+public class MetricsLogger implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(MetricsLogger.class);
+
+    private final MetricsRegistry registry;
+    private final ScheduledExecutorService scheduler;
+
+    public MetricsLogger(MetricsRegistry registry, Duration interval) {
+        if (interval.isNegative() || interval.isZero()) {
+            throw new IllegalArgumentException("Interval must be positive");
+        }
+        this.registry = registry;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "Metrics logger");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::logSnapshot, interval.toNanos(), interval.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private void logSnapshot() {
+        try {
+            log.info("Metrics: {}", format(registry.snapshot()));
+        } catch (RuntimeException e) {
+            //a failing gauge must not cancel the schedule
+            log.error("Unable to take a metrics snapshot", e);
+        }
+    }
+
+    static String format(Map<String, Number> snapshot) {
+        return snapshot.entrySet().stream()
+                .map(entry -> entry.getKey() + "=" + (entry.getValue() instanceof Double value
+                        ? String.format(Locale.ROOT, "%.1f", value) : entry.getValue()))
+                .collect(Collectors.joining(", ", "{", "}"));
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        logSnapshot();
+    }
+}
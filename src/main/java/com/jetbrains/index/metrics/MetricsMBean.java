@@ -0,0 +1,93 @@
+package com.jetbrains.index.metrics;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Exposes a {@link MetricsRegistry} over JMX, every entry of its {@link MetricsRegistry#snapshot()} is a read-only
+ * attribute. Metrics are created lazily, so the attributes are listed anew every time the info is requested.
+ */
+public class MetricsMBean implements DynamicMBean {
+    private static final String DOMAIN = "com.jetbrains.index";
+
+    private final MetricsRegistry registry;
+
+    public MetricsMBean(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Register the metrics with the platform MBean server, replacing a bean registered under the same name before
+     *
+     * @param name value of the {@code name} key of the object name
+     * @return the object name the bean was registered under
+     * @throws JMException if the bean can not be registered
+     */
+    public static ObjectName register(MetricsRegistry registry, String name) throws JMException {
+        var server = ManagementFactory.getPlatformMBeanServer();
+        var objectName = new ObjectName(DOMAIN, "name", ObjectName.quote(name));
+        try {
+            server.registerMBean(new MetricsMBean(registry), objectName);
+        } catch (InstanceAlreadyExistsException e) {
+            server.unregisterMBean(objectName);
+            server.registerMBean(new MetricsMBean(registry), objectName);
+        }
+        return objectName;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        var value = registry.snapshot().get(attribute);
+        if (value == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return value;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        var snapshot = registry.snapshot();
+        var list = new AttributeList();
+        for (String attribute : attributes) {
+            var value = snapshot.get(attribute);
+            if (value != null) {
+                list.add(new Attribute(attribute, value));
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) {
+        throw new UnsupportedOperationException("No operations: " + actionName);
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        var attributes = registry.snapshot().entrySet().stream()
+                .map(entry -> new MBeanAttributeInfo(entry.getKey(), entry.getValue().getClass().getName(),
+                        entry.getKey(), true, false, false))
+                .toArray(MBeanAttributeInfo[]::new);
+        return new MBeanInfo(getClass().getName(), "Metrics of the indexing pipeline", attributes,
+                null, new MBeanOperationInfo[0], null);
+    }
+}
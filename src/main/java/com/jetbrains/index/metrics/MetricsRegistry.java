@@ -0,0 +1,56 @@
+package com.jetbrains.index.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Named metrics of the indexing pipeline: counters, {@link Histogram}s and gauges.
+ * Metrics are created on first use and shared by everyone asking for the same name afterward,
+ * components look them up once and keep the instance, so recording never touches the registry.
+ * <p>
+ * Names are dot separated, latencies end with {@code .micros}. A {@link #snapshot()} flattens every histogram into
+ * its count, mean, 50th, 90th and 99th percentile and maximum, see {@link MetricsMBean} and {@link MetricsLogger}.
+ */
+public class MetricsRegistry {
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, _ -> new LongAdder());
+    }
+
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, _ -> new Histogram());
+    }
+
+    /**
+     * Register a value which is read whenever a snapshot is taken, replacing a previous gauge of the same name
+     *
+     * @param value cheap to read and safe to call from any thread
+     */
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * @return current values of all metrics sorted by name
+     */
+    public Map<String, Number> snapshot() {
+        Map<String, Number> snapshot = new TreeMap<>();
+        counters.forEach((name, counter) -> snapshot.put(name, counter.sum()));
+        gauges.forEach((name, gauge) -> snapshot.put(name, gauge.getAsLong()));
+        histograms.forEach((name, histogram) -> {
+            snapshot.put(name + ".count", histogram.count());
+            snapshot.put(name + ".mean", histogram.mean());
+            snapshot.put(name + ".p50", histogram.percentile(50));
+            snapshot.put(name + ".p90", histogram.percentile(90));
+            snapshot.put(name + ".p99", histogram.percentile(99));
+            snapshot.put(name + ".max", histogram.max());
+        });
+        return snapshot;
+    }
+}
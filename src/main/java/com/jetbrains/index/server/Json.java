@@ -0,0 +1,167 @@
+package com.jetbrains.index.server;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The little JSON the {@link QueryServer} speaks: writing strings, string arrays and objects of numbers,
+ * and reading an array of strings. Objects keep the order of their map.
+ */
+final class Json {
+
+    private Json() {
+    }
+
+    static String quote(String value) {
+        var quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> quoted.append("\\\"");
+                case '\\' -> quoted.append("\\\\");
+                case '\n' -> quoted.append("\\n");
+                case '\r' -> quoted.append("\\r");
+                case '\t' -> quoted.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        quoted.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+                }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    static String array(Collection<String> values) {
+        //sized for typical paths, growing a large builder copies it again and again
+        var array = new StringBuilder(2 + values.size() * 64);
+        array.append('[');
+        for (String value : values) {
+            if (array.length() > 1) {
+                array.append(',');
+            }
+            array.append(quote(value));
+        }
+        return array.append(']').toString();
+    }
+
+    /**
+     * @param values numbers, doubles are written with one decimal, or nested objects of the same kind
+     */
+    static String object(Map<String, ?> values) {
+        var object = new StringBuilder("{");
+        values.forEach((name, value) -> {
+            if (object.length() > 1) {
+                object.append(',');
+            }
+            object.append(quote(name)).append(':').append(switch (value) {
+                case Double d -> String.format(Locale.ROOT, "%.1f", d);
+                case Number number -> number.toString();
+                case Map<?, ?> nested -> object(castKeys(nested));
+                case null, default -> throw new IllegalArgumentException("Unsupported value of " + name);
+            });
+        });
+        return object.append('}').toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, ?> castKeys(Map<?, ?> map) {
+        return (Map<String, ?>) map;
+    }
+
+    /**
+     * @param json array of strings, e.g. {@code ["cthulhu", "r'lyeh"]}
+     * @throws IllegalArgumentException if the text is not an array of strings
+     */
+    static List<String> parseStringArray(String json) {
+        var parser = new Parser(json);
+        List<String> values = new ArrayList<>();
+        parser.expect('[');
+        if (!parser.consume(']')) {
+            do {
+                values.add(parser.string());
+            } while (parser.consume(','));
+            parser.expect(']');
+        }
+        parser.skipWhiteSpace();
+        if (parser.position < json.length()) {
+            throw new IllegalArgumentException("Unexpected content after the array at " + parser.position);
+        }
+        return values;
+    }
+
+    private static final class Parser {
+        private final String json;
+        private int position;
+
+        Parser(String json) {
+            this.json = json;
+        }
+
+        void skipWhiteSpace() {
+            while (position < json.length() && Character.isWhitespace(json.charAt(position))) {
+                position++;
+            }
+        }
+
+        boolean consume(char expected) {
+            skipWhiteSpace();
+            if (position < json.length() && json.charAt(position) == expected) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        void expect(char expected) {
+            if (!consume(expected)) {
+                throw new IllegalArgumentException("Expected '" + expected + "' at " + position);
+            }
+        }
+
+        String string() {
+            expect('"');
+            var value = new StringBuilder();
+            while (position < json.length()) {
+                char c = json.charAt(position++);
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                if (position >= json.length()) {
+                    break;
+                }
+                char escaped = json.charAt(position++);
+                switch (escaped) {
+                    case '"', '\\', '/' -> value.append(escaped);
+                    case 'b' -> value.append('\b');
+                    case 'f' -> value.append('\f');
+                    case 'n' -> value.append('\n');
+                    case 'r' -> value.append('\r');
+                    case 't' -> value.append('\t');
+                    case 'u' -> {
+                        if (position + 4 > json.length()) {
+                            throw new IllegalArgumentException("Incomplete unicode escape at " + position);
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(json, position, position + 4, 16));
+                        } catch (NumberFormatException e) {
+                            throw new IllegalArgumentException("Invalid unicode escape at " + position);
+                        }
+                        position += 4;
+                    }
+                    default -> throw new IllegalArgumentException("Invalid escape at " + (position - 1));
+                }
+            }
+            throw new IllegalArgumentException("Unterminated string");
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.jetbrains.index.server;
+
+import com.jetbrains.index.index.IndexSearchService;
+import com.jetbrains.index.metrics.Histogram;
+import com.jetbrains.index.metrics.MetricsRegistry;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HTTP server answering queries against a live {@link IndexSearchService}, bound to the loopback address only.
+ * Every exchange runs on a virtual thread of its own, so thousands of concurrent queries cost no more than
+ * the searches themselves. Responses carry their length, so clients keep their HTTP/1.1 connections alive.
+ * <ul>
+ *     <li>{@code GET /search?word=<word>}: {@code {"word":"...","count":<files>,"files":["...",...]}}</li>
+ *     <li>{@code POST /batch} with a JSON array of up to {@value MAX_BATCH_WORDS} words:
+ *     {@code {"results":{"<word>":{"count":<files>,"files":["...",...]},...}}}</li>
+ *     <li>{@code GET /stats}: indexed contents, pending events, sequences and all metrics</li>
+ * </ul>
+ * Frequent words are found in most files, {@code limit=<files>} in the query of a search or batch caps the listed
+ * files of every word, the count is always the total.
+ * Requests are counted and timed in the {@link MetricsRegistry} under {@code server.*}.
+ * <p>
+ * The JDK server writes headers and body separately, unless the JVM runs with
+ * {@code -Dsun.net.httpserver.nodelay=true} every response on a kept alive connection waits for a delayed ACK.
+ * The property is read once for the whole JVM, so it is left to the application to set it before the first server
+ * is created.
+ */
+public class QueryServer implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(QueryServer.class);
+
+    static final int MAX_BATCH_WORDS = 1000;
+    private static final int MAX_BODY_BYTES = 1024 * 1024;
+    private static final int BACKLOG = 1024;
+
+    private final IndexSearchService service;
+    private final MetricsRegistry metrics;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Histogram requestLatency;
+    private final LongAdder failedRequests;
+
+    /**
+     * Bind the server, it answers requests once {@link #start() started}
+     *
+     * @param port port on the loopback address, {@code 0} picks a free one
+     * @throws IOException if the port can not be bound
+     */
+    public QueryServer(IndexSearchService service, MetricsRegistry metrics, int port) throws IOException {
+        this.service = service;
+        this.metrics = metrics;
+        this.requestLatency = metrics.histogram("server.request.micros");
+        this.failedRequests = metrics.counter("server.requests.failed");
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+        server.setExecutor(executor);
+        server.createContext("/search", exchange -> handle(exchange, "GET", this::search));
+        server.createContext("/batch", exchange -> handle(exchange, "POST", this::batch));
+        server.createContext("/stats", exchange -> handle(exchange, "GET", this::stats));
+    }
+
+    public void start() {
+        server.start();
+        log.info("Serving queries on http://{}:{}", server.getAddress().getHostString(), port());
+    }
+
+    /**
+     * @return the bound port
+     */
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        //exchanges in progress get a second to complete
+        server.stop(1);
+        executor.close();
+    }
+
+    private void handle(HttpExchange exchange, String method, Endpoint endpoint) {
+        long start = System.nanoTime();
+        try {
+            //contexts match by prefix
+            if (!exchange.getRequestURI().getPath().equals(exchange.getHttpContext().getPath())) {
+                respond(exchange, 404, error("Not found"));
+            } else if (!exchange.getRequestMethod().equals(method)) {
+                exchange.getResponseHeaders().set("Allow", method);
+                respond(exchange, 405, error("Method not allowed"));
+            } else {
+                try {
+                    respond(exchange, 200, endpoint.handle(exchange));
+                } catch (IllegalArgumentException e) {
+                    respond(exchange, 400, error(e.getMessage()));
+                }
+            }
+        } catch (IOException e) {
+            failedRequests.increment();
+            log.debug("Unable to answer {}", exchange.getRequestURI(), e);
+        } catch (RuntimeException e) {
+            failedRequests.increment();
+            log.error("Failed to answer {}", exchange.getRequestURI(), e);
+            try {
+                respond(exchange, 500, error("Internal error"));
+            } catch (IOException | RuntimeException _) {
+                //the response may have been started already
+            }
+        } finally {
+            exchange.close();
+            requestLatency.recordSince(start);
+        }
+    }
+
+    private String search(HttpExchange exchange) {
+        var word = queryParameter(exchange, "word");
+        if (word == null || word.isEmpty()) {
+            throw new IllegalArgumentException("Missing query parameter: word");
+        }
+        return "{\"word\":" + Json.quote(word) + "," + files(word, limit(exchange)) + "}";
+    }
+
+    /**
+     * @return {@code "count":<files>,"files":[...]} of the word
+     */
+    private String files(String word, int limit) {
+        //a single pass over the live result, copying it would expand the paths for its size and again for its elements
+        List<String> files = new ArrayList<>();
+        service.findWord(word).forEach(files::add);
+        return "\"count\":" + files.size() + ",\"files\":" + Json.array(files.subList(0, Math.min(limit, files.size())));
+    }
+
+    private static int limit(HttpExchange exchange) {
+        var limit = queryParameter(exchange, "limit");
+        if (limit == null) {
+            return Integer.MAX_VALUE;
+        }
+        try {
+            int value = Integer.parseInt(limit);
+            if (value >= 0) {
+                return value;
+            }
+        } catch (NumberFormatException _) {
+            //reported below
+        }
+        throw new IllegalArgumentException("Limit must be a non-negative number: " + limit);
+    }
+
+    private String batch(HttpExchange exchange) throws IOException {
+        byte[] body = exchange.getRequestBody().readNBytes(MAX_BODY_BYTES + 1);
+        if (body.length > MAX_BODY_BYTES) {
+            throw new IllegalArgumentException("Request body exceeds " + MAX_BODY_BYTES + " bytes");
+        }
+        var words = Json.parseStringArray(new String(body, StandardCharsets.UTF_8));
+        if (words.size() > MAX_BATCH_WORDS) {
+            throw new IllegalArgumentException("At most " + MAX_BATCH_WORDS + " words per batch");
+        }
+        int limit = limit(exchange);
+        var results = new StringBuilder("{\"results\":{");
+        //duplicates are answered once, a JSON object can not hold a name twice
+        for (String word : new LinkedHashSet<>(words)) {
+            if (results.charAt(results.length() - 1) != '{') {
+                results.append(',');
+            }
+            results.append(Json.quote(word)).append(":{").append(files(word, limit)).append('}');
+        }
+        return results.append("}}").toString();
+    }
+
+    private String stats(HttpExchange exchange) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("indexedContents", service.indexedContents());
+        stats.put("pendingEvents", service.pendingEvents());
+        stats.put("receivedSequence", service.receivedSequence());
+        stats.put("indexedSequence", service.indexedSequence());
+        stats.put("metrics", metrics.snapshot());
+        return Json.object(stats);
+    }
+
+    /**
+     * @return the first value of the parameter decoded, {@code null} if absent
+     */
+    private static String queryParameter(HttpExchange exchange, String name) {
+        var query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            var key = separator < 0 ? pair : pair.substring(0, separator);
+            if (URLDecoder.decode(key, StandardCharsets.UTF_8).equals(name)) {
+                return separator < 0 ? "" : URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" + Json.quote(message) + "}";
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    @FunctionalInterface
+    private interface Endpoint {
+        /**
+         * @return JSON body of a successful response
+         * @throws IllegalArgumentException if the request is invalid
+         */
+        String handle(HttpExchange exchange) throws IOException;
+    }
+}
@@ -0,0 +1,340 @@
+package com.jetbrains.index.token.dictionary;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Dense, thread safe dictionary mapping terms to stable {@code int} ids.
+ * <p>
+ * The UTF-8 bytes of all terms are appended to a single growing {@code byte[]} arena and
+ * term {@code id} occupies the range {@code [offsets[id], offsets[id + 1])}. Lookups go through an
+ * open addressing (linear probing) table of ids keyed by the hash of those bytes, so a term costs
+ * its bytes plus a handful of {@code int}s instead of a wrapper, a {@link String} and a map node.
+ * Ids are assigned sequentially starting from 0 and are never reused, terms are never removed.
+ * <p>
+ * Lookups of already known terms take an optimistic {@link StampedLock} read and do not block each other,
+ * inserting a new term takes the write lock.
+ */
+public class TermDictionary {
+    private static final int DEFAULT_INITIAL_TERMS = 1024;
+    private static final int DEFAULT_INITIAL_ARENA = 64 * 1024;
+    private static final int MAX_ARENA_SIZE = Integer.MAX_VALUE - 8;
+    private static final int EMPTY = 0;
+
+    private final StampedLock lock = new StampedLock();
+
+    private byte[] arena;
+    private int arenaSize;
+    //offsets[id] is the start of the term, offsets[id + 1] its end
+    private int[] offsets;
+    private int[] hashes;
+    //holds id + 1 so that 0 can mark an empty slot
+    private int[] table;
+    private int count;
+
+    public TermDictionary() {
+        this(DEFAULT_INITIAL_TERMS, DEFAULT_INITIAL_ARENA);
+    }
+
+    public TermDictionary(int expectedTerms, int initialArenaBytes) {
+        this.arena = new byte[Math.max(16, initialArenaBytes)];
+        this.offsets = new int[Math.max(16, expectedTerms) + 1];
+        this.hashes = new int[Math.max(16, expectedTerms)];
+        this.table = new int[tableCapacityFor(Math.max(16, expectedTerms))];
+    }
+
+    /**
+     * Returns the id of the term, adding it to the dictionary if it is not present yet
+     *
+     * @param term text of the term
+     * @return stable id of the term
+     */
+    public int intern(CharSequence term) {
+        int hash = hash(term);
+        int id = optimisticProbe(term, hash);
+        if (id >= 0) {
+            return id;
+        }
+        long stamp = lock.writeLock();
+        try {
+            id = probe(term, hash);
+            if (id >= 0) {
+                return id;
+            }
+            int length = Utf8.encodedLength(term);
+            int offset = reserve(length);
+            Utf8.encode(term, arena, offset);
+            return append(hash, length);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Returns the id of the UTF-8 encoded term, adding it to the dictionary if it is not present yet
+     *
+     * @param bytes  UTF-8 bytes containing the term
+     * @param offset start of the term
+     * @param length amount of bytes of the term
+     * @return stable id of the term
+     */
+    public int intern(byte[] bytes, int offset, int length) {
+        int hash = hash(bytes, offset, length);
+        int id = optimisticProbe(bytes, offset, length, hash);
+        if (id >= 0) {
+            return id;
+        }
+        long stamp = lock.writeLock();
+        try {
+            id = probe(bytes, offset, length, hash);
+            if (id >= 0) {
+                return id;
+            }
+            int start = reserve(length);
+            System.arraycopy(bytes, offset, arena, start, length);
+            return append(hash, length);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Read only lookup which never adds the term and does not allocate
+     *
+     * @param term text of the term
+     * @return id of the term or -1 if the term is unknown
+     */
+    public int find(CharSequence term) {
+        return optimisticProbe(term, hash(term));
+    }
+
+    /**
+     * Read only lookup of UTF-8 bytes which never adds the term and does not allocate
+     *
+     * @return id of the term or -1 if the term is unknown
+     */
+    public int find(byte[] bytes, int offset, int length) {
+        return optimisticProbe(bytes, offset, length, hash(bytes, offset, length));
+    }
+
+    /**
+     * @param id term id returned by one of the intern methods
+     * @return text of the term
+     */
+    public String term(int id) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            byte[] currentArena = arena;
+            int[] currentOffsets = offsets;
+            int size = count;
+            if (id >= 0 && id < size && id + 1 < currentOffsets.length) {
+                int start = currentOffsets[id];
+                int end = currentOffsets[id + 1];
+                if (start >= 0 && start <= end && end <= currentArena.length) {
+                    String value = new String(currentArena, start, end - start, StandardCharsets.UTF_8);
+                    if (lock.validate(stamp)) {
+                        return value;
+                    }
+                }
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            if (id < 0 || id >= count) {
+                throw new IllegalArgumentException("Unknown term id: " + id);
+            }
+            return new String(arena, offsets[id], offsets[id + 1] - offsets[id], StandardCharsets.UTF_8);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return number of distinct terms
+     */
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return count;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * @return amount of bytes used by the text of all terms
+     */
+    public int arenaSize() {
+        long stamp = lock.readLock();
+        try {
+            return arenaSize;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private int optimisticProbe(CharSequence term, int hash) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            //Arrays can be replaced or partially written by a concurrent insert,
+            //invalid ranges are possible and the result is discarded anyway
+            try {
+                int id = probe(term, hash);
+                if (lock.validate(stamp)) {
+                    return id;
+                }
+            } catch (IndexOutOfBoundsException | IllegalArgumentException ignored) {
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return probe(term, hash);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private int optimisticProbe(byte[] bytes, int offset, int length, int hash) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                int id = probe(bytes, offset, length, hash);
+                if (lock.validate(stamp)) {
+                    return id;
+                }
+            } catch (IndexOutOfBoundsException | IllegalArgumentException ignored) {
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return probe(bytes, offset, length, hash);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private int probe(CharSequence term, int hash) {
+        int[] currentTable = table;
+        int mask = currentTable.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int entry = currentTable[slot];
+            if (entry == EMPTY) {
+                return -1;
+            }
+            int id = entry - 1;
+            if (hashes[id] == hash && Utf8.equals(term, arena, offsets[id], offsets[id + 1])) {
+                return id;
+            }
+        }
+    }
+
+    private int probe(byte[] bytes, int offset, int length, int hash) {
+        int[] currentTable = table;
+        int mask = currentTable.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int entry = currentTable[slot];
+            if (entry == EMPTY) {
+                return -1;
+            }
+            int id = entry - 1;
+            if (hashes[id] == hash && Arrays.equals(arena, offsets[id], offsets[id + 1], bytes, offset, offset + length)) {
+                return id;
+            }
+        }
+    }
+
+    /**
+     * Makes room for {@code length} bytes at the end of the arena. Must hold the write lock.
+     *
+     * @return offset at which the term bytes are written
+     */
+    private int reserve(int length) {
+        int required = arenaSize + length;
+        if (required < 0 || required > MAX_ARENA_SIZE) {
+            throw new IllegalStateException("Term dictionary arena is full");
+        }
+        if (required > arena.length) {
+            int newSize = (int) Math.min(MAX_ARENA_SIZE, Math.max(required, arena.length * 2L));
+            arena = Arrays.copyOf(arena, newSize);
+        }
+        return arenaSize;
+    }
+
+    /**
+     * Registers the term whose bytes were just written at the end of the arena. Must hold the write lock.
+     */
+    private int append(int hash, int length) {
+        int id = count;
+        if (id >= hashes.length) {
+            hashes = Arrays.copyOf(hashes, hashes.length * 2);
+            offsets = Arrays.copyOf(offsets, hashes.length + 1);
+        }
+        hashes[id] = hash;
+        offsets[id] = arenaSize;
+        offsets[id + 1] = arenaSize + length;
+        arenaSize += length;
+        count = id + 1;
+        if (count > table.length / 2) {
+            rehash(table.length * 2);
+        } else {
+            insertSlot(table, id, hash);
+        }
+        return id;
+    }
+
+    private void rehash(int capacity) {
+        int[] newTable = new int[capacity];
+        for (int id = 0; id < count; id++) {
+            insertSlot(newTable, id, hashes[id]);
+        }
+        table = newTable;
+    }
+
+    private static void insertSlot(int[] table, int id, int hash) {
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        while (table[slot] != EMPTY) {
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = id + 1;
+    }
+
+    private static int tableCapacityFor(int terms) {
+        return Integer.highestOneBit(terms * 2 - 1) << 1;
+    }
+
+    /**
+     * FNV-1a over the UTF-8 bytes followed by the murmur3 finalizer, which spreads
+     * the low bits used for the table slot
+     */
+    private static int hash(byte[] bytes, int offset, int length) {
+        int h = 0x811C9DC5;
+        for (int i = offset; i < offset + length; i++) {
+            h = (h ^ (bytes[i] & 0xFF)) * 0x01000193;
+        }
+        return mix(h);
+    }
+
+    private static int hash(CharSequence term) {
+        int h = 0x811C9DC5;
+        for (int i = 0; i < term.length(); ) {
+            int codePoint = Utf8.codePointAt(term, i);
+            i += Utf8.charCount(term, i);
+            int length = Utf8.encodedLength(codePoint);
+            for (int b = 0; b < length; b++) {
+                h = (h ^ Utf8.encodedByte(codePoint, length, b)) * 0x01000193;
+            }
+        }
+        return mix(h);
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
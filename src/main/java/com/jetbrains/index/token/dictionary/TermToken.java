@@ -0,0 +1,45 @@
+package com.jetbrains.index.token.dictionary;
+
+import com.jetbrains.index.token.Token;
+
+/**
+ * {@link Token} backed by a {@link TermDictionary}. It only holds the term id,
+ * the text is decoded from the dictionary on demand. Two tokens of the same
+ * dictionary are equal when their ids are equal, which is the same as comparing their text.
+ */
+public final class TermToken implements Token {
+
+    private final int id;
+    private final TermDictionary dictionary;
+
+    public TermToken(int id, TermDictionary dictionary) {
+        this.id = id;
+        this.dictionary = dictionary;
+    }
+
+    public int id() {
+        return id;
+    }
+
+    @Override
+    public String value() {
+        return dictionary.term(id);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TermToken that)) return false;
+        return id == that.id && dictionary == that.dictionary;
+    }
+
+    @Override
+    public int hashCode() {
+        return id;
+    }
+
+    @Override
+    public String toString() {
+        return value();
+    }
+}
@@ -0,0 +1,89 @@
+package com.jetbrains.index.token.dictionary;
+
+/**
+ * Allocation free UTF-8 encoding of {@link CharSequence}s, byte by byte.
+ * Unpaired surrogates are encoded as {@code '?'} which matches {@link String#getBytes(java.nio.charset.Charset)}.
+ */
+final class Utf8 {
+    private static final int REPLACEMENT = '?';
+
+    private Utf8() {
+    }
+
+    static int codePointAt(CharSequence text, int index) {
+        int codePoint = Character.codePointAt(text, index);
+        return codePoint <= Character.MAX_VALUE && Character.isSurrogate((char) codePoint) ? REPLACEMENT : codePoint;
+    }
+
+    static int charCount(CharSequence text, int index) {
+        return Character.charCount(Character.codePointAt(text, index));
+    }
+
+    static int encodedLength(int codePoint) {
+        if (codePoint < 0x80) {
+            return 1;
+        }
+        if (codePoint < 0x800) {
+            return 2;
+        }
+        return codePoint < 0x10000 ? 3 : 4;
+    }
+
+    static int encodedLength(CharSequence text) {
+        int length = 0;
+        for (int i = 0; i < text.length(); i += charCount(text, i)) {
+            length += encodedLength(codePointAt(text, i));
+        }
+        return length;
+    }
+
+    /**
+     * @param codePoint code point being encoded
+     * @param length    its encoded length
+     * @param index     index of the requested byte, in range {@code [0, length)}
+     * @return unsigned value of the byte
+     */
+    static int encodedByte(int codePoint, int length, int index) {
+        if (length == 1) {
+            return codePoint;
+        }
+        int shift = 6 * (length - 1 - index);
+        if (index == 0) {
+            return ((0xFF00 >> length) & 0xFF) | (codePoint >> shift);
+        }
+        return 0x80 | ((codePoint >> shift) & 0x3F);
+    }
+
+    /**
+     * Writes the encoded text into {@code target} starting at {@code offset}
+     */
+    static void encode(CharSequence text, byte[] target, int offset) {
+        for (int i = 0; i < text.length(); i += charCount(text, i)) {
+            int codePoint = codePointAt(text, i);
+            int length = encodedLength(codePoint);
+            for (int b = 0; b < length; b++) {
+                target[offset++] = (byte) encodedByte(codePoint, length, b);
+            }
+        }
+    }
+
+    /**
+     * @return true if the encoded text is equal to the bytes in range {@code [from, to)}
+     */
+    static boolean equals(CharSequence text, byte[] bytes, int from, int to) {
+        int position = from;
+        for (int i = 0; i < text.length(); i += charCount(text, i)) {
+            int codePoint = codePointAt(text, i);
+            int length = encodedLength(codePoint);
+            if (position + length > to) {
+                return false;
+            }
+            for (int b = 0; b < length; b++) {
+                if ((bytes[position++] & 0xFF) != encodedByte(codePoint, length, b)) {
+                    return false;
+                }
+            }
+        }
+        return position == to;
+    }
+}
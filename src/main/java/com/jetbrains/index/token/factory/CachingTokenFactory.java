@@ -3,6 +3,8 @@ package com.jetbrains.index.token.factory;
 import com.jetbrains.index.token.SimpleToken;
 import com.jetbrains.index.token.Token;
 
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -11,26 +13,43 @@ import java.util.concurrent.ConcurrentHashMap;
  * Rationale behind this is that in the process of parsing documents there will inevitability
  * be tokens of the same value. Once the Tokens are removed from the index the weak reference
  * will not block cleanup of the associated memory.
+ * <p>
+ * Lookups of cached tokens are a plain {@link ConcurrentHashMap#get(Object)} and never lock,
+ * {@link ConcurrentHashMap#compute} is only used when the token is missing or was collected.
+ * Collected tokens are reported through a {@link ReferenceQueue} and their entries are removed
+ * on the next miss. Every index should own its factory so caches of unrelated indexes do not mix.
  */
 public class CachingTokenFactory implements TokenFactory {
-    private static final ConcurrentHashMap<String, WeakReference<Token>> tokenMap = new ConcurrentHashMap<>();
-    private static final CachingTokenFactory instance = new CachingTokenFactory();
+    private final ConcurrentHashMap<String, TokenReference> tokenMap = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Token> collectedTokens = new ReferenceQueue<>();
 
-    private CachingTokenFactory() {
+    public CachingTokenFactory() {
     }
 
-    public static CachingTokenFactory getInstance() {
-        return instance;
-    }
-
-    public static Token getToken(String tokenValue) {
-        return tokenMap.compute(tokenValue, (k, v) -> {
+    public Token getToken(String tokenValue) {
+        var cached = tokenMap.get(tokenValue);
+        if (cached != null) {
+            var token = cached.get();
+            if (token != null) {
+                return token;
+            }
+        }
+        expungeCollected();
+        //A strong reference is taken inside compute, otherwise the token could be
+        //collected before get() is called on the returned weak reference
+        Token[] created = new Token[1];
+        tokenMap.compute(tokenValue, (k, v) -> {
             //in the case a token was removed from the index and then later re added
-            if (v == null || v.get() == null) {
-                return new WeakReference<>(new SimpleToken(k));
+            var existing = v == null ? null : v.get();
+            if (existing != null) {
+                created[0] = existing;
+                return v;
             }
-            return v;
-        }).get();
+            var token = new SimpleToken(k);
+            created[0] = token;
+            return new TokenReference(k, token, collectedTokens);
+        });
+        return created[0];
     }
 
     @Override
@@ -40,4 +59,46 @@ public class CachingTokenFactory implements TokenFactory {
         }
         return getToken((String) param);
     }
+
+    /**
+     * Returns the cached token without creating or caching anything.
+     * A {@link String} is looked up as is. The cache is keyed by strings, so any other sequence is copied
+     * into a temporary {@link String} for the lookup, which costs an allocation per call but is never retained.
+     */
+    @Override
+    public Token findToken(CharSequence value) {
+        var cached = tokenMap.get(value instanceof String s ? s : value.toString());
+        return cached == null ? null : cached.get();
+    }
+
+    /**
+     * @return number of cached entries, including entries of collected tokens which were not expunged yet
+     */
+    public int size() {
+        return tokenMap.size();
+    }
+
+    /**
+     * Remove map entries whose tokens were garbage collected. An entry is only removed if it still
+     * holds the collected reference, a concurrent {@link #getToken(String)} may have replaced it already.
+     */
+    private void expungeCollected() {
+        Reference<? extends Token> reference;
+        while ((reference = collectedTokens.poll()) != null) {
+            var collected = (TokenReference) reference;
+            tokenMap.remove(collected.key, collected);
+        }
+    }
+
+    /**
+     * Weak reference which remembers its map key so it can be removed once the token is collected
+     */
+    private static final class TokenReference extends WeakReference<Token> {
+        private final String key;
+
+        TokenReference(String key, Token token, ReferenceQueue<Token> queue) {
+            super(token, queue);
+            this.key = key;
+        }
+    }
 }
@@ -0,0 +1,90 @@
+package com.jetbrains.index.token.factory;
+
+import com.jetbrains.index.token.Token;
+import com.jetbrains.index.token.dictionary.TermDictionary;
+import com.jetbrains.index.token.dictionary.TermToken;
+
+import java.util.Arrays;
+
+/**
+ * Factory which interns every token into a {@link TermDictionary} and hands out
+ * {@link TermToken}s holding only the stable term id. Compared to {@link CachingTokenFactory}
+ * the distinct terms are stored densely in a single arena and are invisible to the GC,
+ * the price is that terms are never released.
+ * <p>
+ * Every id gets a single {@link TermToken}, kept in an array indexed by the id, so repeated
+ * lookups of a known term allocate nothing. Readers take the array without locking, only the
+ * first token of an id is created under a lock.
+ */
+public class DictionaryTokenFactory implements TokenFactory {
+
+    private static final int INITIAL_TOKENS = 1024;
+
+    private final TermDictionary dictionary;
+    private final Object tokensLock = new Object();
+    private volatile TermToken[] tokens = new TermToken[INITIAL_TOKENS];
+
+    public DictionaryTokenFactory() {
+        this(new TermDictionary());
+    }
+
+    public DictionaryTokenFactory(TermDictionary dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    public Token getToken(Object param) {
+        if (!(param instanceof CharSequence term)) {
+            throw new IllegalArgumentException("DictionaryTokenFactory requires a CharSequence");
+        }
+        return token(dictionary.intern(term));
+    }
+
+    /**
+     * Probes the dictionary without interning, neither a miss nor a hit of a known token allocates
+     */
+    @Override
+    public Token findToken(CharSequence value) {
+        int id = dictionary.find(value);
+        return id < 0 ? null : token(id);
+    }
+
+    /**
+     * Probes the dictionary with UTF-8 bytes without interning, neither a miss nor a hit of a known token allocates
+     *
+     * @return token of the term or {@code null} if the term is unknown
+     */
+    public Token findToken(byte[] bytes, int offset, int length) {
+        int id = dictionary.find(bytes, offset, length);
+        return id < 0 ? null : token(id);
+    }
+
+    public TermDictionary dictionary() {
+        return dictionary;
+    }
+
+    /**
+     * @return the token of the id, created on its first use
+     */
+    private TermToken token(int id) {
+        var cached = tokens;
+        //TermToken only has final fields, a racy read sees either null or a complete token
+        var token = id < cached.length ? cached[id] : null;
+        if (token != null) {
+            return token;
+        }
+        synchronized (tokensLock) {
+            cached = tokens;
+            if (id >= cached.length) {
+                cached = Arrays.copyOf(cached, Math.max(id + 1, cached.length * 2));
+                tokens = cached;
+            }
+            token = cached[id];
+            if (token == null) {
+                token = new TermToken(id, dictionary);
+                cached[id] = token;
+            }
+            return token;
+        }
+    }
+}
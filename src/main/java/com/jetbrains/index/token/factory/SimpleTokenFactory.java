@@ -19,4 +19,12 @@ public class SimpleTokenFactory implements TokenFactory {
         }
         return new SimpleToken((String) param);
     }
+
+    /**
+     * The factory keeps no state, the returned token is a short-lived search key
+     */
+    @Override
+    public Token findToken(CharSequence value) {
+        return new SimpleToken(value.toString());
+    }
 }
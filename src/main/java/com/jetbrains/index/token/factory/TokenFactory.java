@@ -4,8 +4,20 @@ import com.jetbrains.index.token.Token;
 
 /**
  * A singular place where the creation of {@link Token} can be controlled
- * Two implementations exist {@link SimpleTokenFactory} and {@link CachingTokenFactory}
+ * Implementations are {@link SimpleTokenFactory}, {@link CachingTokenFactory} and {@link DictionaryTokenFactory}
  */
 public interface TokenFactory {
     Token getToken(Object param);
+
+    /**
+     * Read only counterpart of {@link #getToken(Object)} used on the search path.
+     * Implementations must not cache, intern or otherwise retain anything, so looking up
+     * words which were never indexed can not grow the factory. A copy of the value made only
+     * for the lookup is allowed.
+     *
+     * @param value text of the token
+     * @return token equal to the one {@link #getToken(Object)} would return, or {@code null}
+     * if the factory knows that no such token was ever created
+     */
+    Token findToken(CharSequence value);
 }
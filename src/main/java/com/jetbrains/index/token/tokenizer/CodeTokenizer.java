@@ -0,0 +1,151 @@
+package com.jetbrains.index.token.tokenizer;
+
+import com.jetbrains.index.jfr.TokenizeEvent;
+import com.jetbrains.index.token.Token;
+import com.jetbrains.index.token.factory.TokenFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tokenizer intended for source code. Every character which can not be part of an
+ * identifier (operators, brackets, punctuation, white space) is treated as a delimiter,
+ * so {@code foo(bar)} produces {@code foo} and {@code bar} instead of a single token.
+ * <p>
+ * Besides the whole identifier the camelCase and snake_case parts are also emitted,
+ * {@code parseHttpRequest} yields {@code parseHttpRequest}, {@code parse}, {@code Http} and {@code Request}.
+ * Numeric literals longer than {@code maxNumberLength} are skipped since they are
+ * almost always unique and only inflate the dictionary.
+ */
+public class CodeTokenizer implements Tokenizer {
+    private static final Logger log = LoggerFactory.getLogger(CodeTokenizer.class);
+    private static final int DEFAULT_MAX_NUMBER_LENGTH = 8;
+    private static final int READ_BUFFER_SIZE = 8 * 1024;
+
+    private final TokenFactory tokenFactory;
+    private final int maxNumberLength;
+
+    public CodeTokenizer(TokenFactory tokenFactory) {
+        this(tokenFactory, DEFAULT_MAX_NUMBER_LENGTH);
+    }
+
+    public CodeTokenizer(TokenFactory tokenFactory, int maxNumberLength) {
+        if (maxNumberLength < 0) {
+            throw new IllegalArgumentException("Maximum number length must not be negative");
+        }
+        this.tokenFactory = tokenFactory;
+        this.maxNumberLength = maxNumberLength;
+    }
+
+    @Override
+    public Iterable<Token> tokenize(InputStreamReader content) {
+        var event = new TokenizeEvent();
+        event.begin();
+        try {
+            List<Token> tokens = new ArrayList<>();
+            StringBuilder word = new StringBuilder();
+            char[] buffer = new char[READ_BUFFER_SIZE];
+            long characters = 0;
+            int read;
+            while ((read = content.read(buffer)) != -1) {
+                characters += read;
+                for (int i = 0; i < read; i++) {
+                    char c = buffer[i];
+                    if (isIdentifierPart(c)) {
+                        word.append(c);
+                    } else if (!word.isEmpty()) {
+                        emitWord(word, tokens);
+                        word.setLength(0);
+                    }
+                }
+            }
+            if (!word.isEmpty()) {
+                emitWord(word, tokens);
+            }
+            event.commit(getClass().getSimpleName(), characters, tokens.size());
+            return tokens;
+        } catch (IOException e) {
+            log.error("Error while tokenizing: {}", e.getMessage());
+            throw new RuntimeException("", e);
+        }
+    }
+
+    /**
+     * Adds the whole word and, when it is a compound identifier, all of its sub words
+     *
+     * @param word   identifier or numeric literal
+     * @param tokens output collection
+     */
+    private void emitWord(CharSequence word, List<Token> tokens) {
+        if (Character.isDigit(word.charAt(0))) {
+            if (word.length() <= maxNumberLength) {
+                tokens.add(tokenFactory.getToken(word.toString()));
+            }
+            return;
+        }
+        String whole = word.toString();
+        List<String> subWords = new ArrayList<>();
+        int start = 0;
+        for (int i = 1; i <= whole.length(); i++) {
+            if (i == whole.length() || isSubWordBoundary(whole, i)) {
+                String part = trimSeparators(whole, start, i);
+                if (!part.isEmpty()) {
+                    subWords.add(part);
+                }
+                start = i;
+            }
+        }
+        //Words made only of separators (e.g. "__") carry no meaning
+        if (subWords.isEmpty()) {
+            return;
+        }
+        tokens.add(tokenFactory.getToken(whole));
+        //A single part is the word itself which was already added
+        if (subWords.size() > 1) {
+            subWords.forEach(part -> tokens.add(tokenFactory.getToken(part)));
+        }
+    }
+
+    /**
+     * A sub word starts at {@code i} when:
+     * 1) the previous character is a separator ({@code _} or {@code $})
+     * 2) a lower case letter or digit is followed by an upper case letter (fooBar)
+     * 3) an acronym ends and a new capitalized word begins (HTTPServer)
+     */
+    private static boolean isSubWordBoundary(String word, int i) {
+        char previous = word.charAt(i - 1);
+        char current = word.charAt(i);
+        if (isSeparator(previous) || isSeparator(current)) {
+            return true;
+        }
+        if (Character.isUpperCase(current)) {
+            if (!Character.isUpperCase(previous)) {
+                return true;
+            }
+            return i + 1 < word.length() && Character.isLowerCase(word.charAt(i + 1));
+        }
+        return false;
+    }
+
+    private static String trimSeparators(String word, int start, int end) {
+        while (start < end && isSeparator(word.charAt(start))) {
+            start++;
+        }
+        while (end > start && isSeparator(word.charAt(end - 1))) {
+            end--;
+        }
+        return word.substring(start, end);
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == '_' || c == '$';
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || isSeparator(c);
+    }
+}
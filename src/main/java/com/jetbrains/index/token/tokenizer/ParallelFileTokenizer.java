@@ -0,0 +1,201 @@
+package com.jetbrains.index.token.tokenizer;
+
+import com.jetbrains.index.token.Token;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Serial;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Decorator which tokenizes files larger than {@code parallelThreshold} on a {@link ForkJoinPool}.
+ * The file is recursively split into byte ranges of at most {@code chunkSize} bytes, every split
+ * is moved forward to the next white space byte so no token is cut in half. Ranges are tokenized
+ * by the delegate and the per-range term sets are merged, the result therefore contains every distinct
+ * token once. A range is streamed from the file, so a range without white space may grow beyond the chunk size
+ * and even beyond 2 GB without being held in memory.
+ * <p>
+ * White space bytes ({@code ' ', '\t', '\r', '\n'}) never appear inside a multibyte UTF-8 sequence,
+ * which makes them safe split points. The delegate must treat them as delimiters, which is true
+ * for both {@link WhiteSpaceTokenizer} and {@link CodeTokenizer}.
+ */
+public class ParallelFileTokenizer implements Tokenizer {
+    private static final long DEFAULT_PARALLEL_THRESHOLD = 64L * 1024 * 1024; //64 MB
+    private static final int DEFAULT_CHUNK_SIZE = 8 * 1024 * 1024; //8 MB
+    private static final int ALIGNMENT_PROBE_SIZE = 4 * 1024;
+
+    private final Tokenizer delegate;
+    private final long parallelThreshold;
+    private final int chunkSize;
+    private final ForkJoinPool pool;
+
+    public ParallelFileTokenizer(Tokenizer delegate) {
+        this(delegate, DEFAULT_PARALLEL_THRESHOLD, DEFAULT_CHUNK_SIZE);
+    }
+
+    public ParallelFileTokenizer(Tokenizer delegate, long parallelThreshold, int chunkSize) {
+        this(delegate, parallelThreshold, chunkSize, ForkJoinPool.commonPool());
+    }
+
+    public ParallelFileTokenizer(Tokenizer delegate, long parallelThreshold, int chunkSize, ForkJoinPool pool) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Chunk size must be positive");
+        }
+        this.delegate = delegate;
+        this.parallelThreshold = parallelThreshold;
+        this.chunkSize = chunkSize;
+        this.pool = pool;
+    }
+
+    @Override
+    public Iterable<Token> tokenize(InputStreamReader content) {
+        return delegate.tokenize(content);
+    }
+
+    @Override
+    public Iterable<Token> tokenize(Path file) throws IOException {
+        long size = Files.size(file);
+        if (size < parallelThreshold) {
+            return delegate.tokenize(file);
+        }
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return pool.invoke(new RangeTask(channel, 0, size));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Finds the first position after {@code position} which directly follows a white space byte
+     *
+     * @return aligned position or {@code end} if the remainder of the range has no white space
+     */
+    private long alignToDelimiter(FileChannel channel, long position, long end) throws IOException {
+        ByteBuffer probe = ByteBuffer.allocate(ALIGNMENT_PROBE_SIZE);
+        while (position < end) {
+            probe.clear();
+            probe.limit((int) Math.min(probe.capacity(), end - position));
+            int read = channel.read(probe, position);
+            if (read <= 0) {
+                return end;
+            }
+            for (int i = 0; i < read; i++) {
+                if (isDelimiter(probe.get(i))) {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return end;
+    }
+
+    private static boolean isDelimiter(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    /**
+     * Tokenizes the byte range {@code [start,end)} of the file, splitting it in half
+     * while it is larger than {@code chunkSize}
+     */
+    private class RangeTask extends RecursiveTask<Set<Token>> {
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final transient FileChannel channel;
+        private final long start;
+        private final long end;
+
+        RangeTask(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected Set<Token> compute() {
+            try {
+                if (end - start > chunkSize) {
+                    long split = alignToDelimiter(channel, start + (end - start) / 2, end);
+                    if (split < end) {
+                        var left = new RangeTask(channel, start, split);
+                        left.fork();
+                        var right = new RangeTask(channel, split, end).compute();
+                        return merge(left.join(), right);
+                    }
+                }
+                return tokenizeRange();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private Set<Token> tokenizeRange() throws IOException {
+            //A range without any white space can be larger than the chunk size, it is streamed instead of buffered
+            var stream = new BufferedInputStream(new RangeInputStream(channel, start, end), ALIGNMENT_PROBE_SIZE * 16);
+            var reader = new InputStreamReader(stream, StandardCharsets.UTF_8);
+            Set<Token> tokens = new HashSet<>();
+            delegate.tokenize(reader).forEach(tokens::add);
+            return tokens;
+        }
+
+        private static Set<Token> merge(Set<Token> first, Set<Token> second) {
+            if (first.size() < second.size()) {
+                second.addAll(first);
+                return second;
+            }
+            first.addAll(second);
+            return first;
+        }
+    }
+
+    /**
+     * Reads the byte range {@code [position,end)} of the channel by absolute positions,
+     * so the ranges of concurrent tasks never move a shared channel position
+     */
+    private static class RangeInputStream extends InputStream {
+        private final FileChannel channel;
+        private final long end;
+        private long position;
+
+        RangeInputStream(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position >= end) {
+                return -1;
+            }
+            var buffer = ByteBuffer.wrap(b, off, (int) Math.min(len, end - position));
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                return -1;
+            }
+            position += read;
+            return read;
+        }
+    }
+}
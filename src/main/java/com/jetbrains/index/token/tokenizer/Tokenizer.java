@@ -2,7 +2,11 @@ package com.jetbrains.index.token.tokenizer;
 
 import com.jetbrains.index.token.Token;
 
+import java.io.FileReader;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.Collection;
 
 /**
@@ -19,4 +23,18 @@ public interface Tokenizer {
      */
     Iterable<Token> tokenize(InputStreamReader content);
 
+    /**
+     * Takes a whole UTF-8 file and produces its tokens. Implementations which can
+     * take advantage of random access to the file (e.g. reading it in parallel) override this method.
+     *
+     * @param file path to an actual file
+     * @return something that can be iterated over in order to collect all the tokens
+     * @throws IOException if the file can not be read
+     */
+    default Iterable<Token> tokenize(Path file) throws IOException {
+        try (var reader = new FileReader(file.toFile(), StandardCharsets.UTF_8)) {
+            return tokenize(reader);
+        }
+    }
+
 }
@@ -1,5 +1,6 @@
 package com.jetbrains.index.token.tokenizer;
 
+import com.jetbrains.index.jfr.TokenizeEvent;
 import com.jetbrains.index.token.Token;
 import com.jetbrains.index.token.factory.TokenFactory;
 import org.apache.commons.io.IOUtils;
@@ -26,6 +27,8 @@ public class WhiteSpaceTokenizer implements Tokenizer {
 
     @Override
     public Iterable<Token> tokenize(InputStreamReader fileContent) {
+        var event = new TokenizeEvent();
+        event.begin();
         try {
             String content = IOUtils.toString(fileContent);
 
@@ -36,6 +39,7 @@ public class WhiteSpaceTokenizer implements Tokenizer {
                 String token = tokenizer.nextToken();
                 tokens.add(tokenFactory.getToken(token));
             }
+            event.commit(getClass().getSimpleName(), content.length(), tokens.size());
             return tokens;
         } catch (IOException e) {
             log.error("Error while tokenizing: {}",e.getMessage());
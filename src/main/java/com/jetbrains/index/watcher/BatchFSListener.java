@@ -0,0 +1,24 @@
+package com.jetbrains.index.watcher;
+
+import java.util.List;
+
+/**
+ * A listener receiving the events of the {@link FileSystemWatcher} in batches instead of one at a time,
+ * so work can be shared between the events of a batch. A batch holds the events of one scan cycle,
+ * or a part of it once the cycle produces more than the configured batch size.
+ * Events of the same file appear in the order they were detected.
+ */
+public interface BatchFSListener extends FSListener {
+
+    /**
+     * Same restrictions as {@link FSListener#onFileChanged(FileChangeEvent)} apply
+     *
+     * @param fileChangeEvents non-empty, unmodifiable batch of events
+     */
+    void onFilesChanged(List<FileChangeEvent> fileChangeEvents);
+
+    @Override
+    default void onFileChanged(FileChangeEvent fileChangeEvent) {
+        onFilesChanged(List.of(fileChangeEvent));
+    }
+}
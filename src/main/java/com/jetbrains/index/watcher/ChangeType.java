@@ -1,5 +1,13 @@
 package com.jetbrains.index.watcher;
 
 public enum ChangeType {
-    CREATE, UPDATE, DELETE
+    CREATE, UPDATE, DELETE,
+    /**
+     * The file was moved from {@link FileChangeEvent#previousPath()} without changing its content
+     */
+    RENAME,
+    /**
+     * The file only grew, its content up to {@link FileChangeEvent#appendOffset()} is the one published before
+     */
+    APPEND
 }
@@ -0,0 +1,254 @@
+package com.jetbrains.index.watcher;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link FSListener} decorator which holds back events of a path until the path was quiet for {@code quietPeriod}
+ * and merges all events received in the meantime into at most one event:
+ * 1) CREATE followed by UPDATE stays CREATE, UPDATE followed by UPDATE stays UPDATE
+ * 2) CREATE followed by DELETE is dropped, the delegate never learns about the file
+ * 3) DELETE followed by CREATE (or UPDATE) becomes UPDATE
+ * 4) UPDATE followed by DELETE becomes DELETE
+ * 5) APPEND followed by APPEND stays APPEND from the offset of the first one, an APPEND following any other change
+ * is absorbed by it and any other change following an APPEND replaces it
+ * <p>
+ * Every new event of a path restarts its quiet period, but no event is held back longer than {@code maxDelay}
+ * after the first one, so a file which is written continuously is still indexed. Pending events are checked by a
+ * single daemon thread which also invokes the delegate, so the delegate sees the events of a path in order.
+ * All events which become due at the same time are passed to a {@link BatchFSListener} delegate as one batch.
+ * The merged event carries the content digest of the last event of the path. A {@link ChangeType#RENAME} stays
+ * pending as a rename under its new path as long as neither path has other events. If either path already has
+ * pending events, or receives one before the rename is emitted, the rename falls back to a deletion of the previous
+ * path followed by a creation of the new one, which are merged with the other events of the paths.
+ */
+public class CoalescingListener implements BatchFSListener, AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(CoalescingListener.class);
+    private static final int MAX_DELAY_FACTOR = 10;
+
+    private final FSListener delegate;
+    private final long quietPeriodNanos;
+    private final long maxDelayNanos;
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    //previous path of every pending rename to its new path
+    private final Map<String, String> renamedFrom = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final LongAdder received = new LongAdder();
+    private final LongAdder emitted = new LongAdder();
+
+    public CoalescingListener(FSListener delegate, Duration quietPeriod) {
+        this(delegate, quietPeriod, quietPeriod.multipliedBy(MAX_DELAY_FACTOR));
+    }
+
+    /**
+     * @param delegate    receives the merged events
+     * @param quietPeriod time without events after which the events of a path are emitted
+     * @param maxDelay    maximal time the first event of a path is held back
+     */
+    public CoalescingListener(FSListener delegate, Duration quietPeriod, Duration maxDelay) {
+        if (quietPeriod.isNegative() || quietPeriod.isZero() || maxDelay.compareTo(quietPeriod) < 0) {
+            throw new IllegalArgumentException("Quiet period must be positive and not longer than the maximal delay");
+        }
+        this.delegate = delegate;
+        this.quietPeriodNanos = quietPeriod.toNanos();
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "Event coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long tick = Math.max(TimeUnit.MILLISECONDS.toNanos(1), quietPeriodNanos / 4);
+        scheduler.scheduleWithFixedDelay(this::emitQuietPaths, tick, tick, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void onFileChanged(FileChangeEvent fileChangeEvent) {
+        received.increment();
+        if (fileChangeEvent.change() == ChangeType.RENAME) {
+            addRename(fileChangeEvent);
+        } else {
+            splitRenames(fileChangeEvent.filePath());
+            add(fileChangeEvent);
+        }
+    }
+
+    private void addRename(FileChangeEvent rename) {
+        var from = rename.previousPath();
+        var to = rename.filePath();
+        splitRenames(from);
+        splitRenames(to);
+        if (!pending.containsKey(from)) {
+            long now = System.nanoTime();
+            var renamed = new Pending(ChangeType.RENAME, rename.contentDigest(), -1, from, now, deadline(now, now));
+            if (pending.putIfAbsent(to, renamed) == null) {
+                renamedFrom.put(from, to);
+                return;
+            }
+        }
+        //the other events of the paths have to be merged with the rename
+        add(new DefaultFileEvent(from, ChangeType.DELETE, rename.contentDigest()));
+        add(new DefaultFileEvent(to, ChangeType.CREATE, rename.contentDigest()));
+    }
+
+    /**
+     * Replace a pending rename from or to the path by a deletion of its previous path and a creation of its new one
+     */
+    private void splitRenames(String path) {
+        var target = renamedFrom.get(path);
+        if (target != null) {
+            splitRename(target);
+        }
+        splitRename(path);
+    }
+
+    private void splitRename(String target) {
+        var rename = pending.get(target);
+        //a rename emitted in the meantime is not pending anymore
+        if (rename == null || rename.change != ChangeType.RENAME || !pending.remove(target, rename)) {
+            return;
+        }
+        renamedFrom.remove(rename.previousPath, target);
+        add(new DefaultFileEvent(rename.previousPath, ChangeType.DELETE, rename.contentDigest));
+        add(new DefaultFileEvent(target, ChangeType.CREATE, rename.contentDigest));
+    }
+
+    private void add(FileChangeEvent fileChangeEvent) {
+        long now = System.nanoTime();
+        pending.compute(fileChangeEvent.filePath(), (_, previous) -> {
+            if (previous == null) {
+                return new Pending(fileChangeEvent.change(), fileChangeEvent.contentDigest(), fileChangeEvent.appendOffset(),
+                        null, now, deadline(now, now));
+            }
+            var merged = merge(previous.change, fileChangeEvent.change());
+            return merged == null ? null
+                    : new Pending(merged, fileChangeEvent.contentDigest(), previous.appendOffset, null, previous.firstSeen,
+                    deadline(previous.firstSeen, now));
+        });
+    }
+
+    @Override
+    public void onFilesChanged(List<FileChangeEvent> fileChangeEvents) {
+        fileChangeEvents.forEach(this::onFileChanged);
+    }
+
+    /**
+     * A {@link ChangeType#RENAME} merges like a creation of its new path, the deletion of its previous path
+     * is kept as an event of that path
+     *
+     * @return the change equivalent to {@code first} followed by {@code second}, {@code null} if they cancel out
+     */
+    static ChangeType merge(ChangeType first, ChangeType second) {
+        return switch (first) {
+            case CREATE -> second == ChangeType.DELETE ? null : ChangeType.CREATE;
+            case UPDATE -> second == ChangeType.DELETE ? ChangeType.DELETE : ChangeType.UPDATE;
+            case DELETE -> second == ChangeType.DELETE ? ChangeType.DELETE : ChangeType.UPDATE;
+            case APPEND -> switch (second) {
+                case DELETE, APPEND -> second;
+                case null, default -> ChangeType.UPDATE;
+            };
+            case RENAME -> merge(ChangeType.CREATE, second);
+        };
+    }
+
+    private long deadline(long firstSeen, long now) {
+        return Math.min(now + quietPeriodNanos, firstSeen + maxDelayNanos);
+    }
+
+    private void emitQuietPaths() {
+        long now = System.nanoTime();
+        List<FileChangeEvent> due = new ArrayList<>();
+        for (var entry : pending.entrySet()) {
+            var change = entry.getValue();
+            //a concurrent event replaces the value, in that case it is left for a later run
+            if (now - change.deadline >= 0 && pending.remove(entry.getKey(), change)) {
+                forgetRename(entry.getKey(), change);
+                due.add(change.toEvent(entry.getKey()));
+            }
+        }
+        emit(due);
+    }
+
+    private void emit(List<FileChangeEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        emitted.add(events.size());
+        try {
+            if (delegate instanceof BatchFSListener batchListener) {
+                batchListener.onFilesChanged(List.copyOf(events));
+            } else {
+                events.forEach(delegate::onFileChanged);
+            }
+        } catch (RuntimeException e) {
+            log.error("Error invoking listener", e);
+        }
+    }
+
+    /**
+     * @return amount of events received from the watcher
+     */
+    public long receivedCount() {
+        return received.sum();
+    }
+
+    /**
+     * @return amount of events passed to the delegate
+     */
+    public long emittedCount() {
+        return emitted.sum();
+    }
+
+    /**
+     * Stop the scheduler and emit all pending events right away
+     */
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<FileChangeEvent> remaining = new ArrayList<>();
+        for (var path : pending.keySet()) {
+            var change = pending.remove(path);
+            if (change != null) {
+                forgetRename(path, change);
+                remaining.add(change.toEvent(path));
+            }
+        }
+        emit(remaining);
+    }
+
+    private void forgetRename(String path, Pending change) {
+        if (change.change == ChangeType.RENAME) {
+            renamedFrom.remove(change.previousPath, path);
+        }
+    }
+
+    /**
+     * @param appendOffset offset of the first event, only used if the merged change is still an APPEND
+     * @param previousPath path the file was moved from, only set while the change is a RENAME
+     */
+    private record Pending(ChangeType change, byte[] contentDigest, long appendOffset, String previousPath,
+                           long firstSeen, long deadline) {
+
+        FileChangeEvent toEvent(String path) {
+            return switch (change) {
+                case APPEND -> DefaultFileEvent.append(path, appendOffset, contentDigest);
+                case RENAME -> DefaultFileEvent.rename(previousPath, path, contentDigest);
+                case null, default -> new DefaultFileEvent(path, change, contentDigest);
+            };
+        }
+    }
+}
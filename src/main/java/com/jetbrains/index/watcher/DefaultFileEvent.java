@@ -3,17 +3,56 @@ package com.jetbrains.index.watcher;
 import java.util.Objects;
 
 /**
- * Standard implementation of a {@link FileChangeEvent}
+ * Standard implementation of a {@link FileChangeEvent}.
+ * The content digest is supplementary, two events are equal if their paths and change are.
  */
 public class DefaultFileEvent implements FileChangeEvent {
 
     private final String filePath;
     private final ChangeType changeType;
+    private final byte[] contentDigest;
+    private final String previousPath;
+    private final long appendOffset;
 
 
     public DefaultFileEvent(String filePath, ChangeType changeType) {
+        this(filePath, changeType, null);
+    }
+
+    public DefaultFileEvent(String filePath, ChangeType changeType, byte[] contentDigest) {
+        this(filePath, changeType, contentDigest, null, -1);
+    }
+
+    private DefaultFileEvent(String filePath, ChangeType changeType, byte[] contentDigest, String previousPath,
+                             long appendOffset) {
         this.filePath = filePath;
         this.changeType = changeType;
+        this.contentDigest = contentDigest;
+        this.previousPath = previousPath;
+        this.appendOffset = appendOffset;
+    }
+
+    /**
+     * @param previousPath path the file was moved from
+     * @param filePath     path the file was moved to
+     * @param contentDigest digest of its content
+     * @return {@link ChangeType#RENAME} event
+     */
+    public static DefaultFileEvent rename(String previousPath, String filePath, byte[] contentDigest) {
+        return new DefaultFileEvent(filePath, ChangeType.RENAME, contentDigest, Objects.requireNonNull(previousPath), -1);
+    }
+
+    /**
+     * @param filePath      path of the grown file
+     * @param appendOffset  length of its previously published content
+     * @param contentDigest digest of its whole new content
+     * @return {@link ChangeType#APPEND} event
+     */
+    public static DefaultFileEvent append(String filePath, long appendOffset, byte[] contentDigest) {
+        if (appendOffset < 0) {
+            throw new IllegalArgumentException("Append offset must not be negative");
+        }
+        return new DefaultFileEvent(filePath, ChangeType.APPEND, contentDigest, null, appendOffset);
     }
 
     @Override
@@ -26,11 +65,28 @@ public class DefaultFileEvent implements FileChangeEvent {
         return changeType;
     }
 
+    @Override
+    public byte[] contentDigest() {
+        return contentDigest;
+    }
+
+    @Override
+    public String previousPath() {
+        return previousPath;
+    }
+
+    @Override
+    public long appendOffset() {
+        return appendOffset;
+    }
+
     @Override
     public String toString() {
         return "DefaultFileEvent{" +
                "filePath='" + filePath + '\'' +
                ", changeType=" + changeType +
+               (previousPath != null ? ", previousPath='" + previousPath + '\'' : "") +
+               (appendOffset >= 0 ? ", appendOffset=" + appendOffset : "") +
                '}';
     }
 
@@ -38,11 +94,12 @@ public class DefaultFileEvent implements FileChangeEvent {
     public boolean equals(Object o) {
         if (this == o) return true;
         if (!(o instanceof DefaultFileEvent that)) return false;
-        return Objects.equals(filePath, that.filePath) && changeType == that.changeType;
+        return Objects.equals(filePath, that.filePath) && changeType == that.changeType
+               && Objects.equals(previousPath, that.previousPath) && appendOffset == that.appendOffset;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(filePath, changeType);
+        return Objects.hash(filePath, changeType, previousPath, appendOffset);
     }
 }
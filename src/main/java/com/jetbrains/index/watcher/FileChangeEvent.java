@@ -8,4 +8,26 @@ public interface FileChangeEvent {
     String filePath();
 
     ChangeType change();
+
+    /**
+     * @return digest of the content the change was detected for, the last known content for {@link ChangeType#DELETE},
+     * {@code null} if unknown
+     */
+    default byte[] contentDigest() {
+        return null;
+    }
+
+    /**
+     * @return path the file was moved from for {@link ChangeType#RENAME}, {@code null} otherwise
+     */
+    default String previousPath() {
+        return null;
+    }
+
+    /**
+     * @return length of the previously published content for {@link ChangeType#APPEND}, {@code -1} otherwise
+     */
+    default long appendOffset() {
+        return -1;
+    }
 }
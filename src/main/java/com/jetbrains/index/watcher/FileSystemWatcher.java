@@ -1,9 +1,15 @@
 package com.jetbrains.index.watcher;
 
+import com.jetbrains.index.metrics.MetricsRegistry;
+import com.jetbrains.index.watcher.admission.AdmissionPolicy;
+import com.jetbrains.index.watcher.filter.PathFilter;
+import com.jetbrains.index.watcher.hash.ContentHash;
+import com.jetbrains.index.watcher.limit.InspectionLimits;
 import com.jetbrains.index.watcher.task.WatcherTask;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -21,6 +27,7 @@ public class FileSystemWatcher implements AutoCloseable {
     private final Collection<String> paths;
     private Thread watcherThread;
     private final List<FSListener> listeners = new ArrayList<>();
+    private WatcherConfig config = WatcherConfig.defaults();
 
     public FileSystemWatcher(Collection<String> paths) {
         this.paths = new ArrayList<>(paths);
@@ -44,18 +51,100 @@ public class FileSystemWatcher implements AutoCloseable {
         listeners.add(listener);
     }
 
+    /**
+     * Replace the default {@link AdmissionPolicy} deciding which files are indexed
+     */
+    public synchronized void setAdmissionPolicy(AdmissionPolicy admissionPolicy) {
+        startGuard("Admission policy must be set before starting the watcher");
+        this.config = config.withAdmissionPolicy(admissionPolicy);
+    }
+
+    public AdmissionPolicy getAdmissionPolicy() {
+        return config.admissionPolicy();
+    }
+
+    /**
+     * Choose how changes are detected, {@link WatchMode#POLLING} by default
+     */
+    public synchronized void setWatchMode(WatchMode watchMode) {
+        startGuard("Watch mode must be set before starting the watcher");
+        this.config = config.withWatchMode(watchMode);
+    }
+
+    /**
+     * Configure the reconciliation scans of {@link WatchMode#HYBRID}
+     *
+     * @param interval       pause between two scans
+     * @param pathsPerSecond maximal amount of paths checked per second
+     */
+    public synchronized void setReconciliation(Duration interval, int pathsPerSecond) {
+        startGuard("Reconciliation must be configured before starting the watcher");
+        this.config = config.withReconciliation(interval, pathsPerSecond);
+    }
+
+    /**
+     * Choose the hash used to detect changed content, {@link ContentHash#XXH64} by default
+     */
+    public synchronized void setContentHash(ContentHash contentHash) {
+        startGuard("Content hash must be set before starting the watcher");
+        this.config = config.withContentHash(contentHash);
+    }
+
+    /**
+     * Replace the default {@link InspectionLimits} bounding concurrent reads of every watched path
+     */
+    public synchronized void setInspectionLimits(InspectionLimits inspectionLimits) {
+        startGuard("Inspection limits must be set before starting the watcher");
+        this.config = config.withInspectionLimits(inspectionLimits);
+    }
+
+    public InspectionLimits getInspectionLimits() {
+        return config.inspectionLimits();
+    }
+
+    /**
+     * Limit the amount of events delivered to a {@link BatchFSListener} at once
+     */
+    public synchronized void setMaxBatchSize(int maxBatchSize) {
+        startGuard("Batch size must be set before starting the watcher");
+        this.config = config.withMaxBatchSize(maxBatchSize);
+    }
+
+    /**
+     * Restrict which files and directories under the watched paths are traversed
+     */
+    public synchronized void setPathFilter(PathFilter pathFilter) {
+        startGuard("Path filter must be set before starting the watcher");
+        this.config = config.withPathFilter(pathFilter);
+    }
+
+    /**
+     * Record the metrics of the watcher in the given registry instead of a private one
+     */
+    public synchronized void setMetrics(MetricsRegistry metrics) {
+        startGuard("Metrics must be set before starting the watcher");
+        this.config = config.withMetrics(metrics);
+    }
+
     private void startWatcher() {
-        watcherThread = new Thread(new WatcherTask(paths, this::invokeListeners));
+        watcherThread = new Thread(new WatcherTask(paths, this::invokeListeners, config));
         watcherThread.start();
     }
 
     /**
-     * Forward the event to all listeners. The listeners themselves are responsible
+     * Forward the batch to all listeners, a {@link BatchFSListener} receives it at once
+     * while other listeners receive the events one by one. The listeners themselves are responsible
      * for handling concurrency
      */
-    private void invokeListeners(FileChangeEvent event) {
+    private void invokeListeners(List<FileChangeEvent> events) {
         try {
-            this.listeners.forEach((l) -> l.onFileChanged(event));
+            for (FSListener listener : listeners) {
+                if (listener instanceof BatchFSListener batchListener) {
+                    batchListener.onFilesChanged(events);
+                } else {
+                    events.forEach(listener::onFileChanged);
+                }
+            }
         }catch (Throwable e){
             log.error("Error invoking listeners", e);
         }
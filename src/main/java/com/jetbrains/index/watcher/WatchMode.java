@@ -0,0 +1,20 @@
+package com.jetbrains.index.watcher;
+
+/**
+ * How the {@link com.jetbrains.index.watcher.task.WatcherTask} finds out about changes
+ */
+public enum WatchMode {
+    /**
+     * Periodically walk all watched paths
+     */
+    POLLING,
+    /**
+     * React to change notifications of the operating system ({@link java.nio.file.WatchService})
+     */
+    EVENTS,
+    /**
+     * React to change notifications like {@link #EVENTS} and additionally walk all watched paths
+     * on a fixed interval at a limited rate to catch notifications which were lost
+     */
+    HYBRID
+}
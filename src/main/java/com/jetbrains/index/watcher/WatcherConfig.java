@@ -0,0 +1,98 @@
+package com.jetbrains.index.watcher;
+
+import com.jetbrains.index.metrics.MetricsRegistry;
+import com.jetbrains.index.watcher.admission.AdmissionPolicy;
+import com.jetbrains.index.watcher.filter.PathFilter;
+import com.jetbrains.index.watcher.hash.ContentHash;
+import com.jetbrains.index.watcher.limit.InspectionLimits;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Immutable settings of a {@link com.jetbrains.index.watcher.task.WatcherTask}.
+ * Start from {@link #defaults()} and replace individual settings with the {@code with} methods.
+ *
+ * @param admissionPolicy        decides which files are inspected and indexed
+ * @param watchMode              how changes are detected
+ * @param reconciliationInterval pause between two reconciliation scans in {@link WatchMode#HYBRID}
+ * @param reconciliationRate     maximal amount of paths checked per second by a reconciliation scan
+ * @param contentHash            hash used to tell whether the content of a file changed
+ * @param inspectionLimits       bounds the amount of concurrent inspections per watched root
+ * @param maxBatchSize           maximal amount of events published together
+ * @param pathFilter             decides which files and directories are traversed
+ * @param metrics                receives the scan, inspection and event metrics of the watcher
+ */
+public record WatcherConfig(AdmissionPolicy admissionPolicy, WatchMode watchMode,
+                            Duration reconciliationInterval, int reconciliationRate, ContentHash contentHash,
+                            InspectionLimits inspectionLimits, int maxBatchSize,
+                            PathFilter pathFilter, MetricsRegistry metrics) {
+    private static final Duration DEFAULT_RECONCILIATION_INTERVAL = Duration.ofMinutes(10);
+    private static final int DEFAULT_RECONCILIATION_RATE = 2000;
+    private static final int DEFAULT_MAX_BATCH_SIZE = 512;
+
+    public WatcherConfig {
+        Objects.requireNonNull(admissionPolicy);
+        Objects.requireNonNull(watchMode);
+        Objects.requireNonNull(reconciliationInterval);
+        Objects.requireNonNull(contentHash);
+        Objects.requireNonNull(inspectionLimits);
+        Objects.requireNonNull(pathFilter);
+        Objects.requireNonNull(metrics);
+        if (reconciliationInterval.isNegative()) {
+            throw new IllegalArgumentException("Reconciliation interval must not be negative");
+        }
+        if (reconciliationRate <= 0) {
+            throw new IllegalArgumentException("Reconciliation rate must be positive");
+        }
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+    }
+
+    public static WatcherConfig defaults() {
+        return new WatcherConfig(AdmissionPolicy.defaults(), WatchMode.POLLING,
+                DEFAULT_RECONCILIATION_INTERVAL, DEFAULT_RECONCILIATION_RATE, ContentHash.XXH64,
+                InspectionLimits.defaults(), DEFAULT_MAX_BATCH_SIZE, PathFilter.acceptAll(), new MetricsRegistry());
+    }
+
+    public WatcherConfig withAdmissionPolicy(AdmissionPolicy admissionPolicy) {
+        return new WatcherConfig(admissionPolicy, watchMode, reconciliationInterval, reconciliationRate, contentHash,
+                inspectionLimits, maxBatchSize, pathFilter, metrics);
+    }
+
+    public WatcherConfig withWatchMode(WatchMode watchMode) {
+        return new WatcherConfig(admissionPolicy, watchMode, reconciliationInterval, reconciliationRate, contentHash,
+                inspectionLimits, maxBatchSize, pathFilter, metrics);
+    }
+
+    public WatcherConfig withReconciliation(Duration interval, int pathsPerSecond) {
+        return new WatcherConfig(admissionPolicy, watchMode, interval, pathsPerSecond, contentHash, inspectionLimits,
+                maxBatchSize, pathFilter, metrics);
+    }
+
+    public WatcherConfig withContentHash(ContentHash contentHash) {
+        return new WatcherConfig(admissionPolicy, watchMode, reconciliationInterval, reconciliationRate, contentHash,
+                inspectionLimits, maxBatchSize, pathFilter, metrics);
+    }
+
+    public WatcherConfig withInspectionLimits(InspectionLimits inspectionLimits) {
+        return new WatcherConfig(admissionPolicy, watchMode, reconciliationInterval, reconciliationRate, contentHash,
+                inspectionLimits, maxBatchSize, pathFilter, metrics);
+    }
+
+    public WatcherConfig withMaxBatchSize(int maxBatchSize) {
+        return new WatcherConfig(admissionPolicy, watchMode, reconciliationInterval, reconciliationRate, contentHash,
+                inspectionLimits, maxBatchSize, pathFilter, metrics);
+    }
+
+    public WatcherConfig withPathFilter(PathFilter pathFilter) {
+        return new WatcherConfig(admissionPolicy, watchMode, reconciliationInterval, reconciliationRate, contentHash,
+                inspectionLimits, maxBatchSize, pathFilter, metrics);
+    }
+
+    public WatcherConfig withMetrics(MetricsRegistry metrics) {
+        return new WatcherConfig(admissionPolicy, watchMode, reconciliationInterval, reconciliationRate, contentHash,
+                inspectionLimits, maxBatchSize, pathFilter, metrics);
+    }
+}
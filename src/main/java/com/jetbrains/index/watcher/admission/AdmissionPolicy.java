@@ -0,0 +1,180 @@
+package com.jetbrains.index.watcher.admission;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Decides whether a file is worth indexing before its content is read in full.
+ * The checks are ordered from the cheapest to the most expensive:
+ * 1) the extension is matched against the allow and deny lists (no I/O)
+ * 2) the size is compared to {@code maxFileSize} (a single stat)
+ * 3) the first {@code SNIFF_SIZE} bytes are checked for NUL bytes and well known binary magic numbers
+ * <p>
+ * Every rejection is counted per {@link Verdict} so the amount of skipped files can be observed.
+ * Instances are immutable apart from the counters and safe to share between threads.
+ */
+public class AdmissionPolicy {
+    private static final Logger log = LoggerFactory.getLogger(AdmissionPolicy.class);
+    private static final int SNIFF_SIZE = 512;
+    private static final Set<String> DEFAULT_DENIED_EXTENSIONS = Set.of(
+            "class", "jar", "war", "ear", "zip", "gz", "tgz", "bz2", "xz", "7z", "rar",
+            "png", "jpg", "jpeg", "gif", "bmp", "ico", "webp", "tiff", "pdf",
+            "so", "dll", "dylib", "exe", "o", "a", "obj", "lib", "bin", "iso", "pyc",
+            "mp3", "mp4", "avi", "mov", "mkv", "wav", "woff", "woff2", "ttf", "otf");
+    private static final byte[][] BINARY_MAGIC_NUMBERS = {
+            {0x50, 0x4B, 0x03, 0x04},                                //zip, jar
+            {0x1F, (byte) 0x8B},                                     //gzip
+            {0x7F, 0x45, 0x4C, 0x46},                                //ELF executables and core dumps
+            {(byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE},    //java class, mach-o fat binary
+            {(byte) 0xCF, (byte) 0xFA, (byte) 0xED, (byte) 0xFE},    //mach-o 64 bit
+            {(byte) 0x89, 0x50, 0x4E, 0x47},                         //png
+            {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF},                 //jpeg
+            {0x47, 0x49, 0x46, 0x38},                                //gif
+            {0x25, 0x50, 0x44, 0x46},                                //pdf
+            {0x37, 0x7A, (byte) 0xBC, (byte) 0xAF},                  //7z
+    };
+
+    private final long maxFileSize;
+    private final Set<String> allowedExtensions;
+    private final Set<String> deniedExtensions;
+    private final boolean sniffContent;
+    private final Map<Verdict, LongAdder> verdicts = new EnumMap<>(Verdict.class);
+
+    /**
+     * @param maxFileSize       files larger than this amount of bytes are rejected
+     * @param allowedExtensions if not empty only files with one of these extensions are admitted
+     * @param deniedExtensions  files with one of these extensions are rejected
+     * @param sniffContent      whether the header of the file is inspected for binary content
+     */
+    public AdmissionPolicy(long maxFileSize, Set<String> allowedExtensions, Set<String> deniedExtensions, boolean sniffContent) {
+        this.maxFileSize = maxFileSize;
+        this.allowedExtensions = normalize(allowedExtensions);
+        this.deniedExtensions = normalize(deniedExtensions);
+        this.sniffContent = sniffContent;
+        for (Verdict verdict : Verdict.values()) {
+            verdicts.put(verdict, new LongAdder());
+        }
+    }
+
+    /**
+     * Policy rejecting well known binary formats by extension and content without any size limit
+     */
+    public static AdmissionPolicy defaults() {
+        return new AdmissionPolicy(Long.MAX_VALUE, Set.of(), DEFAULT_DENIED_EXTENSIONS, true);
+    }
+
+    /**
+     * Policy admitting every file
+     */
+    public static AdmissionPolicy acceptAll() {
+        return new AdmissionPolicy(Long.MAX_VALUE, Set.of(), Set.of(), false);
+    }
+
+    /**
+     * Evaluate the policy for the given file and count the outcome
+     *
+     * @param file an actual file
+     * @return {@link Verdict#ADMITTED} or the reason of the rejection
+     */
+    public Verdict evaluate(File file) {
+        var verdict = decide(file);
+        if (verdict != Verdict.ADMITTED) {
+            log.debug("Rejected file {}: {}", file, verdict);
+        }
+        verdicts.get(verdict).increment();
+        return verdict;
+    }
+
+    private Verdict decide(File file) {
+        var extension = extension(file.getName());
+        if (!allowedExtensions.isEmpty() && !allowedExtensions.contains(extension)) {
+            return Verdict.EXTENSION_NOT_ALLOWED;
+        }
+        if (deniedExtensions.contains(extension)) {
+            return Verdict.EXTENSION_DENIED;
+        }
+        if (file.length() > maxFileSize) {
+            return Verdict.TOO_LARGE;
+        }
+        if (sniffContent && looksBinary(file)) {
+            return Verdict.BINARY_CONTENT;
+        }
+        return Verdict.ADMITTED;
+    }
+
+    private boolean looksBinary(File file) {
+        byte[] header = new byte[SNIFF_SIZE];
+        int length = 0;
+        try (var input = new FileInputStream(file)) {
+            int read;
+            while (length < header.length && (read = input.read(header, length, header.length - length)) != -1) {
+                length += read;
+            }
+        } catch (IOException e) {
+            //The file will fail the inspection as well, leave the reporting to it
+            log.debug("Unable to sniff file {}", file, e);
+            return false;
+        }
+        for (byte[] magic : BINARY_MAGIC_NUMBERS) {
+            if (length >= magic.length && Arrays.equals(header, 0, magic.length, magic, 0, magic.length)) {
+                return true;
+            }
+        }
+        for (int i = 0; i < length; i++) {
+            if (header[i] == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return number of times the policy returned the given verdict
+     */
+    public long count(Verdict verdict) {
+        return verdicts.get(verdict).sum();
+    }
+
+    /**
+     * @return number of files rejected for any reason
+     */
+    public long rejectedCount() {
+        long total = 0;
+        for (var entry : verdicts.entrySet()) {
+            if (entry.getKey() != Verdict.ADMITTED) {
+                total += entry.getValue().sum();
+            }
+        }
+        return total;
+    }
+
+    private static String extension(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        if (dot <= 0 || dot == fileName.length() - 1) {
+            return "";
+        }
+        return fileName.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    private static Set<String> normalize(Set<String> extensions) {
+        return extensions.stream()
+                .map(e -> e.startsWith(".") ? e.substring(1) : e)
+                .map(e -> e.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    public enum Verdict {
+        ADMITTED, EXTENSION_NOT_ALLOWED, EXTENSION_DENIED, TOO_LARGE, BINARY_CONTENT
+    }
+}
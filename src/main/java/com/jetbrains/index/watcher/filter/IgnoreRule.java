@@ -0,0 +1,72 @@
+package com.jetbrains.index.watcher.filter;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+
+/**
+ * A single pattern in the syntax of {@code .gitignore} files:
+ * 1) a pattern without a slash matches the name of a file or directory at any depth
+ * 2) a pattern containing a slash is anchored to the directory the pattern belongs to, a leading slash is optional
+ * 3) a trailing slash restricts the pattern to directories
+ * 4) a leading {@code !} negates the pattern, re-including what an earlier pattern excluded
+ * 5) {@code *}, {@code ?}, {@code [...]} and {@code **} have their usual glob meaning
+ */
+record IgnoreRule(PathMatcher matcher, PathMatcher zeroDirectoriesMatcher, boolean negated, boolean directoryOnly,
+                  boolean nameOnly) {
+
+    /**
+     * @param line a line of an ignore file or a pattern given by the user
+     * @return the rule or {@code null} for blank lines and comments
+     */
+    static IgnoreRule parse(String line) {
+        var pattern = line.strip();
+        if (pattern.isEmpty() || pattern.startsWith("#")) {
+            return null;
+        }
+        boolean negated = pattern.startsWith("!");
+        if (negated) {
+            pattern = pattern.substring(1);
+        } else if (pattern.startsWith("\\#") || pattern.startsWith("\\!")) {
+            pattern = pattern.substring(1);
+        }
+        boolean directoryOnly = pattern.endsWith("/");
+        if (directoryOnly) {
+            pattern = pattern.substring(0, pattern.length() - 1);
+        }
+        if (pattern.startsWith("**/") && pattern.indexOf('/', 3) < 0) {
+            pattern = pattern.substring(3);
+        }
+        boolean nameOnly = !pattern.contains("/");
+        if (pattern.startsWith("/")) {
+            pattern = pattern.substring(1);
+        }
+        if (pattern.isEmpty()) {
+            return null;
+        }
+        //a/**/b also matches a/b
+        var zeroDirectories = pattern.contains("/**/") ? matcher(pattern.replace("/**/", "/")) : null;
+        return new IgnoreRule(matcher(pattern), zeroDirectories, negated, directoryOnly, nameOnly);
+    }
+
+    private static PathMatcher matcher(String pattern) {
+        //braces are alternatives in Java globs but literals in ignore files
+        var glob = pattern.replace("{", "\\{").replace("}", "\\}");
+        return FileSystems.getDefault().getPathMatcher("glob:" + glob);
+    }
+
+    /**
+     * @param relative  path relative to the directory the rule belongs to
+     * @param directory whether the path is a directory
+     */
+    boolean matches(Path relative, boolean directory) {
+        if (directoryOnly && !directory) {
+            return false;
+        }
+        if (nameOnly) {
+            var name = relative.getFileName();
+            return name != null && matcher.matches(name);
+        }
+        return matcher.matches(relative) || (zeroDirectoriesMatcher != null && zeroDirectoriesMatcher.matches(relative));
+    }
+}
@@ -0,0 +1,139 @@
+package com.jetbrains.index.watcher.filter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides which files and directories under a watched root take part in the traversal.
+ * It is evaluated while walking, so an excluded directory is never listed, watched or inspected.
+ * <p>
+ * Patterns use the {@code .gitignore} syntax (see {@link IgnoreRule}) and are relative to the watched root:
+ * 1) a path matching an exclude pattern is skipped, later patterns override earlier ones ({@code !} re-includes)
+ * 2) if include patterns are given, only files matching one of them are indexed, directories are not affected
+ * 3) optionally the {@code .gitignore} and {@code .ignore} files found in the traversed directories are honored,
+ * a file applies to its directory and everything below, and {@code .git} directories are skipped
+ * <p>
+ * Ignore files are read when a directory is evaluated the first time and again after {@link #reload(Path)}.
+ */
+public class PathFilter {
+    private static final Logger log = LoggerFactory.getLogger(PathFilter.class);
+    private static final List<String> IGNORE_FILES = List.of(".gitignore", ".ignore");
+    private static final String GIT_DIRECTORY = ".git";
+
+    private final List<IgnoreRule> includes;
+    private final List<IgnoreRule> excludes;
+    private final boolean honorIgnoreFiles;
+    private final Map<Path, List<IgnoreRule>> ignoreRules = new ConcurrentHashMap<>();
+
+    /**
+     * @param includes         patterns of files to index, all files if empty
+     * @param excludes         patterns of files and directories to skip
+     * @param honorIgnoreFiles whether {@code .gitignore} and {@code .ignore} files are applied
+     */
+    public PathFilter(Collection<String> includes, Collection<String> excludes, boolean honorIgnoreFiles) {
+        this.includes = parse(includes);
+        this.excludes = parse(excludes);
+        this.honorIgnoreFiles = honorIgnoreFiles;
+    }
+
+    /**
+     * Filter which does not exclude anything
+     */
+    public static PathFilter acceptAll() {
+        return new PathFilter(List.of(), List.of(), false);
+    }
+
+    /**
+     * @param root      watched root containing the path, it is never excluded itself
+     * @param path      absolute path of a file or directory under the root
+     * @param directory whether the path is a directory
+     * @return true if the path and, for directories, everything below it should be skipped
+     */
+    public boolean excludes(Path root, Path path, boolean directory) {
+        if (path.equals(root) || !path.startsWith(root)) {
+            return false;
+        }
+        if (!includes.isEmpty() && !directory && !isMatched(includes, root.relativize(path), false)) {
+            return true;
+        }
+        boolean excluded = matchLast(excludes, root.relativize(path), directory, false);
+        if (honorIgnoreFiles) {
+            if (directory && GIT_DIRECTORY.equals(path.getFileName().toString())) {
+                return true;
+            }
+            //deeper ignore files are evaluated later and override the outer ones
+            for (Path dir = root; !dir.equals(path); dir = dir.resolve(path.getName(dir.getNameCount()))) {
+                excluded = matchLast(rules(dir), dir.relativize(path), directory, excluded);
+            }
+        }
+        return excluded;
+    }
+
+    /**
+     * Forget the cached ignore files of the directory, they are read again on the next evaluation
+     */
+    public void reload(Path directory) {
+        if (honorIgnoreFiles) {
+            ignoreRules.remove(directory);
+        }
+    }
+
+    /**
+     * @return true if the file is one of the ignore files honored by this filter
+     */
+    public boolean isIgnoreFile(Path path) {
+        var name = path.getFileName();
+        return honorIgnoreFiles && name != null && IGNORE_FILES.contains(name.toString());
+    }
+
+    private static boolean isMatched(List<IgnoreRule> rules, Path relative, boolean directory) {
+        for (IgnoreRule rule : rules) {
+            if (rule.matches(relative, directory)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matchLast(List<IgnoreRule> rules, Path relative, boolean directory, boolean excluded) {
+        boolean result = excluded;
+        for (IgnoreRule rule : rules) {
+            if (rule.matches(relative, directory)) {
+                result = !rule.negated();
+            }
+        }
+        return result;
+    }
+
+    private List<IgnoreRule> rules(Path directory) {
+        return ignoreRules.computeIfAbsent(directory, PathFilter::readIgnoreFiles);
+    }
+
+    private static List<IgnoreRule> readIgnoreFiles(Path directory) {
+        List<String> lines = new ArrayList<>();
+        for (String name : IGNORE_FILES) {
+            try {
+                lines.addAll(Files.readAllLines(directory.resolve(name)));
+            } catch (NoSuchFileException ignored) {
+            } catch (IOException e) {
+                log.warn("Unable to read ignore file {}", directory.resolve(name), e);
+            }
+        }
+        return parse(lines);
+    }
+
+    private static List<IgnoreRule> parse(Collection<String> patterns) {
+        return patterns.stream().map(IgnoreRule::parse).filter(Objects::nonNull).toList();
+    }
+}
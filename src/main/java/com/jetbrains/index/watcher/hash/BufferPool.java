@@ -0,0 +1,57 @@
+package com.jetbrains.index.watcher.hash;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed upper bound of direct buffers shared by all readers. Buffers are allocated lazily,
+ * once {@code maxBuffers} are handed out further callers wait until one is released,
+ * so the memory used for reading never exceeds {@code maxBuffers * bufferSize}.
+ */
+class BufferPool {
+    private final int bufferSize;
+    private final int maxBuffers;
+    private final BlockingQueue<ByteBuffer> available;
+    private final AtomicInteger allocated = new AtomicInteger();
+
+    BufferPool(int bufferSize, int maxBuffers) {
+        if (bufferSize <= 0 || maxBuffers <= 0) {
+            throw new IllegalArgumentException("Buffer size and count must be positive");
+        }
+        this.bufferSize = bufferSize;
+        this.maxBuffers = maxBuffers;
+        this.available = new ArrayBlockingQueue<>(maxBuffers);
+    }
+
+    /**
+     * @return a cleared buffer which must be given back with {@link #release(ByteBuffer)}
+     * @throws InterruptedException if interrupted while waiting for a free buffer
+     */
+    ByteBuffer acquire() throws InterruptedException {
+        var buffer = available.poll();
+        if (buffer == null) {
+            int count = allocated.get();
+            while (count < maxBuffers) {
+                if (allocated.compareAndSet(count, count + 1)) {
+                    return ByteBuffer.allocateDirect(bufferSize);
+                }
+                count = allocated.get();
+            }
+            buffer = available.take();
+        }
+        return buffer.clear();
+    }
+
+    void release(ByteBuffer buffer) {
+        available.offer(buffer);
+    }
+
+    /**
+     * @return amount of buffers allocated so far
+     */
+    int allocated() {
+        return allocated.get();
+    }
+}
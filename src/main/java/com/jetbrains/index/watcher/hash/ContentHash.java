@@ -0,0 +1,34 @@
+package com.jetbrains.index.watcher.hash;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Hash functions available for detecting changed file content
+ */
+public enum ContentHash {
+    /**
+     * Fast non-cryptographic 64 bit hash, enough to tell two versions of the same file apart
+     */
+    XXH64,
+    /**
+     * Cryptographic digest, for when the hash must also resist deliberately crafted collisions
+     */
+    SHA_256;
+
+    public ContentHasher newHasher() {
+        return switch (this) {
+            case XXH64 -> new Xxh64();
+            case SHA_256 -> new MessageDigestHasher(sha256());
+        };
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            //every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
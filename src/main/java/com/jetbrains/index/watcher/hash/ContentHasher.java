@@ -0,0 +1,31 @@
+package com.jetbrains.index.watcher.hash;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Incremental hash of the content of a file. Instances are not thread safe
+ * and are meant to be used for a single file.
+ */
+public interface ContentHasher {
+
+    /**
+     * Feed the remaining bytes of the buffer, the position of the buffer is moved to its limit
+     *
+     * @param buffer next part of the content
+     */
+    void update(ByteBuffer buffer);
+
+    default void update(byte[] bytes, int offset, int length) {
+        update(ByteBuffer.wrap(bytes, offset, length));
+    }
+
+    /**
+     * @return hash of all bytes fed so far
+     */
+    byte[] digest();
+
+    /**
+     * @return independent hasher in the same state, feeding either one does not affect the other
+     */
+    ContentHasher copy();
+}
@@ -0,0 +1,137 @@
+package com.jetbrains.index.watcher.hash;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Hashes the content of files through a {@link FileChannel} into a bounded pool of direct buffers.
+ * Any amount of threads may hash concurrently, they share at most {@code maxBuffers} buffers
+ * and wait for each other once all of them are in use.
+ * <p>
+ * A {@link Resumable} hash keeps the state of the hash function, so once the file grew only the appended bytes
+ * have to be read. Whether the file really only grew is judged by the last {@code TAIL_BLOCK_SIZE} bytes
+ * hashed before, a file rewritten with the same size and the same last block is taken for an appended one.
+ */
+public class FileHasher {
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final int DEFAULT_MAX_BUFFERS = 64;
+    private static final int TAIL_BLOCK_SIZE = 4 * 1024;
+
+    private final ContentHash contentHash;
+    private final BufferPool bufferPool;
+
+    public FileHasher(ContentHash contentHash) {
+        this(contentHash, DEFAULT_BUFFER_SIZE, DEFAULT_MAX_BUFFERS);
+    }
+
+    /**
+     * @param contentHash hash function
+     * @param bufferSize  size of a single read
+     * @param maxBuffers  maximal amount of buffers, and so of concurrent reads
+     */
+    public FileHasher(ContentHash contentHash, int bufferSize, int maxBuffers) {
+        this.contentHash = contentHash;
+        this.bufferPool = new BufferPool(bufferSize, maxBuffers);
+    }
+
+    /**
+     * @param file an actual file
+     * @return hash of the whole content of the file
+     * @throws IOException          if the file can not be read
+     * @throws InterruptedException if interrupted while waiting for a buffer
+     */
+    public byte[] hash(File file) throws IOException, InterruptedException {
+        var hasher = contentHash.newHasher();
+        var buffer = bufferPool.acquire();
+        try (var channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (channel.read(buffer) != -1) {
+                hasher.update(buffer.flip());
+                buffer.clear();
+            }
+        } finally {
+            bufferPool.release(buffer);
+        }
+        return hasher.digest();
+    }
+
+    /**
+     * @param file an actual file
+     * @return hash of the whole content of the file, which can be continued with {@link #resume}
+     * @throws IOException          if the file can not be read
+     * @throws InterruptedException if interrupted while waiting for a buffer
+     */
+    public Resumable hashResumable(File file) throws IOException, InterruptedException {
+        try (var channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return continueHash(channel, contentHash.newHasher(), 0);
+        }
+    }
+
+    /**
+     * Hash only the bytes appended to the file since {@code previous}
+     *
+     * @param file     an actual file
+     * @param previous hash of an earlier version of the file
+     * @return hash of the whole content of the file, {@code null} if the file did not grow or its previously hashed
+     * last block changed
+     * @throws IOException          if the file can not be read
+     * @throws InterruptedException if interrupted while waiting for a buffer
+     */
+    public Resumable resume(File file, Resumable previous) throws IOException, InterruptedException {
+        try (var channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() <= previous.length() || tailChecksum(channel, previous.length()) != previous.tailChecksum()) {
+                return null;
+            }
+            return continueHash(channel, previous.state().copy(), previous.length());
+        }
+    }
+
+    private Resumable continueHash(FileChannel channel, ContentHasher hasher, long position)
+            throws IOException, InterruptedException {
+        long length = position;
+        var buffer = bufferPool.acquire();
+        try {
+            int read;
+            while ((read = channel.read(buffer, length)) != -1) {
+                hasher.update(buffer.flip());
+                buffer.clear();
+                length += read;
+            }
+        } finally {
+            bufferPool.release(buffer);
+        }
+        //digest() may reset the hasher, the state is kept untouched for the next resume
+        return new Resumable(hasher.copy().digest(), length, tailChecksum(channel, length), hasher);
+    }
+
+    /**
+     * @return XXH64 of the last {@code TAIL_BLOCK_SIZE} bytes before {@code length}
+     */
+    private static long tailChecksum(FileChannel channel, long length) throws IOException {
+        var block = ByteBuffer.allocate((int) Math.min(TAIL_BLOCK_SIZE, length));
+        long start = length - block.capacity();
+        while (block.hasRemaining() && channel.read(block, start + block.position()) != -1) {
+            //read until the block is full, a truncated file yields a checksum which does not match
+        }
+        var hasher = new Xxh64();
+        hasher.update(block.flip());
+        return hasher.value();
+    }
+
+    public ContentHash contentHash() {
+        return contentHash;
+    }
+
+    /**
+     * Hash of a file together with the state of the hash function after its last byte
+     *
+     * @param digest       hash of the first {@code length} bytes of the file
+     * @param length       amount of bytes hashed
+     * @param tailChecksum checksum of the last bytes hashed, see {@link #resume}
+     * @param state        state after the last byte, only ever continued on a copy
+     */
+    public record Resumable(byte[] digest, long length, long tailChecksum, ContentHasher state) {
+    }
+}
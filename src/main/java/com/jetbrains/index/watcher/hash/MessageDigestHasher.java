@@ -0,0 +1,35 @@
+package com.jetbrains.index.watcher.hash;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+
+/**
+ * {@link ContentHasher} backed by a {@link MessageDigest}
+ */
+class MessageDigestHasher implements ContentHasher {
+    private final MessageDigest messageDigest;
+
+    MessageDigestHasher(MessageDigest messageDigest) {
+        this.messageDigest = messageDigest;
+    }
+
+    @Override
+    public void update(ByteBuffer buffer) {
+        messageDigest.update(buffer);
+    }
+
+    @Override
+    public byte[] digest() {
+        return messageDigest.digest();
+    }
+
+    @Override
+    public ContentHasher copy() {
+        try {
+            return new MessageDigestHasher((MessageDigest) messageDigest.clone());
+        } catch (CloneNotSupportedException e) {
+            //the digests of the default providers are cloneable
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.jetbrains.index.watcher.hash;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Streaming implementation of the XXH64 hash (<a href="https://github.com/Cyan4973/xxHash">xxHash</a>).
+ * <p>
+ * The input is consumed in stripes of 32 bytes, each of the four lanes of a stripe is folded into its own
+ * accumulator. Bytes which do not fill a whole stripe are kept in {@code pending} until the next update
+ * or until {@link #digest()} mixes them into the result. The digest is the 64 bit value in big endian order.
+ */
+public final class Xxh64 implements ContentHasher {
+    private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME_3 = 0x165667B19E3779F9L;
+    private static final long PRIME_4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME_5 = 0x27D4EB2F165667C5L;
+    private static final int STRIPE = 32;
+    private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final long seed;
+    private final byte[] pending = new byte[STRIPE];
+    private int pendingSize;
+    private long totalLength;
+    private long v1;
+    private long v2;
+    private long v3;
+    private long v4;
+
+    public Xxh64() {
+        this(0);
+    }
+
+    public Xxh64(long seed) {
+        this.seed = seed;
+        this.v1 = seed + PRIME_1 + PRIME_2;
+        this.v2 = seed + PRIME_2;
+        this.v3 = seed;
+        this.v4 = seed - PRIME_1;
+    }
+
+    @Override
+    public void update(ByteBuffer buffer) {
+        int length = buffer.remaining();
+        totalLength += length;
+        if (pendingSize + length < STRIPE) {
+            buffer.get(pending, pendingSize, length);
+            pendingSize += length;
+            return;
+        }
+        if (pendingSize > 0) {
+            buffer.get(pending, pendingSize, STRIPE - pendingSize);
+            stripe((long) LONG.get(pending, 0), (long) LONG.get(pending, 8),
+                    (long) LONG.get(pending, 16), (long) LONG.get(pending, 24));
+            pendingSize = 0;
+        }
+        var order = buffer.order();
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            while (buffer.remaining() >= STRIPE) {
+                stripe(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong());
+            }
+        } finally {
+            buffer.order(order);
+        }
+        pendingSize = buffer.remaining();
+        buffer.get(pending, 0, pendingSize);
+    }
+
+    private void stripe(long lane1, long lane2, long lane3, long lane4) {
+        v1 = round(v1, lane1);
+        v2 = round(v2, lane2);
+        v3 = round(v3, lane3);
+        v4 = round(v4, lane4);
+    }
+
+    /**
+     * @return the hash of all bytes fed so far, the hasher can still be updated afterward
+     */
+    public long value() {
+        long hash;
+        if (totalLength >= STRIPE) {
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = mergeRound(hash, v1);
+            hash = mergeRound(hash, v2);
+            hash = mergeRound(hash, v3);
+            hash = mergeRound(hash, v4);
+        } else {
+            hash = seed + PRIME_5;
+        }
+        hash += totalLength;
+        int i = 0;
+        for (; i + 8 <= pendingSize; i += 8) {
+            hash ^= round(0, (long) LONG.get(pending, i));
+            hash = Long.rotateLeft(hash, 27) * PRIME_1 + PRIME_4;
+        }
+        if (i + 4 <= pendingSize) {
+            hash ^= Integer.toUnsignedLong((int) INT.get(pending, i)) * PRIME_1;
+            hash = Long.rotateLeft(hash, 23) * PRIME_2 + PRIME_3;
+            i += 4;
+        }
+        for (; i < pendingSize; i++) {
+            hash ^= (pending[i] & 0xFFL) * PRIME_5;
+            hash = Long.rotateLeft(hash, 11) * PRIME_1;
+        }
+        hash ^= hash >>> 33;
+        hash *= PRIME_2;
+        hash ^= hash >>> 29;
+        hash *= PRIME_3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    @Override
+    public byte[] digest() {
+        return ByteBuffer.allocate(Long.BYTES).putLong(value()).array();
+    }
+
+    @Override
+    public Xxh64 copy() {
+        var copy = new Xxh64(seed);
+        System.arraycopy(pending, 0, copy.pending, 0, pendingSize);
+        copy.pendingSize = pendingSize;
+        copy.totalLength = totalLength;
+        copy.v1 = v1;
+        copy.v2 = v2;
+        copy.v3 = v3;
+        copy.v4 = v4;
+        return copy;
+    }
+
+    private static long round(long accumulator, long lane) {
+        accumulator += lane * PRIME_2;
+        accumulator = Long.rotateLeft(accumulator, 31);
+        return accumulator * PRIME_1;
+    }
+
+    private static long mergeRound(long hash, long accumulator) {
+        hash ^= round(0, accumulator);
+        return hash * PRIME_1 + PRIME_4;
+    }
+}
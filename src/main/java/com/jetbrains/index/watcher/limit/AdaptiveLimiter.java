@@ -0,0 +1,191 @@
+package com.jetbrains.index.watcher.limit;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Semaphore whose amount of permits follows the observed latency of the guarded operations.
+ * <p>
+ * Two moving averages of the latency are kept, a short term one reacting within a few samples and a long term one
+ * acting as the baseline of a healthy device. While the short term latency stays close to the baseline and all permits
+ * are in use, the limit grows by one. Once the short term latency exceeds {@code TOLERANCE} times the baseline the
+ * device is considered saturated and the limit shrinks by {@code BACKOFF}, at most once per {@code limit} samples
+ * so a single slow batch does not collapse it. The limit always stays within {@code [minLimit, maxLimit]}.
+ * <p>
+ * Waiting uses a {@link ReentrantLock}, so virtual threads waiting for a permit do not pin their carrier.
+ * A release only wakes as many waiters as permits are free, tens of thousands of waiting inspections are not all
+ * woken up to find the permit taken.
+ */
+public class AdaptiveLimiter {
+    private static final double SHORT_TERM_WEIGHT = 0.2;
+    private static final double LONG_TERM_WEIGHT = 0.01;
+    private static final double TOLERANCE = 2.0;
+    private static final double BACKOFF = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder totalLatencyNanos = new LongAdder();
+
+    //guarded by lock
+    private int limit;
+    private int inFlight;
+    private int waiting;
+    private int maxWaiting;
+    private double shortTermLatency;
+    private double longTermLatency;
+    private int samplesSinceDecrease;
+
+    /**
+     * @param initialLimit permits available before any latency was observed
+     * @param minLimit     the limit never drops below this amount
+     * @param maxLimit     the limit never grows above this amount
+     */
+    public AdaptiveLimiter(int initialLimit, int minLimit, int maxLimit) {
+        if (minLimit <= 0 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 0 < min <= initial <= max");
+        }
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * Wait until a permit is available. Every successful call must be followed by {@link #release(long)}.
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            if (inFlight >= limit) {
+                waiting++;
+                maxWaiting = Math.max(maxWaiting, waiting);
+                try {
+                    while (inFlight >= limit) {
+                        released.await();
+                    }
+                } catch (InterruptedException e) {
+                    //the signal may have been meant for this thread, another waiter takes the permit instead
+                    if (inFlight < limit) {
+                        released.signal();
+                    }
+                    throw e;
+                } finally {
+                    waiting--;
+                }
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Give the permit back and adjust the limit to the latency of the operation
+     *
+     * @param latencyNanos time the operation took while holding the permit
+     */
+    public void release(long latencyNanos) {
+        completed.increment();
+        totalLatencyNanos.add(latencyNanos);
+        lock.lock();
+        try {
+            boolean saturated = inFlight >= limit;
+            inFlight--;
+            adjust(latencyNanos, saturated);
+            //more than one permit is free if the limit grew
+            int free = Math.min(limit - inFlight, waiting);
+            for (int i = 0; i < free; i++) {
+                released.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void adjust(long latencyNanos, boolean saturated) {
+        if (longTermLatency == 0) {
+            shortTermLatency = latencyNanos;
+            longTermLatency = latencyNanos;
+            return;
+        }
+        shortTermLatency += (latencyNanos - shortTermLatency) * SHORT_TERM_WEIGHT;
+        longTermLatency += (latencyNanos - longTermLatency) * LONG_TERM_WEIGHT;
+        samplesSinceDecrease++;
+        if (shortTermLatency > longTermLatency * TOLERANCE) {
+            if (samplesSinceDecrease >= limit) {
+                limit = Math.max(minLimit, (int) (limit * BACKOFF));
+                samplesSinceDecrease = 0;
+            }
+        } else if (saturated && limit < maxLimit) {
+            limit++;
+        }
+    }
+
+    /**
+     * @return current amount of permits
+     */
+    public int limit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return amount of operations holding a permit
+     */
+    public int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return amount of threads waiting for a permit
+     */
+    public int queueDepth() {
+        lock.lock();
+        try {
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return highest amount of threads which waited for a permit at the same time
+     */
+    public int maxQueueDepth() {
+        lock.lock();
+        try {
+            return maxWaiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return amount of released permits
+     */
+    public long completed() {
+        return completed.sum();
+    }
+
+    /**
+     * @return average latency of all released permits in nanoseconds, 0 if there were none
+     */
+    public long averageLatencyNanos() {
+        long count = completed.sum();
+        return count == 0 ? 0 : totalLatencyNanos.sum() / count;
+    }
+}
@@ -0,0 +1,82 @@
+package com.jetbrains.index.watcher.limit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bounds the amount of concurrent file inspections of every watched root with its own {@link AdaptiveLimiter}.
+ * Roots on network file systems start with and are capped at lower limits than local ones,
+ * since their latency grows much faster with the amount of concurrent requests.
+ * <p>
+ * Limiters are created on first use and kept for the lifetime of the instance, so the metrics
+ * of every root can be read through {@link #limiters()} while the watcher is running.
+ */
+public class InspectionLimits {
+    private static final Logger log = LoggerFactory.getLogger(InspectionLimits.class);
+    private static final Set<String> NETWORK_FILE_SYSTEMS = Set.of(
+            "nfs", "nfs4", "cifs", "smb", "smbfs", "smb2", "smb3", "afpfs", "9p", "davfs", "webdav", "fuse.sshfs");
+
+    private final Settings local;
+    private final Settings network;
+    private final Map<Path, AdaptiveLimiter> limiters = new ConcurrentHashMap<>();
+
+    /**
+     * @param local   limits of roots on local devices
+     * @param network limits of roots on network file systems
+     */
+    public InspectionLimits(Settings local, Settings network) {
+        this.local = local;
+        this.network = network;
+    }
+
+    public static InspectionLimits defaults() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        return new InspectionLimits(new Settings(Math.max(4, cores * 2), 1, Math.max(64, cores * 8)),
+                new Settings(4, 1, 16));
+    }
+
+    /**
+     * @param root absolute path of a watched file or directory
+     * @return limiter shared by all inspections under the root
+     */
+    public AdaptiveLimiter limiter(Path root) {
+        return limiters.computeIfAbsent(root, this::create);
+    }
+
+    /**
+     * @return limiters of all roots which were inspected so far
+     */
+    public Map<Path, AdaptiveLimiter> limiters() {
+        return Map.copyOf(limiters);
+    }
+
+    private AdaptiveLimiter create(Path root) {
+        var settings = isNetwork(root) ? network : local;
+        log.debug("Limiting inspections of {} to {}", root, settings);
+        return new AdaptiveLimiter(settings.initial(), settings.min(), settings.max());
+    }
+
+    private static boolean isNetwork(Path root) {
+        try {
+            var type = Files.getFileStore(root).type().toLowerCase(Locale.ROOT);
+            return NETWORK_FILE_SYSTEMS.contains(type);
+        } catch (IOException e) {
+            log.debug("Unable to determine file store of {}", root, e);
+            return false;
+        }
+    }
+
+    /**
+     * Limits of a single {@link AdaptiveLimiter}
+     */
+    public record Settings(int initial, int min, int max) {
+    }
+}
@@ -0,0 +1,230 @@
+package com.jetbrains.index.watcher.task;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Cached listings of all watched directories used by the polling scan.
+ * <p>
+ * The last modified time of a directory changes whenever an entry is added, removed or renamed, so a directory
+ * is only listed again if its time differs from the cached one. Deleted files are found by comparing the new listing
+ * with the cached one instead of checking every known file for existence. A listing taken within {@code racyWindow}
+ * of the last modification is not trusted, since a change within the same timestamp granularity would go unnoticed.
+ * <p>
+ * Writing to an existing file does not touch its directory, so {@link Scan#files()} still contains all files
+ * and their metadata has to be compared by the caller. Excluded entries are left out of the listings,
+ * so excluded directories are never listed.
+ * <p>
+ * Editing an ignore file in place does not touch its directory either, so the last modified times of the ignore files
+ * of a listing are compared as well. Once they differ, the directory and every cached listing below it are listed
+ * again with the new rules: files which are excluded now are reported as deleted and files which are no longer
+ * excluded are found like new ones. Instances are not thread safe.
+ */
+class DirectoryTree {
+    private static final Logger log = LoggerFactory.getLogger(DirectoryTree.class);
+
+    private final Duration racyWindow;
+    private final TraversalFilter traversal;
+    private final Map<Path, Listing> listings = new HashMap<>();
+    //cached directories which have to be listed again since the rules of an enclosing directory changed
+    private final Set<Path> stale = new HashSet<>();
+    private long listed;
+
+    DirectoryTree(Duration racyWindow, TraversalFilter traversal) {
+        this.racyWindow = racyWindow;
+        this.traversal = traversal;
+    }
+
+    /**
+     * Walk the roots, listing only directories which changed since the previous scan
+     *
+     * @param roots absolute paths of watched files and directories
+     * @return all current files and the files which disappeared since the previous scan
+     */
+    Scan scan(Collection<Path> roots) {
+        var scan = new Scan(new ArrayList<>(), new ArrayList<>());
+        for (Path root : roots) {
+            if (Files.isDirectory(root)) {
+                visit(root, scan);
+            } else {
+                forget(root, scan);
+                if (Files.isRegularFile(root)) {
+                    scan.files.add(root.toFile());
+                }
+            }
+        }
+        return scan;
+    }
+
+    private void visit(Path directory, Scan scan) {
+        var cached = listings.get(directory);
+        boolean invalidated = stale.remove(directory);
+        Listing listing;
+        try {
+            var lastModified = Files.readAttributes(directory, BasicFileAttributes.class).lastModifiedTime();
+            boolean current = cached != null && !invalidated && cached.isCurrent(lastModified, racyWindow)
+                    && cached.hasIgnoreFiles(lastModifiedTimes(cached.ignoreFiles.keySet()), racyWindow);
+            listing = current ? cached : list(directory, lastModified);
+        } catch (IOException e) {
+            //Removed while scanning, the listing of the parent reports it on the next scan
+            log.debug("Unable to list {}", directory, e);
+            return;
+        }
+        if (cached != null && listing != cached && !cached.hasIgnoreFiles(listing.ignoreFiles, racyWindow)) {
+            //the rules changed, listings below were filtered with the previous ones
+            invalidateBelow(directory);
+        }
+        if (cached != null && listing != cached) {
+            for (Path file : cached.files) {
+                if (!listing.files.contains(file)) {
+                    scan.deletedFiles.add(file.toFile());
+                }
+            }
+            for (Path subdirectory : cached.directories) {
+                if (!listing.directories.contains(subdirectory)) {
+                    forget(subdirectory, scan);
+                }
+            }
+        }
+        listings.put(directory, listing);
+        for (Path file : listing.files) {
+            scan.files.add(file.toFile());
+        }
+        for (Path subdirectory : listing.directories) {
+            visit(subdirectory, scan);
+        }
+    }
+
+    private Listing list(Path directory, FileTime lastModified) throws IOException {
+        //taken before listing, so a change during the listing is treated as racy
+        var listedAt = Instant.now();
+        //the ignore files of the directory may have changed as well
+        traversal.reload(directory);
+        Set<Path> files = new HashSet<>();
+        Set<Path> directories = new HashSet<>();
+        Map<Path, FileTime> ignoreFiles = new HashMap<>();
+        try (DirectoryStream<Path> children = Files.newDirectoryStream(directory)) {
+            for (Path child : children) {
+                boolean isDirectory = Files.isDirectory(child);
+                if (!isDirectory && traversal.isIgnoreFile(child)) {
+                    ignoreFiles.putAll(lastModifiedTimes(Set.of(child)));
+                }
+                if (traversal.excludes(child, isDirectory)) {
+                    continue;
+                }
+                if (isDirectory) {
+                    directories.add(child);
+                } else {
+                    files.add(child);
+                }
+            }
+        }
+        listed++;
+        log.trace("Listed directory {}", directory);
+        return new Listing(lastModified, listedAt, files, directories, ignoreFiles);
+    }
+
+    /**
+     * @return last modified times of the files which still exist
+     */
+    private static Map<Path, FileTime> lastModifiedTimes(Set<Path> files) {
+        if (files.isEmpty()) {
+            return Map.of();
+        }
+        Map<Path, FileTime> times = new HashMap<>();
+        for (Path file : files) {
+            try {
+                times.put(file, Files.getLastModifiedTime(file));
+            } catch (IOException e) {
+                log.debug("Unable to read the last modified time of {}", file, e);
+            }
+        }
+        return times;
+    }
+
+    /**
+     * Make every cached listing below the directory be listed again on its next visit
+     */
+    private void invalidateBelow(Path directory) {
+        for (Path cached : listings.keySet()) {
+            if (!cached.equals(directory) && cached.startsWith(directory)) {
+                stale.add(cached);
+            }
+        }
+    }
+
+    /**
+     * Drop the cached listings of a removed directory and report all files it contained
+     */
+    private void forget(Path directory, Scan scan) {
+        stale.remove(directory);
+        var listing = listings.remove(directory);
+        if (listing == null) {
+            return;
+        }
+        for (Path file : listing.files) {
+            scan.deletedFiles.add(file.toFile());
+        }
+        for (Path subdirectory : listing.directories) {
+            forget(subdirectory, scan);
+        }
+    }
+
+    /**
+     * @return amount of directory listings taken so far
+     */
+    long listedCount() {
+        return listed;
+    }
+
+    /**
+     * @param files        every file currently found under the roots
+     * @param deletedFiles files which were found by the previous scan but are gone now
+     */
+    record Scan(List<File> files, List<File> deletedFiles) {
+    }
+
+    /**
+     * @param ignoreFiles ignore files of the directory with their last modified time when it was listed
+     */
+    private record Listing(FileTime lastModified, Instant listedAt, Set<Path> files, Set<Path> directories,
+                           Map<Path, FileTime> ignoreFiles) {
+
+        boolean isCurrent(FileTime current, Duration racyWindow) {
+            return lastModified.equals(current) && lastModified.toInstant().isBefore(listedAt.minus(racyWindow));
+        }
+
+        /**
+         * @param current ignore files of the directory with their last modified time read just now
+         * @return true if the ignore files can not have changed since the listing
+         */
+        boolean hasIgnoreFiles(Map<Path, FileTime> current, Duration racyWindow) {
+            if (!ignoreFiles.equals(current)) {
+                return false;
+            }
+            for (FileTime time : current.values()) {
+                if (!time.toInstant().isBefore(listedAt.minus(racyWindow))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.jetbrains.index.watcher.task;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Thin adapter over a {@link WatchService} which takes care of recursive registration of directories
+ * and translates raw watch events into {@link Change}s of concrete paths.
+ * <p>
+ * A {@link WatchService} only watches direct children of a registered directory, so every directory
+ * of a watched tree is registered separately. Paths which are single files are watched through their parent
+ * directory and changes of the siblings are filtered out.
+ */
+class DirectoryWatcher implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(DirectoryWatcher.class);
+
+    private final WatchService watchService;
+    private final TraversalFilter traversal;
+    private final Map<WatchKey, Path> directories = new ConcurrentHashMap<>();
+    //directories which are watched only because of the single files they contain
+    private final Map<Path, Set<Path>> watchedFiles = new ConcurrentHashMap<>();
+    private final Set<Path> watchedTrees = ConcurrentHashMap.newKeySet();
+
+    DirectoryWatcher(TraversalFilter traversal) throws IOException {
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.traversal = traversal;
+    }
+
+    /**
+     * Watch the given path, either a whole directory tree or a single file
+     *
+     * @param path directory or file
+     */
+    void register(Path path) throws IOException {
+        if (Files.isDirectory(path)) {
+            registerTree(path);
+        } else if (Files.isRegularFile(path)) {
+            var parent = path.toAbsolutePath().getParent();
+            watchedFiles.computeIfAbsent(parent, _ -> ConcurrentHashMap.newKeySet()).add(path.toAbsolutePath());
+            registerDirectory(parent);
+        } else {
+            log.warn("Unable to watch {}, it is neither a file nor a directory", path);
+        }
+    }
+
+    /**
+     * Register the directory and all of its subdirectories which are not excluded
+     *
+     * @param root directory
+     */
+    void registerTree(Path root) throws IOException {
+        watchedTrees.add(root.toAbsolutePath());
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (traversal.excludes(dir.toAbsolutePath(), true)) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                registerDirectory(dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                //The directory was removed while walking, the deletion event reports it
+                log.debug("Unable to register {}", file, exc);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void registerDirectory(Path dir) throws IOException {
+        var key = dir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+        directories.put(key, dir);
+        log.trace("Watching directory {}", dir);
+    }
+
+    /**
+     * Wait until at least one change is available and drain all changes which are queued at that time
+     *
+     * @param timeout maximal time to wait for the first change
+     * @param unit    unit of the timeout
+     * @return changes in the order reported by the operating system, empty if the timeout elapsed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    List<Change> poll(long timeout, TimeUnit unit) throws InterruptedException {
+        List<Change> changes = new ArrayList<>();
+        var key = watchService.poll(timeout, unit);
+        while (key != null) {
+            collect(key, changes);
+            key = watchService.poll();
+        }
+        return changes;
+    }
+
+    private void collect(WatchKey key, List<Change> changes) {
+        var dir = directories.get(key);
+        if (dir == null) {
+            key.cancel();
+            return;
+        }
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                changes.add(new Change(Kind.OVERFLOW, dir));
+                continue;
+            }
+            var child = dir.resolve((Path) event.context());
+            if (!isWatched(dir, child)) {
+                continue;
+            }
+            if (event.kind() == ENTRY_CREATE) {
+                changes.add(new Change(Kind.CREATED, child));
+            } else if (event.kind() == ENTRY_MODIFY) {
+                changes.add(new Change(Kind.MODIFIED, child));
+            } else if (event.kind() == ENTRY_DELETE) {
+                changes.add(new Change(Kind.DELETED, child));
+            }
+        }
+        if (!key.reset()) {
+            //The directory itself is gone
+            directories.remove(key);
+        }
+    }
+
+    private boolean isWatched(Path dir, Path child) {
+        var absoluteDir = dir.toAbsolutePath();
+        for (var tree : watchedTrees) {
+            if (absoluteDir.startsWith(tree)) {
+                return true;
+            }
+        }
+        var files = watchedFiles.get(absoluteDir);
+        return files != null && files.contains(child.toAbsolutePath());
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    enum Kind {
+        CREATED, MODIFIED, DELETED,
+        /**
+         * Events of the directory were lost, {@link Change#path()} is the directory
+         */
+        OVERFLOW
+    }
+
+    record Change(Kind kind, Path path) {
+    }
+}
@@ -0,0 +1,62 @@
+package com.jetbrains.index.watcher.task;
+
+import com.jetbrains.index.watcher.FileChangeEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Collects the events published by concurrent inspections and hands them to the publisher as one batch.
+ * A batch is published when the scan cycle ends ({@link #flush()}) or as soon as {@code maxBatchSize}
+ * events were collected. Batches are published one at a time in the order their events were added.
+ * Deletions and creations of the same content within a batch are published as renames, see {@link RenameDetector}.
+ */
+class EventBatcher {
+    private final Consumer<List<FileChangeEvent>> publisher;
+    private final int maxBatchSize;
+    //a ReentrantLock instead of synchronized, inspections run on virtual threads
+    private final ReentrantLock lock = new ReentrantLock();
+    private List<FileChangeEvent> batch = new ArrayList<>();
+
+    EventBatcher(Consumer<List<FileChangeEvent>> publisher, int maxBatchSize) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        this.publisher = publisher;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    void add(FileChangeEvent event) {
+        lock.lock();
+        try {
+            batch.add(event);
+            if (batch.size() >= maxBatchSize) {
+                publish();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Publish the collected events, if there are any
+     */
+    void flush() {
+        lock.lock();
+        try {
+            if (!batch.isEmpty()) {
+                publish();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void publish() {
+        var events = List.copyOf(RenameDetector.detect(batch));
+        batch = new ArrayList<>();
+        publisher.accept(events);
+    }
+}
@@ -0,0 +1,200 @@
+package com.jetbrains.index.watcher.task;
+
+import com.jetbrains.index.watcher.ChangeType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Background reconciliation of the watched paths used by {@link com.jetbrains.index.watcher.WatchMode#HYBRID}.
+ * Change notifications can get lost (queue overflow, network mounts), so every {@code interval} a full
+ * scan is started which compares the file system with the tracked state.
+ * <p>
+ * The scan never runs in one go. It is advanced by {@link #tick(Instant)} from the watcher loop and every
+ * call may only check as many paths as the budget of {@code pathsPerSecond} accumulated since the previous call,
+ * so the I/O of a scan is spread evenly over time. Any change found by the scan is drift, it is counted and reported
+ * once the scan completes.
+ */
+class Reconciler {
+    private static final Logger log = LoggerFactory.getLogger(Reconciler.class);
+
+    private final List<Path> roots;
+    private final TraversalFilter traversal;
+    private final Duration interval;
+    private final int pathsPerSecond;
+    private final Function<File, ChangeType> inspector;
+    private final Supplier<Collection<File>> trackedFiles;
+    private final Predicate<File> deletionCheck;
+
+    private Instant nextScan;
+    private Instant lastTick;
+    private double budget;
+    private Scan scan;
+    private long totalDrift;
+
+    /**
+     * @param roots          watched files and directories
+     * @param traversal      decides which paths are skipped
+     * @param interval       time between the end of one scan and the start of the next one
+     * @param pathsPerSecond maximal amount of files and directories checked per second
+     * @param inspector      inspects a single file and returns the change it published, if any
+     * @param trackedFiles   snapshot of the currently tracked files
+     * @param deletionCheck  publishes the deletion of a tracked file if it no longer exists and returns true if it did
+     */
+    Reconciler(Collection<Path> roots, TraversalFilter traversal, Duration interval, int pathsPerSecond, Function<File, ChangeType> inspector,
+               Supplier<Collection<File>> trackedFiles, Predicate<File> deletionCheck) {
+        if (pathsPerSecond <= 0) {
+            throw new IllegalArgumentException("Reconciliation rate must be positive");
+        }
+        this.roots = List.copyOf(roots);
+        this.traversal = traversal;
+        this.interval = interval;
+        this.pathsPerSecond = pathsPerSecond;
+        this.inspector = inspector;
+        this.trackedFiles = trackedFiles;
+        this.deletionCheck = deletionCheck;
+    }
+
+    /**
+     * Start a scan when it is due and advance the running scan by the accumulated budget
+     *
+     * @param now current time
+     */
+    void tick(Instant now) {
+        if (lastTick == null) {
+            lastTick = now;
+            nextScan = now.plus(interval);
+            return;
+        }
+        //At most one second worth of budget is accumulated to avoid bursts after long pauses
+        budget = Math.min(pathsPerSecond, budget + Duration.between(lastTick, now).toNanos() * pathsPerSecond / 1e9);
+        lastTick = now;
+        if (scan == null) {
+            if (now.isBefore(nextScan)) {
+                return;
+            }
+            log.debug("Starting reconciliation scan");
+            scan = new Scan(now);
+        }
+        while (budget >= 1 && scan.step()) {
+            budget--;
+        }
+        if (scan.isFinished()) {
+            scan.report(now);
+            totalDrift += scan.drift();
+            scan = null;
+            nextScan = now.plus(interval);
+        }
+    }
+
+    /**
+     * @return amount of changes found by all completed scans
+     */
+    long totalDrift() {
+        return totalDrift;
+    }
+
+    /**
+     * A single walk over all roots followed by a verification of all tracked files.
+     * Directories are listed one at a time so no directory handle stays open between steps.
+     */
+    private class Scan {
+        private final Instant started;
+        private final Deque<Path> pending = new ArrayDeque<>();
+        private Iterator<File> tracked;
+        private long checked;
+        private long created;
+        private long updated;
+        private long deleted;
+
+        Scan(Instant started) {
+            this.started = started;
+            pending.addAll(roots);
+        }
+
+        /**
+         * Check a single path
+         *
+         * @return false if there is nothing left to check
+         */
+        boolean step() {
+            if (!pending.isEmpty()) {
+                var path = pending.poll();
+                if (Files.isDirectory(path)) {
+                    list(path);
+                } else if (Files.isRegularFile(path)) {
+                    count(inspector.apply(path.toFile()));
+                }
+                checked++;
+                return true;
+            }
+            if (tracked == null) {
+                tracked = List.copyOf(trackedFiles.get()).iterator();
+            }
+            if (tracked.hasNext()) {
+                if (deletionCheck.test(tracked.next())) {
+                    deleted++;
+                }
+                checked++;
+                return true;
+            }
+            return false;
+        }
+
+        boolean isFinished() {
+            return pending.isEmpty() && tracked != null && !tracked.hasNext();
+        }
+
+        private void list(Path directory) {
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(directory)) {
+                for (Path child : children) {
+                    var path = child.toAbsolutePath();
+                    if (!traversal.excludes(path, Files.isDirectory(path))) {
+                        pending.push(path);
+                    }
+                }
+            } catch (IOException e) {
+                log.debug("Unable to list {} during reconciliation", directory, e);
+            }
+        }
+
+        private void count(ChangeType change) {
+            if (change == ChangeType.CREATE) {
+                created++;
+            } else if (change == ChangeType.UPDATE) {
+                updated++;
+            } else if (change == ChangeType.DELETE) {
+                deleted++;
+            }
+        }
+
+        long drift() {
+            return created + updated + deleted;
+        }
+
+        void report(Instant finished) {
+            var duration = Duration.between(started, finished);
+            if (drift() > 0) {
+                log.warn("Reconciliation found drift in {} ms over {} paths: {} created, {} updated, {} deleted",
+                        duration.toMillis(), checked, created, updated, deleted);
+            } else {
+                log.debug("Reconciliation checked {} paths in {} ms without drift", checked, duration.toMillis());
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.jetbrains.index.watcher.task;
+
+import com.jetbrains.index.watcher.ChangeType;
+import com.jetbrains.index.watcher.DefaultFileEvent;
+import com.jetbrains.index.watcher.FileChangeEvent;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Replaces a deletion and a creation of the same content within one batch by a single {@link ChangeType#RENAME}.
+ * A moved directory or a checkout is then published as renames and its files do not have to be indexed again.
+ * <p>
+ * Only paths without any other event in the batch are paired, so the order of the remaining events does not matter.
+ * Several deletions of the same content are paired with the creations in the order they were published.
+ * The rename takes the place of the creation.
+ */
+final class RenameDetector {
+
+    private RenameDetector() {
+    }
+
+    /**
+     * @param events batch of events in the order they were published
+     * @return the batch with paired deletions and creations replaced by renames
+     */
+    static List<FileChangeEvent> detect(List<FileChangeEvent> events) {
+        Map<String, Long> eventsPerPath = events.stream()
+                .collect(Collectors.groupingBy(FileChangeEvent::filePath, Collectors.counting()));
+        Predicate<FileChangeEvent> pairable = event -> event.contentDigest() != null
+                && eventsPerPath.get(event.filePath()) == 1;
+        Map<ByteBuffer, Deque<FileChangeEvent>> deletions = new HashMap<>();
+        for (var event : events) {
+            if (event.change() == ChangeType.DELETE && pairable.test(event)) {
+                deletions.computeIfAbsent(ByteBuffer.wrap(event.contentDigest()), _ -> new ArrayDeque<>()).add(event);
+            }
+        }
+        if (deletions.isEmpty()) {
+            return events;
+        }
+        Set<FileChangeEvent> paired = Collections.newSetFromMap(new IdentityHashMap<>());
+        Map<FileChangeEvent, FileChangeEvent> renames = new IdentityHashMap<>();
+        for (var event : events) {
+            if (event.change() != ChangeType.CREATE || !pairable.test(event)) {
+                continue;
+            }
+            var candidates = deletions.get(ByteBuffer.wrap(event.contentDigest()));
+            if (candidates != null && !candidates.isEmpty()) {
+                var deletion = candidates.poll();
+                paired.add(deletion);
+                renames.put(event, DefaultFileEvent.rename(deletion.filePath(), event.filePath(), event.contentDigest()));
+            }
+        }
+        if (renames.isEmpty()) {
+            return events;
+        }
+        List<FileChangeEvent> result = new ArrayList<>(events.size() - renames.size());
+        for (var event : events) {
+            if (!paired.contains(event)) {
+                result.add(renames.getOrDefault(event, event));
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,65 @@
+package com.jetbrains.index.watcher.task;
+
+import com.jetbrains.index.watcher.filter.PathFilter;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Applies the {@link PathFilter} to absolute paths by resolving the watched root each path belongs to
+ */
+class TraversalFilter {
+    private final List<Path> roots;
+    private final PathFilter pathFilter;
+
+    TraversalFilter(List<Path> roots, PathFilter pathFilter) {
+        this.roots = List.copyOf(roots);
+        this.pathFilter = pathFilter;
+    }
+
+    /**
+     * @return the most specific watched root containing the path, {@code null} if there is none
+     */
+    Path rootOf(Path path) {
+        Path root = null;
+        for (Path candidate : roots) {
+            if (path.startsWith(candidate) && (root == null || candidate.getNameCount() > root.getNameCount())) {
+                root = candidate;
+            }
+        }
+        return root;
+    }
+
+    boolean excludes(Path path, boolean directory) {
+        var root = rootOf(path);
+        return root != null && pathFilter.excludes(root, path, directory);
+    }
+
+    /**
+     * @return true if the file or any directory between its root and the file is excluded
+     */
+    boolean excludesFileOrAncestor(Path file) {
+        var root = rootOf(file);
+        if (root == null) {
+            return false;
+        }
+        for (Path directory = file.getParent(); directory != null && directory.startsWith(root) && !directory.equals(root);
+             directory = directory.getParent()) {
+            if (pathFilter.excludes(root, directory, true)) {
+                return true;
+            }
+        }
+        return pathFilter.excludes(root, file, false);
+    }
+
+    /**
+     * Read the ignore files of the directory again
+     */
+    void reload(Path directory) {
+        pathFilter.reload(directory);
+    }
+
+    boolean isIgnoreFile(Path path) {
+        return pathFilter.isIgnoreFile(path);
+    }
+}
@@ -1,23 +1,39 @@
 package com.jetbrains.index.watcher.task;
 
+import com.jetbrains.index.jfr.InspectionEvent;
+import com.jetbrains.index.jfr.ScanEvent;
+import com.jetbrains.index.metrics.Histogram;
+import com.jetbrains.index.watcher.BatchFSListener;
 import com.jetbrains.index.watcher.ChangeType;
 import com.jetbrains.index.watcher.DefaultFileEvent;
 import com.jetbrains.index.watcher.FileChangeEvent;
+import com.jetbrains.index.watcher.WatchMode;
+import com.jetbrains.index.watcher.WatcherConfig;
+import com.jetbrains.index.watcher.admission.AdmissionPolicy;
+import com.jetbrains.index.watcher.hash.FileHasher;
+import com.jetbrains.index.watcher.limit.AdaptiveLimiter;
+import com.jetbrains.index.watcher.limit.InspectionLimits;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.StructuredTaskScope;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * Task responsible for reacting to file system changes.
@@ -26,55 +42,362 @@ import java.util.function.Consumer;
  * 2) a file has changed
  * 3) a file has been deleted
  * <p>
- * Detection if a file has been changed is done with a combination of FS last modified time
- * and a digest of the contents of the file (a user can just save a file without updating it)
+ * Detection if a file has been changed is tiered from the cheapest to the most expensive check:
+ * 1) size, last modified time and file key (inode) are compared to the previous inspection
+ * 2) only if they differ the content is hashed with the configured {@link com.jetbrains.index.watcher.hash.ContentHash}
+ * and compared to the previous hash (a user can just save a file without updating it)
+ * 3) a file of at least {@code APPEND_DETECTION_SIZE} bytes keeps the state of its hash, if it grew without changing
+ * its file key and its last previously hashed block, only the appended bytes are hashed and
+ * {@link ChangeType#APPEND} is published with the previous length as offset
+ * Metadata is only trusted once the file was last modified {@code RACY_WINDOW} before it was inspected,
+ * otherwise a write in the same timestamp granularity as the inspection could go unnoticed.
+ * <p>
+ * Every file still gets its own virtual thread, but reading its content waits for a permit of the
+ * {@link AdaptiveLimiter} of the watched path containing the file, see {@link InspectionLimits}. The metadata check
+ * runs without a permit, so the limiter only measures the reads it is meant to pace.
+ * <p>
+ * Before a new or modified file is read it has to pass the {@link AdmissionPolicy}. Rejected files
+ * are remembered with their last modified time so they are not evaluated again until they change.
+ * A tracked file which stops passing the policy is reported as deleted.
+ * <p>
+ * Changes are found in one of three {@link WatchMode}s:
+ * 1) {@link WatchMode#POLLING} walks all paths every {@code SLEEP_TIME_MS}, listing only directories whose
+ * last modified time changed (see {@link DirectoryTree})
+ * 2) {@link WatchMode#EVENTS} walks all paths once and afterward only inspects paths reported by
+ * the {@link java.nio.file.WatchService}. If the notifications of a directory overflow, only that
+ * directory is walked again. Should the platform not provide a watch service, the task falls back to polling.
+ * 3) {@link WatchMode#HYBRID} works like {@link WatchMode#EVENTS} and additionally lets a {@link Reconciler}
+ * walk all paths on a fixed interval at a limited rate, catching notifications the operating system dropped.
+ * <p>
+ * A change of an ignore file applies to the tracked files below its directory: files which are excluded now are
+ * reported as deleted and files which are no longer excluded as created. Polling lists the directories below again,
+ * see {@link DirectoryTree}, the other modes walk the directory of the ignore file again.
+ * <p>
+ * Events are collected by an {@link EventBatcher} and published once per scan cycle, or earlier
+ * whenever {@link WatcherConfig#maxBatchSize()} events are collected.
+ * <p>
+ * The duration of every scan, the amount of inspected, skipped and rejected files, the hashed bytes and the published
+ * events per {@link ChangeType} are recorded in {@link WatcherConfig#metrics()} under {@code watcher.*}.
  */
 public class WatcherTask implements Runnable {
     private static final Logger log = LoggerFactory.getLogger(WatcherTask.class);
-    private static final int FILE_CHUNK_SIZE = 1024 * 1024 * 100; //100 Kb
+    private static final Duration RACY_WINDOW = Duration.ofSeconds(2);
     private static final int SLEEP_TIME_MS = 100;
+    //smaller files are hashed again as a whole, it is cheap and saves keeping the state of their hashes
+    private static final long APPEND_DETECTION_SIZE = 64 * 1024;
 
     private final Set<String> originalPaths;
-    private final Consumer<FileChangeEvent> eventPublisher;
-    private final ConcurrentHashMap<File, Inspection> fileStatus;
+    private final EventBatcher eventBatcher;
+    //sorted by path, so the tracked files below a directory are a range of it
+    private final ConcurrentNavigableMap<File, Inspection> fileStatus;
+    private final ConcurrentHashMap<File, Long> rejectedFiles;
+    private final AdmissionPolicy admissionPolicy;
+    private final WatchMode watchMode;
+    private final WatcherConfig config;
+    private final FileHasher fileHasher;
+    private final InspectionLimits inspectionLimits;
+    private final List<Path> roots;
+    private final TraversalFilter traversal;
+    private final Histogram scanDuration;
+    private final LongAdder filesInspected;
+    private final LongAdder filesSkipped;
+    private final LongAdder filesRejected;
+    private final LongAdder bytesHashed;
+    private final Map<ChangeType, LongAdder> publishedEvents = new EnumMap<>(ChangeType.class);
     private volatile Instant lastInvocation = Instant.MIN;
 
     public WatcherTask(Collection<String> originalPaths, Consumer<FileChangeEvent> eventPublisher) {
+        this(originalPaths, eventPublisher, WatcherConfig.defaults());
+    }
+
+    public WatcherTask(Collection<String> originalPaths, Consumer<FileChangeEvent> eventPublisher, WatcherConfig config) {
+        this(originalPaths, (BatchFSListener) events -> events.forEach(eventPublisher), config);
+    }
+
+    /**
+     * @param batchPublisher receives the events of every scan cycle as batches of at most
+     *                       {@link WatcherConfig#maxBatchSize()} events
+     */
+    public WatcherTask(Collection<String> originalPaths, BatchFSListener batchPublisher, WatcherConfig config) {
         this.originalPaths = new HashSet<>(originalPaths);
-        this.eventPublisher = eventPublisher;
-        this.fileStatus = new ConcurrentHashMap<>();
+        //counted as published, after deletions and creations were paired into renames
+        this.eventBatcher = new EventBatcher(batch -> {
+            batch.forEach(event -> publishedEvents.get(event.change()).increment());
+            batchPublisher.onFilesChanged(batch);
+        }, config.maxBatchSize());
+        this.admissionPolicy = config.admissionPolicy();
+        this.watchMode = config.watchMode();
+        this.config = config;
+        this.fileHasher = new FileHasher(config.contentHash());
+        this.inspectionLimits = config.inspectionLimits();
+        this.roots = this.originalPaths.stream().map(WatcherTask::absolutePath).toList();
+        this.traversal = new TraversalFilter(roots, config.pathFilter());
+        this.fileStatus = new ConcurrentSkipListMap<>();
+        this.rejectedFiles = new ConcurrentHashMap<>();
+        var metrics = config.metrics();
+        this.scanDuration = metrics.histogram("watcher.scan.micros");
+        this.filesInspected = metrics.counter("watcher.files.inspected");
+        this.filesSkipped = metrics.counter("watcher.files.skipped");
+        this.filesRejected = metrics.counter("watcher.files.rejected");
+        this.bytesHashed = metrics.counter("watcher.bytes.hashed");
+        for (var type : ChangeType.values()) {
+            publishedEvents.put(type, metrics.counter("watcher.events." + type.name().toLowerCase(Locale.ROOT)));
+        }
     }
 
     @Override
     public void run() {
-        log.info("Started watcher task");
-        while (!Thread.currentThread().isInterrupted()) {
-            try {
-                detectChanges();
-                detectDeletedFiles();
-            } catch (InterruptedException e) {
-                log.warn("Watcher task loop interrupted", e);
-            }
-            pause();
+        log.info("Started watcher task in {} mode", watchMode);
+        switch (watchMode) {
+            case POLLING -> poll();
+            case EVENTS, HYBRID -> watchEvents();
         }
         log.info("Final paths: {}", fileStatus.keySet());
         log.info("Original paths: {}", originalPaths);
     }
 
+    private void poll() {
+        var directoryTree = new DirectoryTree(RACY_WINDOW, traversal);
+        while (!Thread.currentThread().isInterrupted()) {
+            long start = System.nanoTime();
+            scanTree(directoryTree);
+            scanDuration.recordSince(start);
+            eventBatcher.flush();
+            pause();
+        }
+    }
+
+    /**
+     * A single polling cycle. Only changed directories are listed again, files missing from
+     * their new listing are reported as deleted and all listed files are inspected.
+     */
+    private void scanTree(DirectoryTree directoryTree) {
+        var event = new ScanEvent();
+        event.begin();
+        var scan = directoryTree.scan(roots);
+        inspectFiles(scan.files());
+        for (File deleted : scan.deletedFiles()) {
+            var removed = fileStatus.remove(deleted);
+            if (removed != null) {
+                log.trace("Deleting file {}", deleted);
+                publishDeletion(deleted.getAbsolutePath(), removed.digest);
+            }
+            rejectedFiles.remove(deleted);
+        }
+        event.commit(watchMode.name(), scan.files().size(), scan.deletedFiles().size(), fileStatus.size());
+    }
+
+    /**
+     * Register all paths with the {@link DirectoryWatcher} before the initial walk, so no change
+     * happening during the walk is lost, then react to the reported changes until interrupted.
+     * In {@link WatchMode#HYBRID} the reconciliation scan advances between the polls of the watcher.
+     */
+    private void watchEvents() {
+        try (var directoryWatcher = new DirectoryWatcher(traversal)) {
+            for (String path : originalPaths) {
+                directoryWatcher.register(absolutePath(path));
+            }
+            long walkStart = System.nanoTime();
+            var walk = new ScanEvent();
+            walk.begin();
+            detectChanges();
+            walk.commit(watchMode.name(), fileStatus.size(), 0, fileStatus.size());
+            scanDuration.recordSince(walkStart);
+            eventBatcher.flush();
+            var reconciler = watchMode == WatchMode.HYBRID ? createReconciler() : null;
+            while (!Thread.currentThread().isInterrupted()) {
+                var changes = directoryWatcher.poll(SLEEP_TIME_MS, TimeUnit.MILLISECONDS);
+                if (!changes.isEmpty()) {
+                    long start = System.nanoTime();
+                    var event = new ScanEvent();
+                    event.begin();
+                    applyChanges(changes, directoryWatcher);
+                    event.commit(watchMode.name(), changes.size(), 0, fileStatus.size());
+                    scanDuration.recordSince(start);
+                }
+                if (reconciler != null) {
+                    reconciler.tick(Instant.now());
+                }
+                eventBatcher.flush();
+            }
+        } catch (InterruptedException e) {
+            log.info("Watcher task interrupted");
+            Thread.currentThread().interrupt();
+        } catch (IOException | UnsupportedOperationException e) {
+            log.warn("Watch service unavailable, falling back to polling", e);
+            poll();
+        }
+    }
+
+    /**
+     * React to a batch of changes reported by the {@link DirectoryWatcher}.
+     * Deletions are published immediately, modified files are inspected together afterward
+     * and directories which are new, whose events overflowed or whose ignore files changed are walked again.
+     */
+    private void applyChanges(List<DirectoryWatcher.Change> changes, DirectoryWatcher directoryWatcher) throws InterruptedException {
+        Set<File> modifiedFiles = new LinkedHashSet<>();
+        Set<Path> rescanDirectories = new LinkedHashSet<>();
+        Set<Path> filterChanges = new LinkedHashSet<>();
+        for (var change : changes) {
+            var path = change.path();
+            switch (change.kind()) {
+                case OVERFLOW -> {
+                    log.warn("Lost change events of {}, scanning it again", path);
+                    rescanDirectories.add(path);
+                }
+                case DELETED -> {
+                    modifiedFiles.remove(path.toFile());
+                    handleDeletion(path);
+                    if (traversal.isIgnoreFile(path)) {
+                        traversal.reload(path.getParent());
+                        filterChanges.add(path.getParent());
+                    }
+                }
+                case CREATED, MODIFIED -> {
+                    boolean directory = Files.isDirectory(path);
+                    if (traversal.isIgnoreFile(path)) {
+                        traversal.reload(path.getParent());
+                        filterChanges.add(path.getParent());
+                    }
+                    if (traversal.excludes(path, directory)) {
+                        continue;
+                    }
+                    if (directory) {
+                        if (change.kind() == DirectoryWatcher.Kind.CREATED) {
+                            registerCreatedDirectory(path, directoryWatcher);
+                            rescanDirectories.add(path);
+                        }
+                    } else {
+                        modifiedFiles.add(path.toFile());
+                    }
+                }
+            }
+        }
+        inspectFiles(modifiedFiles);
+        for (Path directory : filterChanges) {
+            dropExcludedFiles(directory);
+            //directories which are no longer excluded have to be watched
+            registerCreatedDirectory(directory, directoryWatcher);
+            rescanDirectories.add(directory);
+        }
+        for (Path directory : rescanDirectories) {
+            rescan(directory);
+        }
+    }
+
+    private Reconciler createReconciler() {
+        return new Reconciler(roots, traversal, config.reconciliationInterval(), config.reconciliationRate(),
+                file -> file.isFile() ? inspect(file) : null,
+                fileStatus::keySet,
+                this::reconcileDeletion);
+    }
+
+    /**
+     * Publish the deletion of a tracked file missed by the watch service
+     *
+     * @return true if the file was tracked and no longer exists
+     */
+    private boolean reconcileDeletion(File file) {
+        if (file.exists()) {
+            return false;
+        }
+        var removed = fileStatus.remove(file);
+        if (removed == null) {
+            return false;
+        }
+        log.trace("Deleting file {}", file);
+        publishDeletion(file.getAbsolutePath(), removed.digest);
+        return true;
+    }
+
+    private void registerCreatedDirectory(Path directory, DirectoryWatcher directoryWatcher) {
+        try {
+            directoryWatcher.registerTree(directory);
+        } catch (IOException e) {
+            log.error("Unable to watch created directory {}", directory, e);
+        }
+    }
+
+    /**
+     * A deleted path is either a tracked file or a directory which contained tracked files
+     */
+    private void handleDeletion(Path path) {
+        var file = path.toFile();
+        var removed = fileStatus.remove(file);
+        if (removed != null) {
+            log.trace("Deleting file {}", file);
+            publishDeletion(file.getAbsolutePath(), removed.digest);
+        } else {
+            for (File tracked : trackedBelow(file)) {
+                var removedTracked = fileStatus.remove(tracked);
+                if (removedTracked != null) {
+                    log.trace("Deleting file {}", tracked);
+                    publishDeletion(tracked.getAbsolutePath(), removedTracked.digest);
+                }
+            }
+        }
+        rejectedFiles.remove(file);
+    }
+
+    /**
+     * Publish the deletion of tracked files below the directory which are excluded by the current rules
+     */
+    private void dropExcludedFiles(Path directory) {
+        for (File tracked : trackedBelow(directory.toFile())) {
+            if (!traversal.excludesFileOrAncestor(tracked.toPath())) {
+                continue;
+            }
+            var removed = fileStatus.remove(tracked);
+            if (removed != null) {
+                log.trace("Deleting excluded file {}", tracked);
+                publishDeletion(tracked.getAbsolutePath(), removed.digest);
+            }
+        }
+    }
+
+    /**
+     * Tracked files are sorted by path, so only the range of paths starting with the directory is visited.
+     * The range also holds siblings whose name starts with the name of the directory followed by a character
+     * sorting before the separator, they are filtered out.
+     *
+     * @return the tracked files below the directory
+     */
+    private List<File> trackedBelow(File directory) {
+        var path = directory.getAbsolutePath();
+        var prefix = path + File.separator;
+        var end = new File(path + (char) (File.separatorChar + 1));
+        return fileStatus.subMap(new File(path), false, end, false).keySet().stream()
+                .filter(tracked -> tracked.getAbsolutePath().startsWith(prefix))
+                .toList();
+    }
+
+    /**
+     * Walk a single directory again, publishing changes and deletions found under it
+     */
+    private void rescan(Path directory) throws InterruptedException {
+        inspectPaths(List.of(directory.toString()));
+        var prefix = directory.toFile().getAbsolutePath() + File.separator;
+        detectDeletedFiles(f -> f.getAbsolutePath().startsWith(prefix));
+    }
+
     /**
      * Check if any of the files which were previously encountered
      * got deleted
      *
+     * @param inScope only tracked files matching the predicate are checked
      * @throws InterruptedException if interrupted while publishing {@link ChangeType#DELETE}
      */
-    private void detectDeletedFiles() throws InterruptedException {
+    private void detectDeletedFiles(Predicate<File> inScope) throws InterruptedException {
         for (File f : fileStatus.keySet()) {
-            if (!f.exists()) {
+            if (inScope.test(f) && !f.exists()) {
                 log.trace("Deleting file {}", f);
-                fileStatus.remove(f);
-                this.publishDeletion(f.getAbsolutePath());
+                var removed = fileStatus.remove(f);
+                if (removed != null) {
+                    this.publishDeletion(f.getAbsolutePath(), removed.digest);
+                }
             }
         }
+        rejectedFiles.keySet().removeIf(f -> inScope.test(f) && !f.exists());
     }
 
 
@@ -84,8 +407,17 @@ public class WatcherTask implements Runnable {
      * into directories.
      */
     private void detectChanges() {
-        try (var scope = new StructuredTaskScope<Inspection>()) {
-            for (String path : originalPaths) {
+        inspectPaths(originalPaths);
+    }
+
+    /**
+     * Inspect all files found under the given paths, each on its own virtual thread
+     *
+     * @param paths files or directories
+     */
+    private void inspectPaths(Collection<String> paths) {
+        try (var scope = new StructuredTaskScope<ChangeType>()) {
+            for (String path : paths) {
                 //Since reading files from Filesystem is IO operation
                 //Use virtual threads
                 openPath(path, (file) -> scope.fork(() -> inspect(file)));
@@ -102,6 +434,26 @@ public class WatcherTask implements Runnable {
 
     }
 
+    /**
+     * Inspect the given files, each on its own virtual thread. Files which
+     * no longer exist are skipped, their deletion is reported separately.
+     *
+     * @param files candidate files
+     */
+    private void inspectFiles(Collection<File> files) {
+        try (var scope = new StructuredTaskScope<ChangeType>()) {
+            for (File file : files) {
+                if (file.isFile()) {
+                    scope.fork(() -> inspect(file));
+                }
+            }
+            scope.join();
+        } catch (InterruptedException e) {
+            log.error("Interrupted", e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
     private void pause() {
         try {
             Thread.sleep(SLEEP_TIME_MS);
@@ -119,14 +471,19 @@ public class WatcherTask implements Runnable {
      * @param apply a function which is applied to every file
      */
     private void openPath(String path, Consumer<File> apply) {
-        File filePath = Paths.get(path).toFile();
+        File filePath = absolutePath(path).toFile();
         if (filePath.isDirectory()) {
             var subPaths = filePath.listFiles();
             if (subPaths == null)
                 return;
             log.trace("Opening directory {}", filePath);
             for (File subPath : subPaths) {
-                if (subPath.isDirectory()) {
+                boolean directory = subPath.isDirectory();
+                if (traversal.excludes(subPath.toPath(), directory)) {
+                    log.trace("Skipping excluded {}", subPath);
+                    continue;
+                }
+                if (directory) {
                     openPath(subPath.getAbsolutePath(), apply);
                 } else {
                     log.trace("Opening sub file {}", subPath);
@@ -140,101 +497,223 @@ public class WatcherTask implements Runnable {
     }
 
 
+    private static Path absolutePath(String path) {
+        return Paths.get(path).toAbsolutePath();
+    }
+
+    /**
+     * Inspect the file, recording the inspection as a flight recorder event
+     *
+     * @param path path to an actual file
+     * @return the change published for the file or {@code null} if nothing changed
+     */
+    private ChangeType inspect(File path) {
+        var event = new InspectionEvent();
+        event.begin();
+        ChangeType change = null;
+        try {
+            change = inspectFile(path);
+            return change;
+        } finally {
+            event.commit(path, change == null ? null : change.name());
+        }
+    }
+
+    /**
+     * @return limiter of the most specific watched path containing the file
+     */
+    private AdaptiveLimiter limiterFor(File file) {
+        var path = file.toPath();
+        var root = traversal.rootOf(path);
+        return inspectionLimits.limiter(root != null ? root : path.getRoot());
+    }
+
     /**
      * Inspection of a given {@param path} for changes. The path must be an actual file.
-     * Method derives an SHA-256 digest of the file contents, reading it in chunks of size
-     * {@code FILE_CHUNK_SIZE}
+     * The content is only hashed if the metadata of the file does not match the previous inspection,
+     * once a permit of the limiter of its root is available.
      *
      * @param path path to an actual file
-     * @return {@link Inspection} containing the digest and a {@link File}
+     * @return the change published for the file or {@code null} if nothing changed
      */
-    private Inspection inspect(File path) {
+    private ChangeType inspectFile(File path) {
         var file = Objects.requireNonNull(path);
         if (!file.isFile()) {
             log.error("Not a file: {} in inspection", path);
             throw new IllegalArgumentException(String.format("Path: %s is not a file", path));
         }
 
-
+        var inspectedAt = Instant.now();
+        Metadata metadata;
+        try {
+            metadata = Metadata.read(file);
+        } catch (IOException e) {
+            log.error("Unable to read attributes of file {}", path, e);
+            return null;
+        }
         var existingFile = fileStatus.get(file);
-        if (existingFile != null && !Instant.ofEpochMilli(existingFile.file.lastModified()).isAfter(existingFile.lastInspection)) {
+        if (existingFile != null && existingFile.isUnchanged(metadata)) {
             //Skip files which were not updated since last invocation
+            filesSkipped.increment();
+            return null;
+        }
+        if (!admit(file)) {
+            filesRejected.increment();
+            var removed = fileStatus.remove(file);
+            if (removed != null) {
+                publishDeletion(file.getAbsolutePath(), removed.digest);
+                return ChangeType.DELETE;
+            }
             return null;
         }
 
+        var limiter = limiterFor(file);
+        try {
+            limiter.acquire();
+        } catch (InterruptedException e) {
+            log.error("Interrupted while waiting to inspect {}", path, e);
+            Thread.currentThread().interrupt();
+            return null;
+        }
         log.trace("Inspecting {}", path.getAbsolutePath());
+        filesInspected.increment();
 
+        long start = System.nanoTime();
         try {
-
-            byte[] buffer = new byte[FILE_CHUNK_SIZE];
-            int bytesRead;
-            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
-            try (FileInputStream fis = new FileInputStream(file)) {
-                while ((bytesRead = fis.read(buffer)) != -1) {
-                    messageDigest.update(buffer, 0, bytesRead);
+            if (existingFile != null && existingFile.mayBeAppended(metadata)) {
+                var resumed = fileHasher.resume(file, existingFile.resumable());
+                if (resumed != null) {
+                    bytesHashed.add(resumed.length() - existingFile.resumable().length());
+                    return checkAppend(existingFile, new Inspection(resumed.digest(), file, metadata, inspectedAt, resumed));
                 }
             }
-            var inspection = new Inspection(messageDigest.digest(), file, Instant.now());
-            checkFile(inspection);
-            return inspection;
-        } catch (FileNotFoundException | NoSuchAlgorithmException e) {
-            log.error("Unable to inspect file {}", path, e);
+            Inspection inspection;
+            if (metadata.size() >= APPEND_DETECTION_SIZE) {
+                var hashed = fileHasher.hashResumable(file);
+                inspection = new Inspection(hashed.digest(), file, metadata, inspectedAt, hashed);
+                bytesHashed.add(hashed.length());
+            } else {
+                inspection = new Inspection(fileHasher.hash(file), file, metadata, inspectedAt, null);
+                bytesHashed.add(metadata.size());
+            }
+            return checkFile(inspection);
         } catch (IOException e) {
-            log.error("Error reading file chunk {}", path, e);
+            log.error("Error reading file {}", path, e);
+        } catch (InterruptedException e) {
+            log.error("Interrupted while inspecting {}", path, e);
+            Thread.currentThread().interrupt();
+        } finally {
+            limiter.release(System.nanoTime() - start);
         }
         return null;
     }
 
 
+    /**
+     * Evaluates the {@link AdmissionPolicy} for a new or modified file. The verdict of a rejected
+     * file is reused for as long as its last modified time does not change.
+     *
+     * @param file an actual file
+     * @return true if the file should be inspected and indexed
+     */
+    private boolean admit(File file) {
+        long lastModified = file.lastModified();
+        var rejectedAt = rejectedFiles.get(file);
+        if (rejectedAt != null && rejectedAt == lastModified) {
+            return false;
+        }
+        if (admissionPolicy.evaluate(file) != AdmissionPolicy.Verdict.ADMITTED) {
+            rejectedFiles.put(file, lastModified);
+            return false;
+        }
+        rejectedFiles.remove(file);
+        return true;
+    }
+
     /**
      * Method saves a new file, and it's digest, or determines if an already existing
      * file should be updated by comparing the digest outputs. If a file
      *
      * @param inspection {@link Inspection}
+     * @return the published change or {@code null} if the content did not change
      */
-    private void checkFile(Inspection inspection) {
+    private ChangeType checkFile(Inspection inspection) {
         var file = inspection.file;
         var alreadyPresent = this.fileStatus.putIfAbsent(file, inspection);
 
         if (alreadyPresent != null) {
-            //Only update the file status if digests do not match
+            //Metadata is refreshed in any case, the update is only published if digests do not match
+            this.fileStatus.put(file, inspection);
             int result = Arrays.compare(alreadyPresent.digest, inspection.digest);
             if (result != 0) {
                 log.info("Updating file {}", inspection.file);
-                this.fileStatus.put(file, inspection);
-                publishFileUpdate(file.getAbsolutePath());
+                publishFileUpdate(file.getAbsolutePath(), inspection.digest);
+                return ChangeType.UPDATE;
             }
-        } else {
-            log.info("Adding file {}", inspection.file);
-            publishNewFile(file.getAbsolutePath());
+            return null;
         }
+        log.info("Adding file {}", inspection.file);
+        publishNewFile(file.getAbsolutePath(), inspection.digest);
+        return ChangeType.CREATE;
+    }
+
+    /**
+     * Publish the growth of a file found by continuing the hash of its previous inspection
+     *
+     * @param previous   inspection the hash was continued from
+     * @param inspection {@link Inspection} of the grown file
+     * @return the published change
+     */
+    private ChangeType checkAppend(Inspection previous, Inspection inspection) {
+        var file = inspection.file;
+        if (!fileStatus.replace(file, previous, inspection)) {
+            //inspected concurrently, the offset is not known to be the one published last
+            return checkFile(inspection);
+        }
+        log.info("Appended to file {}", file);
+        publishAppend(file.getAbsolutePath(), previous.resumable.length(), inspection.digest);
+        return ChangeType.APPEND;
     }
 
     /**
      * Specialized publishing of {@link ChangeType#CREATE}
      *
-     * @param path of the created file
+     * @param path   of the created file
+     * @param digest of its content
      */
-    private void publishNewFile(String path) {
-        publishEvent(path, ChangeType.CREATE);
+    private void publishNewFile(String path, byte[] digest) {
+        publishEvent(path, ChangeType.CREATE, digest);
     }
 
     /**
      * Specialized publishing of {@link ChangeType#UPDATE}
      *
-     * @param path of the updated file
+     * @param path   of the updated file
+     * @param digest of its new content
      */
-    public void publishFileUpdate(String path) {
-        publishEvent(path, ChangeType.UPDATE);
+    public void publishFileUpdate(String path, byte[] digest) {
+        publishEvent(path, ChangeType.UPDATE, digest);
+    }
+
+    /**
+     * Specialized publishing of {@link ChangeType#APPEND}
+     *
+     * @param path   of the grown file
+     * @param offset length of its previously published content
+     * @param digest of its whole new content
+     */
+    private void publishAppend(String path, long offset, byte[] digest) {
+        eventBatcher.add(DefaultFileEvent.append(path, offset, digest));
     }
 
     /**
      * Specialized publishing of {@link ChangeType#DELETE}
      *
-     * @param path of the deleted file
+     * @param path   of the deleted file
+     * @param digest of its last known content
      */
-    private void publishDeletion(String path) {
-        publishEvent(path, ChangeType.DELETE);
+    private void publishDeletion(String path, byte[] digest) {
+        publishEvent(path, ChangeType.DELETE, digest);
     }
 
     /**
@@ -242,13 +721,48 @@ public class WatcherTask implements Runnable {
      *
      * @param path       associated file
      * @param changeType one of {@link ChangeType}
+     * @param digest     of the content
      */
-    private void publishEvent(String path, ChangeType changeType) {
-        DefaultFileEvent event = new DefaultFileEvent(path, changeType);
-        eventPublisher.accept(event);
+    private void publishEvent(String path, ChangeType changeType, byte[] digest) {
+        DefaultFileEvent event = new DefaultFileEvent(path, changeType, digest);
+        eventBatcher.add(event);
     }
 
-    record Inspection(byte[] digest, File file, Instant lastInspection) {
+    /**
+     * @param resumable hash which can be continued once the file grows, {@code null} for small files
+     */
+    record Inspection(byte[] digest, File file, Metadata metadata, Instant lastInspection, FileHasher.Resumable resumable) {
+
+        /**
+         * @param current metadata of the file read just now
+         * @return true if the content can not have changed since this inspection
+         */
+        boolean isUnchanged(Metadata current) {
+            return metadata.equals(current)
+                    && current.lastModified().toInstant().isBefore(lastInspection.minus(RACY_WINDOW));
+        }
+
+        /**
+         * @param current metadata of the file read just now
+         * @return true if the file may have grown since this inspection, the hash can be continued in that case
+         */
+        boolean mayBeAppended(Metadata current) {
+            return resumable != null && current.size() > resumable.length()
+                    && Objects.equals(metadata.fileKey(), current.fileKey());
+        }
+    }
+
+    /**
+     * Attributes of a file which change whenever the file is written or replaced
+     *
+     * @param fileKey identity of the file (device and inode on unix), {@code null} if not available
+     */
+    record Metadata(long size, FileTime lastModified, Object fileKey) {
+
+        static Metadata read(File file) throws IOException {
+            var attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            return new Metadata(attributes.size(), attributes.lastModifiedTime(), attributes.fileKey());
+        }
     }
 
 }
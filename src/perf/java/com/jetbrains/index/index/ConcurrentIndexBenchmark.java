@@ -0,0 +1,108 @@
+package com.jetbrains.index.index;
+
+import com.jetbrains.index.perf.Vocabulary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Throughput of the {@link ConcurrentIndex} operations on an index of {@code containers} containers, every one holding
+ * {@code tokensPerContainer} Zipf distributed tokens, so frequent tokens have long postings which all threads contend on.
+ * The amount of threads of the single operations can be changed with {@code -t}, the mixed group runs three searching
+ * threads against one updating thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ConcurrentIndexBenchmark {
+
+    @Param({"1000", "10000"})
+    int containers;
+
+    @Param({"200"})
+    int tokensPerContainer;
+
+    private final AtomicInteger nextContainer = new AtomicInteger();
+    private Vocabulary vocabulary;
+    private List<List<String>> contents;
+    private ConcurrentIndex<String, Integer> index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        vocabulary = new Vocabulary(50_000, 1.1, 42);
+        var random = new SplittableRandom(7);
+        contents = new ArrayList<>(containers);
+        index = new ConcurrentIndex<>();
+        for (int container = 0; container < containers; container++) {
+            List<String> tokens = new ArrayList<>(tokensPerContainer);
+            for (int i = 0; i < tokensPerContainer; i++) {
+                tokens.add(vocabulary.sample(random));
+            }
+            contents.add(tokens);
+            index.ingestTokens(tokens, container);
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int search() {
+        return index.search(vocabulary.sample(ThreadLocalRandom.current())).size();
+    }
+
+    /**
+     * Ingest a new container and remove it again, so the size of the index stays the same
+     */
+    @Benchmark
+    @Threads(4)
+    public void ingestAndRemove() {
+        int container = containers + nextContainer.getAndIncrement();
+        index.ingestTokens(contents.get(container % containers), container);
+        index.remove(container);
+    }
+
+    /**
+     * Replace the tokens of a random container by the tokens of another one
+     */
+    @Benchmark
+    @Threads(4)
+    public void update() {
+        var random = ThreadLocalRandom.current();
+        index.update(contents.get(random.nextInt(containers)), random.nextInt(containers));
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public int searchWhileUpdating() {
+        return search();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void updateWhileSearching() {
+        update();
+    }
+}
@@ -0,0 +1,102 @@
+package com.jetbrains.index.perf;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Generates trees of text files drawn from a {@link Vocabulary}. File sizes follow a log-normal distribution,
+ * which matches real source and document trees: most files are small, a few are orders of magnitude larger.
+ * Every file starts with a word no other file contains, so every generated content is distinct and can be found
+ * by exactly one search.
+ * <p>
+ * Not thread safe, the same seed always yields the same tree.
+ */
+public final class CorpusGenerator {
+    private final Vocabulary vocabulary;
+    private final Shape shape;
+    private final SplittableRandom random;
+    private long nextId;
+
+    /**
+     * @param files      amount of files of the generated tree
+     * @param meanSize   mean file size in bytes
+     * @param sizeSpread standard deviation of the logarithm of the file size, {@code 0} makes all files the same size
+     * @param depth      maximal nesting of directories below the root, files are spread evenly over all levels
+     * @param fanOut     amount of subdirectories of every directory
+     */
+    public record Shape(int files, int meanSize, double sizeSpread, int depth, int fanOut) {
+        public Shape {
+            if (files < 0 || meanSize <= 0 || sizeSpread < 0 || depth < 0 || fanOut <= 0) {
+                throw new IllegalArgumentException("Invalid corpus shape");
+            }
+        }
+    }
+
+    public CorpusGenerator(Vocabulary vocabulary, Shape shape, long seed) {
+        this.vocabulary = vocabulary;
+        this.shape = shape;
+        this.random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Write {@link Shape#files()} files below the root
+     *
+     * @return the written files in the order they were written with the unique word each of them starts with
+     */
+    public Map<Path, String> generate(Path root) throws IOException {
+        Map<Path, String> files = new LinkedHashMap<>();
+        for (int i = 0; i < shape.files(); i++) {
+            var file = newPath(root);
+            var word = uniqueWord();
+            Files.writeString(file, content(word));
+            files.put(file, word);
+        }
+        return files;
+    }
+
+    /**
+     * @return path of a file which does not exist yet in a random directory below the root, the directory is created
+     */
+    public Path newPath(Path root) throws IOException {
+        var directory = root;
+        int level = random.nextInt(shape.depth() + 1);
+        for (int i = 0; i < level; i++) {
+            directory = directory.resolve("d" + random.nextInt(shape.fanOut()));
+        }
+        Files.createDirectories(directory);
+        return directory.resolve("f" + nextId++ + ".txt");
+    }
+
+    /**
+     * @return a word which was never returned before and is not part of the vocabulary
+     */
+    public String uniqueWord() {
+        return "u" + nextId++ + "x";
+    }
+
+    /**
+     * @param firstWord word the content starts with
+     * @return text of a sampled file size
+     */
+    public String content(String firstWord) {
+        return firstWord + '\n' + text(nextSize());
+    }
+
+    /**
+     * @param length minimal amount of characters
+     */
+    public String text(int length) {
+        return vocabulary.text(random, length);
+    }
+
+    private int nextSize() {
+        double sigma = shape.sizeSpread();
+        //mu chosen so the mean of the distribution is the mean size
+        double size = shape.meanSize() * Math.exp(sigma * random.nextGaussian() - sigma * sigma / 2);
+        return (int) Math.clamp(size, 1, Integer.MAX_VALUE - 16);
+    }
+}
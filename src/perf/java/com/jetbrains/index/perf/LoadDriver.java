@@ -0,0 +1,406 @@
+package com.jetbrains.index.perf;
+
+import com.jetbrains.index.index.IndexSearchService;
+import com.jetbrains.index.metrics.Histogram;
+import com.jetbrains.index.metrics.MetricsRegistry;
+import com.jetbrains.index.token.factory.CachingTokenFactory;
+import com.jetbrains.index.token.tokenizer.ParallelFileTokenizer;
+import com.jetbrains.index.token.tokenizer.WhiteSpaceTokenizer;
+import com.jetbrains.index.watcher.CoalescingListener;
+import com.jetbrains.index.watcher.FileSystemWatcher;
+import com.jetbrains.index.watcher.WatchMode;
+import org.apache.commons.io.FileUtils;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * End-to-end load test of the indexing pipeline. Generates a corpus with a {@link CorpusGenerator}, indexes it with
+ * a {@link FileSystemWatcher} feeding an {@link IndexSearchService} wired like {@code Main} does, and then changes
+ * files at a fixed rate: creates, updates, appends, deletes and renames mixed by {@link Operation#weight}.
+ * <p>
+ * Every change writes a word no other file contains, or removes one. A prober searches for these words until the
+ * change is visible, the time from the end of the write until then is the freshness lag. Changes never target a file
+ * whose previous change is not visible yet, so every lag belongs to exactly one change.
+ * <p>
+ * Reports the initial indexing throughput, the achieved change rate, percentiles of the lag and of the heap used,
+ * and the metrics of the pipeline. Run it with {@code mvn -Pperf test-compile exec:exec@load -Dload.args="..."},
+ * see {@link #main(String[])} for the arguments.
+ */
+public final class LoadDriver {
+    private static final int FAN_OUT = 8;
+    private static final Duration PROBE_TIMEOUT = Duration.ofSeconds(60);
+    private static final Duration INDEXING_TIMEOUT = Duration.ofMinutes(30);
+    private static final int PICK_ATTEMPTS = 8;
+
+    enum Operation {
+        CREATE(15), UPDATE(35), APPEND(25), DELETE(15), RENAME(10);
+
+        private final int weight;
+
+        Operation(int weight) {
+            this.weight = weight;
+        }
+
+        static Operation pick(SplittableRandom random) {
+            int total = 0;
+            for (var operation : values()) {
+                total += operation.weight;
+            }
+            int chosen = random.nextInt(total);
+            for (var operation : values()) {
+                chosen -= operation.weight;
+                if (chosen < 0) {
+                    return operation;
+                }
+            }
+            throw new IllegalStateException();
+        }
+    }
+
+    /**
+     * @param word     word written or removed by the change
+     * @param path     path the word has to be found in, or not found in when {@code present} is false
+     * @param released paths which may be changed again once the change is visible
+     */
+    private record Probe(String word, String path, boolean present, long writtenNanos, List<Path> released) {
+    }
+
+    private final Path root;
+    private final CorpusGenerator generator;
+    private final IndexSearchService service;
+    private final SplittableRandom random = new SplittableRandom(13);
+
+    //only touched by the thread running the workload
+    private final List<Path> files = new ArrayList<>();
+    private final Map<Path, String> words = new HashMap<>();
+
+    private final Set<Path> busy = ConcurrentHashMap.newKeySet();
+    private final ConcurrentLinkedQueue<Probe> submitted = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final Histogram lag = new Histogram();
+    private final LongAdder lost = new LongAdder();
+    private final Map<Operation, LongAdder> performed = new ConcurrentHashMap<>();
+    private long skipped;
+
+    private LoadDriver(Path root, CorpusGenerator generator, IndexSearchService service) {
+        this.root = root;
+        this.generator = generator;
+        this.service = service;
+    }
+
+    /**
+     * Arguments, all optional:
+     * <ul>
+     *     <li>{@code -d<directory>} where the corpus is generated, a temporary directory which is deleted afterward
+     *     by default</li>
+     *     <li>{@code -n<files>} initial amount of files, 10000 by default</li>
+     *     <li>{@code -s<bytes>} mean file size, 4096 by default</li>
+     *     <li>{@code -l<spread>} standard deviation of the logarithm of the file size, 1.0 by default</li>
+     *     <li>{@code -z<depth>} maximal directory depth, 4 by default</li>
+     *     <li>{@code -v<words>} vocabulary size, 50000 by default</li>
+     *     <li>{@code -r<changes>} changes per second, 100 by default</li>
+     *     <li>{@code -t<seconds>} duration of the changes, 60 by default</li>
+     *     <li>{@code -w<polling|events|hybrid>} watch mode, polling by default</li>
+     *     <li>{@code -q<milliseconds>} quiet period of the coalescing listener, 200 by default and {@code 0} disables it</li>
+     * </ul>
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path directory = null;
+        int fileCount = 10_000;
+        int meanSize = 4096;
+        double sizeSpread = 1.0;
+        int depth = 4;
+        int vocabularySize = 50_000;
+        int rate = 100;
+        int seconds = 60;
+        WatchMode watchMode = WatchMode.POLLING;
+        long quietPeriodMs = 200;
+        try {
+            for (String arg : args) {
+                String value = arg.length() > 2 ? arg.substring(2) : "";
+                switch (arg.substring(0, Math.min(2, arg.length()))) {
+                    case "-d" -> directory = Path.of(value);
+                    case "-n" -> fileCount = Integer.parseInt(value);
+                    case "-s" -> meanSize = Integer.parseInt(value);
+                    case "-l" -> sizeSpread = Double.parseDouble(value);
+                    case "-z" -> depth = Integer.parseInt(value);
+                    case "-v" -> vocabularySize = Integer.parseInt(value);
+                    case "-r" -> rate = Integer.parseInt(value);
+                    case "-t" -> seconds = Integer.parseInt(value);
+                    case "-w" -> watchMode = WatchMode.valueOf(value.toUpperCase(Locale.ROOT));
+                    case "-q" -> quietPeriodMs = Long.parseLong(value);
+                    default -> throw new IllegalArgumentException("Unknown option: " + arg);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("Usage: java LoadDriver [-d<directory>] [-n<files>] [-s<bytes>] [-l<spread>] [-z<depth>]"
+                    + " [-v<words>] [-r<changes per second>] [-t<seconds>] [-w<polling|events|hybrid>] [-q<milliseconds>]");
+            System.out.println(e.getMessage());
+            return;
+        }
+        if (rate <= 0) {
+            System.out.println("Rate must be positive");
+            return;
+        }
+
+        boolean temporary = directory == null;
+        var root = (temporary ? Files.createTempDirectory("load") : Files.createDirectories(directory)).toAbsolutePath();
+        try {
+            var vocabulary = new Vocabulary(vocabularySize, 1.1, 42);
+            var generator = new CorpusGenerator(vocabulary, new CorpusGenerator.Shape(fileCount, meanSize, sizeSpread, depth, FAN_OUT), 7);
+            run(root, generator, watchMode, quietPeriodMs, rate, Duration.ofSeconds(seconds));
+        } finally {
+            if (temporary) {
+                FileUtils.deleteDirectory(root.toFile());
+            }
+        }
+    }
+
+    private static void run(Path root, CorpusGenerator generator, WatchMode watchMode, long quietPeriodMs, int rate,
+                            Duration duration) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        var corpus = generator.generate(root);
+        long bytes = 0;
+        for (var file : corpus.keySet()) {
+            bytes += Files.size(file);
+        }
+        System.out.printf(Locale.ROOT, "Generated %d files, %.1f MB in %d ms%n",
+                corpus.size(), bytes / 1e6, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+        var metrics = new MetricsRegistry();
+        var factory = new CachingTokenFactory();
+        var heap = new Histogram();
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(runnable ->
+                Thread.ofPlatform().daemon().name("Heap sampler").unstarted(runnable));
+        var memory = ManagementFactory.getMemoryMXBean();
+        try (var service = new IndexSearchService(new ParallelFileTokenizer(new WhiteSpaceTokenizer(factory)), factory, metrics);
+             var watcher = new FileSystemWatcher(List.of(root.toString()))) {
+            CoalescingListener coalescer = null;
+            if (quietPeriodMs > 0) {
+                coalescer = new CoalescingListener(service, Duration.ofMillis(quietPeriodMs));
+                watcher.registerListener(coalescer);
+            } else {
+                watcher.registerListener(service);
+            }
+            watcher.setMetrics(metrics);
+            watcher.setWatchMode(watchMode);
+            sampler.scheduleAtFixedRate(() -> heap.record(memory.getHeapMemoryUsage().getUsed()), 0, 100, TimeUnit.MILLISECONDS);
+
+            start = System.nanoTime();
+            watcher.start();
+            if (!awaitIndexed(service, corpus.size())) {
+                System.out.printf("Gave up waiting for the initial indexing, %d of %d files indexed%n",
+                        service.indexedContents(), corpus.size());
+                if (coalescer != null) {
+                    coalescer.close();
+                }
+                return;
+            }
+            double indexingSeconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf(Locale.ROOT, "Indexed %d files in %.1f s: %.0f files/s, %.1f MB/s, %.1f MB heap used after GC%n",
+                    corpus.size(), indexingSeconds, corpus.size() / indexingSeconds, bytes / 1e6 / indexingSeconds,
+                    usedAfterGc() / 1e6);
+
+            var driver = new LoadDriver(root, generator, service);
+            driver.files.addAll(corpus.keySet());
+            driver.words.putAll(corpus);
+            driver.churn(rate, duration);
+
+            heap.record(memory.getHeapMemoryUsage().getUsed());
+            System.out.printf(Locale.ROOT, "Heap used: p50 %.1f MB, p99 %.1f MB, max %.1f MB, %.1f MB after GC%n",
+                    heap.percentile(50) / 1e6, heap.percentile(99) / 1e6, heap.max() / 1e6, usedAfterGc() / 1e6);
+            //the search metrics include the searches of the prober
+            System.out.println("Pipeline metrics:");
+            metrics.snapshot().forEach((name, value) -> System.out.println("  " + name + " = " + (value instanceof Double d
+                    ? String.format(Locale.ROOT, "%.1f", d) : value)));
+            if (coalescer != null) {
+                coalescer.close();
+            }
+        } finally {
+            sampler.shutdownNow();
+        }
+    }
+
+    /**
+     * Perform changes at the given rate, wait until the last ones are visible and report them
+     */
+    private void churn(int rate, Duration duration) throws IOException, InterruptedException {
+        var prober = Thread.ofPlatform().daemon().name("Freshness prober").start(this::probe);
+        long period = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        long next = start;
+        try {
+            while (next < end) {
+                long wait = next - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                    continue;
+                }
+                perform(Operation.pick(random));
+                next += period;
+            }
+            double elapsed = (System.nanoTime() - start) / 1e9;
+            long changes = performed.values().stream().mapToLong(LongAdder::sum).sum();
+            long drainDeadline = System.nanoTime() + PROBE_TIMEOUT.toNanos();
+            while (outstanding.get() > 0 && System.nanoTime() < drainDeadline) {
+                Thread.sleep(10);
+            }
+
+            System.out.printf(Locale.ROOT, "Performed %d changes in %.1f s: %.1f changes/s of %d requested, %d skipped on busy files%n",
+                    changes, elapsed, changes / elapsed, rate, skipped);
+            for (var operation : Operation.values()) {
+                System.out.printf("  %s %d%n", operation, performed.getOrDefault(operation, new LongAdder()).sum());
+            }
+            System.out.printf(Locale.ROOT, "Freshness lag of %d changes: p50 %.1f ms, p90 %.1f ms, p99 %.1f ms, max %.1f ms, mean %.1f ms, %d never visible%n",
+                    lag.count(), lag.percentile(50) / 1e3, lag.percentile(90) / 1e3, lag.percentile(99) / 1e3,
+                    lag.max() / 1e3, lag.mean() / 1e3, lost.sum() + outstanding.get());
+        } finally {
+            prober.interrupt();
+            prober.join();
+        }
+    }
+
+    private void perform(Operation operation) throws IOException {
+        var word = generator.uniqueWord();
+        switch (operation) {
+            case CREATE -> {
+                var file = generator.newPath(root);
+                Files.writeString(file, generator.content(word));
+                files.add(file);
+                words.put(file, word);
+                submit(operation, new Probe(word, file.toString(), true, System.nanoTime(), List.of(file)));
+            }
+            case UPDATE -> {
+                var file = pickIdle();
+                if (file == null) {
+                    return;
+                }
+                Files.writeString(file, generator.content(word));
+                words.put(file, word);
+                submit(operation, new Probe(word, file.toString(), true, System.nanoTime(), List.of(file)));
+            }
+            case APPEND -> {
+                var file = pickIdle();
+                if (file == null) {
+                    return;
+                }
+                Files.writeString(file, "\n" + word + " " + generator.text(64), StandardOpenOption.APPEND);
+                words.put(file, word);
+                submit(operation, new Probe(word, file.toString(), true, System.nanoTime(), List.of(file)));
+            }
+            case DELETE -> {
+                var file = pickIdle();
+                if (file == null) {
+                    return;
+                }
+                Files.delete(file);
+                files.remove(file);
+                submit(operation, new Probe(words.remove(file), file.toString(), false, System.nanoTime(), List.of(file)));
+            }
+            case RENAME -> {
+                var file = pickIdle();
+                if (file == null) {
+                    return;
+                }
+                var target = generator.newPath(root);
+                Files.move(file, target);
+                files.set(files.indexOf(file), target);
+                var moved = words.remove(file);
+                words.put(target, moved);
+                submit(operation, new Probe(moved, target.toString(), true, System.nanoTime(), List.of(file, target)));
+            }
+        }
+    }
+
+    /**
+     * @return a random file whose previous change is visible, {@code null} if none was found within a few attempts
+     */
+    private Path pickIdle() {
+        for (int i = 0; i < PICK_ATTEMPTS && !files.isEmpty(); i++) {
+            var file = files.get(random.nextInt(files.size()));
+            if (busy.add(file)) {
+                return file;
+            }
+        }
+        skipped++;
+        return null;
+    }
+
+    private void submit(Operation operation, Probe probe) {
+        busy.addAll(probe.released());
+        performed.computeIfAbsent(operation, _ -> new LongAdder()).increment();
+        outstanding.incrementAndGet();
+        submitted.add(probe);
+    }
+
+    /**
+     * Search for the words of all outstanding changes every millisecond until they are visible or timed out
+     */
+    private void probe() {
+        List<Probe> pending = new ArrayList<>();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                for (Probe probe; (probe = submitted.poll()) != null; ) {
+                    pending.add(probe);
+                }
+                long now = System.nanoTime();
+                pending.removeIf(probe -> {
+                    boolean visible = service.findWord(probe.word()).contains(probe.path()) == probe.present();
+                    boolean timedOut = now - probe.writtenNanos() > PROBE_TIMEOUT.toNanos();
+                    if (visible) {
+                        lag.recordSince(probe.writtenNanos());
+                    } else if (timedOut) {
+                        lost.increment();
+                    }
+                    if (visible || timedOut) {
+                        probe.released().forEach(busy::remove);
+                        outstanding.decrementAndGet();
+                        return true;
+                    }
+                    return false;
+                });
+                Thread.sleep(1);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static boolean awaitIndexed(IndexSearchService service, int contents) throws InterruptedException {
+        long deadline = System.nanoTime() + INDEXING_TIMEOUT.toNanos();
+        //every generated file starts with a unique word, so every file is a distinct content
+        while (service.indexedContents() < contents || service.pendingEvents() > 0) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
+    private static long usedAfterGc() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
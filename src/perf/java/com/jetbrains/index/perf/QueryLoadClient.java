@@ -0,0 +1,203 @@
+package com.jetbrains.index.perf;
+
+import com.jetbrains.index.index.IndexSearchService;
+import com.jetbrains.index.metrics.Histogram;
+import com.jetbrains.index.metrics.MetricsRegistry;
+import com.jetbrains.index.server.QueryServer;
+import com.jetbrains.index.token.factory.CachingTokenFactory;
+import com.jetbrains.index.token.tokenizer.ParallelFileTokenizer;
+import com.jetbrains.index.token.tokenizer.WhiteSpaceTokenizer;
+import com.jetbrains.index.watcher.ChangeType;
+import com.jetbrains.index.watcher.DefaultFileEvent;
+import com.jetbrains.index.watcher.FileChangeEvent;
+import org.apache.commons.io.FileUtils;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load test of the {@link QueryServer}: a fixed amount of virtual threads send queries for Zipf distributed words
+ * back to back over kept-alive HTTP/1.1 connections and the throughput and latency percentiles are reported.
+ * <p>
+ * Without a server URL a corpus generated by a {@link CorpusGenerator} is indexed in process and served on a free
+ * port, which measures the server and the index together. Run it with
+ * {@code mvn -Pperf test-compile exec:exec@query-load -Dquery.args="..."}, see {@link #main(String[])} for the arguments.
+ */
+public final class QueryLoadClient {
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final HttpClient client;
+    private final URI base;
+    private final Vocabulary vocabulary;
+    private final int batchSize;
+    private final String query;
+    private final Histogram latency = new Histogram();
+    //searches which found at least one file
+    private final LongAdder matched = new LongAdder();
+    private final ConcurrentHashMap<String, LongAdder> failures = new ConcurrentHashMap<>();
+
+    private QueryLoadClient(HttpClient client, URI base, Vocabulary vocabulary, int batchSize, int limit) {
+        this.client = client;
+        this.base = base;
+        this.vocabulary = vocabulary;
+        this.batchSize = batchSize;
+        this.query = limit < 0 ? "" : "limit=" + limit;
+    }
+
+    /**
+     * Arguments, all optional:
+     * <ul>
+     *     <li>{@code -u<url>} base URL of a running server, e.g. {@code http://localhost:8080}, by default a server is
+     *     started in process</li>
+     *     <li>{@code -n<files>} amount of files indexed by the server started in process, 10000 by default</li>
+     *     <li>{@code -v<words>} vocabulary size, 50000 by default, matching the corpus of {@link LoadDriver}</li>
+     *     <li>{@code -c<clients>} concurrent clients, 1000 by default</li>
+     *     <li>{@code -t<seconds>} duration, 30 by default</li>
+     *     <li>{@code -b<words>} words per {@code /batch} request, 0 by default which sends single {@code /search}
+     *     requests</li>
+     *     <li>{@code -l<files>} amount of files listed per word, all by default</li>
+     * </ul>
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        URI url = null;
+        int fileCount = 10_000;
+        int vocabularySize = 50_000;
+        int clients = 1000;
+        int seconds = 30;
+        int batchSize = 0;
+        int limit = -1;
+        try {
+            for (String arg : args) {
+                String value = arg.length() > 2 ? arg.substring(2) : "";
+                switch (arg.substring(0, Math.min(2, arg.length()))) {
+                    case "-u" -> url = URI.create(value);
+                    case "-n" -> fileCount = Integer.parseInt(value);
+                    case "-v" -> vocabularySize = Integer.parseInt(value);
+                    case "-c" -> clients = Integer.parseInt(value);
+                    case "-t" -> seconds = Integer.parseInt(value);
+                    case "-b" -> batchSize = Integer.parseInt(value);
+                    case "-l" -> limit = Integer.parseInt(value);
+                    default -> throw new IllegalArgumentException("Unknown option: " + arg);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println("Usage: java QueryLoadClient [-u<url>] [-n<files>] [-v<words>] [-c<clients>] [-t<seconds>] [-b<words>] [-l<files>]");
+            System.out.println(e.getMessage());
+            return;
+        }
+        if (clients <= 0 || batchSize < 0) {
+            System.out.println("Clients must be positive and the batch size not negative");
+            return;
+        }
+
+        var vocabulary = new Vocabulary(vocabularySize, 1.1, 42);
+        if (url != null) {
+            run(url, vocabulary, clients, batchSize, limit, Duration.ofSeconds(seconds));
+            return;
+        }
+        var root = Files.createTempDirectory("queries");
+        var metrics = new MetricsRegistry();
+        var factory = new CachingTokenFactory();
+        try (var service = new IndexSearchService(new ParallelFileTokenizer(new WhiteSpaceTokenizer(factory)), factory, metrics)) {
+            var corpus = new CorpusGenerator(vocabulary, new CorpusGenerator.Shape(fileCount, 4096, 1.0, 4, 8), 7).generate(root);
+            List<FileChangeEvent> events = new ArrayList<>();
+            corpus.keySet().forEach(file -> events.add(new DefaultFileEvent(file.toString(), ChangeType.CREATE)));
+            service.onFilesChanged(events);
+            if (!service.awaitIndexed(service.receivedSequence(), Duration.ofMinutes(30))) {
+                System.out.println("Gave up waiting for the corpus to be indexed");
+                return;
+            }
+            System.out.printf("Indexed %d files%n", corpus.size());
+            try (var server = new QueryServer(service, metrics, 0)) {
+                server.start();
+                run(URI.create("http://localhost:" + server.port()), vocabulary, clients, batchSize, limit,
+                        Duration.ofSeconds(seconds));
+            }
+        } finally {
+            FileUtils.deleteDirectory(root.toFile());
+        }
+    }
+
+    private static void run(URI base, Vocabulary vocabulary, int clients, int batchSize, int limit, Duration duration)
+            throws InterruptedException {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+             var client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(executor).build()) {
+            var load = new QueryLoadClient(client, base, vocabulary, batchSize, limit);
+            long start = System.nanoTime();
+            long end = start + duration.toNanos();
+            List<Thread> threads = new ArrayList<>(clients);
+            for (int i = 0; i < clients; i++) {
+                threads.add(Thread.ofVirtual().start(() -> load.query(end)));
+            }
+            for (var thread : threads) {
+                thread.join();
+            }
+            load.report(clients, (System.nanoTime() - start) / 1e9);
+        }
+    }
+
+    /**
+     * Send queries one after another until the deadline
+     */
+    private void query(long end) {
+        var random = ThreadLocalRandom.current();
+        while (System.nanoTime() < end) {
+            var request = batchSize == 0 ? search(vocabulary.sample(random)) : batch(random);
+            long start = System.nanoTime();
+            try {
+                var response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                latency.recordSince(start);
+                if (response.statusCode() != 200) {
+                    failures.computeIfAbsent("HTTP " + response.statusCode(), _ -> new LongAdder()).increment();
+                } else if (!response.body().contains("\"count\":0,")) {
+                    matched.increment();
+                }
+            } catch (IOException e) {
+                failures.computeIfAbsent(e.getClass().getSimpleName(), _ -> new LongAdder()).increment();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private HttpRequest search(String word) {
+        return HttpRequest.newBuilder(base.resolve("/search?word=" + word + (query.isEmpty() ? "" : "&" + query))).timeout(REQUEST_TIMEOUT).GET().build();
+    }
+
+    private HttpRequest batch(ThreadLocalRandom random) {
+        var body = new StringBuilder("[");
+        for (int i = 0; i < batchSize; i++) {
+            body.append(i == 0 ? "" : ",").append('"').append(vocabulary.sample(random)).append('"');
+        }
+        return HttpRequest.newBuilder(base.resolve(query.isEmpty() ? "/batch" : "/batch?" + query)).timeout(REQUEST_TIMEOUT)
+                .POST(HttpRequest.BodyPublishers.ofString(body.append(']').toString())).build();
+    }
+
+    private void report(int clients, double seconds) {
+        long requests = latency.count();
+        System.out.printf(Locale.ROOT, "%d clients sent %d %s requests in %.1f s: %.0f requests/s, %.0f words/s%n",
+                clients, requests, batchSize == 0 ? "search" : "batch of " + batchSize, seconds, requests / seconds,
+                requests * Math.max(1, batchSize) / seconds);
+        System.out.printf(Locale.ROOT, "Latency: p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, max %.2f ms, mean %.2f ms%n",
+                latency.percentile(50) / 1e3, latency.percentile(90) / 1e3, latency.percentile(99) / 1e3,
+                latency.max() / 1e3, latency.mean() / 1e3);
+        if (batchSize == 0) {
+            System.out.printf(Locale.ROOT, "%.1f %% of the searches found a file%n", 100.0 * matched.sum() / Math.max(1, requests));
+        }
+        failures.forEach((failure, count) -> System.out.printf("Failed: %s %d%n", failure, count.sum()));
+    }
+}
@@ -0,0 +1,76 @@
+package com.jetbrains.index.perf;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+
+/**
+ * Fixed set of generated words whose frequencies follow Zipf's law, like the words of natural language or code:
+ * the word of rank {@code k} is sampled with a probability proportional to {@code 1 / k^exponent}.
+ * The same size and seed always yield the same words.
+ */
+public final class Vocabulary {
+    private static final char[] LETTERS = "abcdefghijklmnopqrstuvwxyz".toCharArray();
+
+    private final String[] words;
+    private final double[] cumulative;
+
+    /**
+     * @param size     amount of distinct words
+     * @param exponent skew of the distribution, {@code 0} samples all words uniformly
+     * @param seed     seed of the generated words
+     */
+    public Vocabulary(int size, double exponent, long seed) {
+        if (size <= 0 || exponent < 0) {
+            throw new IllegalArgumentException("Size must be positive and exponent not negative");
+        }
+        var random = new SplittableRandom(seed);
+        var distinct = new LinkedHashSet<String>();
+        while (distinct.size() < size) {
+            char[] word = new char[3 + random.nextInt(8)];
+            for (int i = 0; i < word.length; i++) {
+                word[i] = LETTERS[random.nextInt(LETTERS.length)];
+            }
+            distinct.add(new String(word));
+        }
+        this.words = distinct.toArray(String[]::new);
+        this.cumulative = new double[size];
+        double total = 0;
+        for (int rank = 1; rank <= size; rank++) {
+            total += 1 / Math.pow(rank, exponent);
+            cumulative[rank - 1] = total;
+        }
+        for (int i = 0; i < size; i++) {
+            cumulative[i] /= total;
+        }
+    }
+
+    public int size() {
+        return words.length;
+    }
+
+    /**
+     * @param rank between 1 and {@link #size()}, 1 is the most frequent word
+     */
+    public String word(int rank) {
+        return words[rank - 1];
+    }
+
+    public String sample(RandomGenerator random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return words[Math.min(index < 0 ? -index - 1 : index, words.length - 1)];
+    }
+
+    /**
+     * @param length minimal amount of characters, the text ends after the first word reaching it
+     * @return sampled words separated by spaces with a line break after roughly every tenth word
+     */
+    public String text(RandomGenerator random, int length) {
+        var text = new StringBuilder(length + 16);
+        while (text.length() < length) {
+            text.append(sample(random)).append(random.nextInt(10) == 0 ? '\n' : ' ');
+        }
+        return text.toString();
+    }
+}
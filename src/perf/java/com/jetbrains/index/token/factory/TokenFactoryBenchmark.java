@@ -0,0 +1,63 @@
+package com.jetbrains.index.token.factory;
+
+import com.jetbrains.index.perf.Vocabulary;
+import com.jetbrains.index.token.Token;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of creating and looking up tokens of Zipf distributed words from eight threads at once
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+public class TokenFactoryBenchmark {
+
+    @Param({"simple", "caching", "dictionary"})
+    String factoryName;
+
+    @Param({"10000", "1000000"})
+    int vocabularySize;
+
+    private Vocabulary vocabulary;
+    private TokenFactory factory;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        vocabulary = new Vocabulary(vocabularySize, 1.1, 42);
+        factory = switch (factoryName) {
+            case "simple" -> new SimpleTokenFactory();
+            case "caching" -> new CachingTokenFactory();
+            case "dictionary" -> new DictionaryTokenFactory();
+            default -> throw new IllegalArgumentException("Unknown factory: " + factoryName);
+        };
+    }
+
+    @Benchmark
+    public Token getToken() {
+        return factory.getToken(vocabulary.sample(ThreadLocalRandom.current()));
+    }
+
+    @Benchmark
+    public Token findToken() {
+        return factory.findToken(vocabulary.sample(ThreadLocalRandom.current()));
+    }
+}
@@ -0,0 +1,61 @@
+package com.jetbrains.index.token.tokenizer;
+
+import com.jetbrains.index.perf.Vocabulary;
+import com.jetbrains.index.token.Token;
+import com.jetbrains.index.token.factory.CachingTokenFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to tokenize an in-memory content of {@code size} bytes, so only the tokenizer and the token factory are measured
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TokenizerBenchmark {
+
+    @Param({"4096", "262144", "4194304"})
+    int size;
+
+    @Param({"whitespace", "code"})
+    String tokenizerName;
+
+    private byte[] content;
+    private Tokenizer tokenizer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        var vocabulary = new Vocabulary(50_000, 1.1, 42);
+        content = vocabulary.text(new SplittableRandom(7), size).getBytes(StandardCharsets.UTF_8);
+        var factory = new CachingTokenFactory();
+        tokenizer = switch (tokenizerName) {
+            case "whitespace" -> new WhiteSpaceTokenizer(factory);
+            case "code" -> new CodeTokenizer(factory);
+            default -> throw new IllegalArgumentException("Unknown tokenizer: " + tokenizerName);
+        };
+    }
+
+    @Benchmark
+    public Iterable<Token> tokenize() {
+        return tokenizer.tokenize(new InputStreamReader(new ByteArrayInputStream(content), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,143 @@
+package com.jetbrains.index.watcher.task;
+
+import com.jetbrains.index.metrics.Histogram;
+import com.jetbrains.index.metrics.MetricsRegistry;
+import com.jetbrains.index.perf.Vocabulary;
+import com.jetbrains.index.watcher.BatchFSListener;
+import com.jetbrains.index.watcher.WatchMode;
+import com.jetbrains.index.watcher.WatcherConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Cost of scanning a generated tree of {@code files} files spread over directories nested {@code depth} levels deep:
+ * the first scan of a {@link WatcherTask}, which inspects and hashes every file, and a polling cycle of
+ * a running {@link WatchMode#POLLING} watcher over the unchanged tree, which only checks the directories.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = "--enable-preview")
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class WatcherTaskScanBenchmark {
+    private static final int FILES_PER_DIRECTORY = 50;
+
+    @Param({"1000", "10000"})
+    int files;
+
+    @Param({"3"})
+    int depth;
+
+    private Path root;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("scan-benchmark");
+        var vocabulary = new Vocabulary(10_000, 1.1, 42);
+        var random = new SplittableRandom(7);
+        for (int i = 0; i < files; i++) {
+            var directory = root;
+            int bucket = i / FILES_PER_DIRECTORY;
+            for (int level = 0; level < depth; level++) {
+                directory = directory.resolve("d" + bucket % 8);
+                bucket /= 8;
+            }
+            Files.createDirectories(directory);
+            Files.writeString(directory.resolve("f" + i + ".txt"), vocabulary.text(random, 256 + random.nextInt(4096)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (var path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    /**
+     * Start a watcher and wait until it published the creation of every file
+     */
+    @Benchmark
+    public void initialScan() throws InterruptedException {
+        var published = new CountDownLatch(files);
+        BatchFSListener listener = events -> events.forEach(_ -> published.countDown());
+        var thread = Thread.ofPlatform().start(new WatcherTask(List.of(root.toString()), listener, WatcherConfig.defaults()));
+        try {
+            published.await();
+        } finally {
+            thread.interrupt();
+            thread.join();
+        }
+    }
+
+    /**
+     * Wait for the next polling cycle of the running watcher. A cycle includes the pause of {@code SLEEP_TIME_MS}
+     * between two scans, the time above it is the cost of scanning the tree, inspecting the listed files and flushing
+     * the batch.
+     */
+    @Benchmark
+    public long unchangedRescan(PollingWatcher watcher) {
+        return watcher.awaitCycles(watcher.cycles.count() + 1);
+    }
+
+    /**
+     * A {@link WatchMode#POLLING} watcher over the generated tree, started for every measured iteration once the
+     * tree exists and counting its cycles through the {@code watcher.scan.micros} histogram
+     */
+    @State(Scope.Benchmark)
+    public static class PollingWatcher {
+        private Histogram cycles;
+        private Thread thread;
+
+        @Setup(Level.Iteration)
+        public void start(WatcherTaskScanBenchmark benchmark) {
+            var metrics = new MetricsRegistry();
+            cycles = metrics.histogram("watcher.scan.micros");
+            BatchFSListener listener = _ -> {
+            };
+            var config = WatcherConfig.defaults().withWatchMode(WatchMode.POLLING).withMetrics(metrics);
+            thread = Thread.ofPlatform().start(new WatcherTask(List.of(benchmark.root.toString()), listener, config));
+            //the first cycle inspects and hashes every file
+            awaitCycles(2);
+        }
+
+        @TearDown(Level.Iteration)
+        public void stop() throws InterruptedException {
+            thread.interrupt();
+            thread.join();
+        }
+
+        private long awaitCycles(long count) {
+            long completed;
+            while ((completed = cycles.count()) < count) {
+                LockSupport.parkNanos(50_000);
+            }
+            return completed;
+        }
+    }
+}
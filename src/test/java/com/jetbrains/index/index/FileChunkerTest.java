@@ -0,0 +1,71 @@
+package com.jetbrains.index.index;
+
+import com.jetbrains.index.BaseTemporaryDirectoryTest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+public class FileChunkerTest extends BaseTemporaryDirectoryTest {
+    private static final int AVERAGE_SIZE = 1024;
+
+    @Test
+    void chunksCoverTheFileAndEndAfterWhiteSpace() throws Exception {
+        var content = words(200_000, 1);
+        var file = write("words.txt", content);
+        var output = new ByteArrayOutputStream();
+        List<Integer> sizes = new ArrayList<>();
+
+        new FileChunker(AVERAGE_SIZE).chunk(file, (_, bytes, length) -> {
+            output.write(bytes, 0, length);
+            sizes.add(length);
+            Assertions.assertTrue(Character.isWhitespace(bytes[length - 1]) || output.size() == content.length());
+        });
+
+        Assertions.assertEquals(content, output.toString());
+        Assertions.assertTrue(sizes.subList(0, sizes.size() - 1).stream().allMatch(size -> size >= AVERAGE_SIZE / 4));
+        Assertions.assertTrue(sizes.stream().allMatch(size -> size <= AVERAGE_SIZE * 4 + 32));
+    }
+
+    @Test
+    void insertionOnlyChangesNearbyChunks() throws Exception {
+        var content = words(200_000, 2);
+        var before = digests(write("before.txt", content));
+        int middle = content.indexOf(' ', content.length() / 2);
+        var after = digests(write("after.txt", content.substring(0, middle) + " inserted words" + content.substring(middle)));
+
+        var changed = new HashSet<>(after);
+        changed.removeAll(before);
+        Assertions.assertTrue(before.size() > 50);
+        Assertions.assertTrue(changed.size() <= 2, "Changed chunks: " + changed.size());
+    }
+
+    private static List<Long> digests(Path file) throws IOException, InterruptedException {
+        List<Long> digests = new ArrayList<>();
+        new FileChunker(AVERAGE_SIZE).chunk(file, (digest, _, _) -> digests.add(digest));
+        return digests;
+    }
+
+    private static Path write(String name, String content) throws IOException {
+        return Files.writeString(testFile(name), content);
+    }
+
+    private static String words(int length, long seed) {
+        var random = new Random(seed);
+        var builder = new StringBuilder();
+        while (builder.length() < length) {
+            for (int i = 0; i < 3 + random.nextInt(6); i++) {
+                builder.append((char) ('a' + random.nextInt(26)));
+            }
+            builder.append(random.nextInt(10) == 0 ? '\n' : ' ');
+        }
+        return builder.toString();
+    }
+}
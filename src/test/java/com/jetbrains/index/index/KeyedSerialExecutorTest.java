@@ -0,0 +1,151 @@
+package com.jetbrains.index.index;
+
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class KeyedSerialExecutorTest {
+    private final ExecutorService pool = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void tasksOfOneKeyRunInOrder() throws InterruptedException {
+        var executor = new KeyedSerialExecutor<String>(pool, 1000);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        var running = new AtomicInteger();
+        var overlapped = new AtomicInteger();
+
+        for (int i = 0; i < 500; i++) {
+            int value = i;
+            executor.submit("a.txt", () -> {
+                if (running.incrementAndGet() > 1) {
+                    overlapped.incrementAndGet();
+                }
+                order.add(value);
+                running.decrementAndGet();
+            });
+        }
+
+        Awaitility.await().atMost(Duration.ofSeconds(2)).until(() -> executor.pending() == 0);
+        Assertions.assertEquals(500, order.size());
+        for (int i = 0; i < order.size(); i++) {
+            Assertions.assertEquals(i, order.get(i));
+        }
+        Assertions.assertEquals(0, overlapped.get());
+    }
+
+    @Test
+    void differentKeysRunInParallel() throws InterruptedException {
+        var executor = new KeyedSerialExecutor<String>(pool, 10);
+        var bothStarted = new CountDownLatch(2);
+
+        for (String key : List.of("a.txt", "b.txt")) {
+            executor.submit(key, () -> {
+                bothStarted.countDown();
+                try {
+                    bothStarted.await(1, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+
+        Assertions.assertTrue(bothStarted.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void submitBlocksAtCapacity() throws InterruptedException {
+        var executor = new KeyedSerialExecutor<String>(pool, 2);
+        var release = new CountDownLatch(1);
+        Runnable blocked = () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        executor.submit("a.txt", blocked);
+        executor.submit("b.txt", blocked);
+        Assertions.assertTrue(executor.isSaturated());
+
+        var producer = Thread.startVirtualThread(() -> {
+            try {
+                executor.submit("c.txt", () -> {
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Thread.sleep(100);
+        Assertions.assertTrue(producer.isAlive());
+
+        release.countDown();
+        producer.join(Duration.ofSeconds(1));
+        Assertions.assertFalse(producer.isAlive());
+        Awaitility.await().atMost(Duration.ofSeconds(1)).until(() -> executor.pending() == 0);
+    }
+
+    @Test
+    void queueGrownBeforeTheDrainStartsIsDrained() throws InterruptedException {
+        List<Runnable> scheduled = new ArrayList<>();
+        var executor = new KeyedSerialExecutor<String>(scheduled::add, 100);
+        var ran = new AtomicInteger();
+
+        for (int i = 0; i < 100; i++) {
+            executor.submit("a.txt", ran::incrementAndGet);
+        }
+        Assertions.assertEquals(1, scheduled.size());
+        scheduled.getFirst().run();
+
+        Assertions.assertEquals(100, ran.get());
+        Assertions.assertEquals(0, executor.pending());
+        executor.submit("a.txt", ran::incrementAndGet);
+        Assertions.assertEquals(2, scheduled.size());
+    }
+
+    @Test
+    void weightedTasksTakeAPermitPerUnit() throws InterruptedException {
+        var executor = new KeyedSerialExecutor<String>(pool, 4);
+        var release = new CountDownLatch(1);
+        executor.submit("batch", 3, () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Assertions.assertEquals(3, executor.pending());
+        Assertions.assertFalse(executor.isSaturated());
+
+        var producer = Thread.startVirtualThread(() -> {
+            try {
+                executor.submit("batch", 2, () -> {
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        Thread.sleep(100);
+        Assertions.assertTrue(producer.isAlive());
+
+        release.countDown();
+        producer.join(Duration.ofSeconds(1));
+        Assertions.assertFalse(producer.isAlive());
+        Awaitility.await().atMost(Duration.ofSeconds(1)).until(() -> executor.pending() == 0);
+    }
+}
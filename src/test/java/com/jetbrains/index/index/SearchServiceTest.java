@@ -1,9 +1,12 @@
 package com.jetbrains.index.index;
 
 import com.jetbrains.index.BaseTemporaryDirectoryTest;
+import com.jetbrains.index.metrics.MetricsRegistry;
 import com.jetbrains.index.token.factory.CachingTokenFactory;
 import com.jetbrains.index.token.factory.SimpleTokenFactory;
 import com.jetbrains.index.token.tokenizer.WhiteSpaceTokenizer;
+import com.jetbrains.index.watcher.ChangeType;
+import com.jetbrains.index.watcher.DefaultFileEvent;
 import com.jetbrains.index.watcher.FileSystemWatcher;
 import org.awaitility.Awaitility;
 import org.junit.jupiter.api.Assertions;
@@ -15,6 +18,9 @@ import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Full end-to-end tests for the task.
@@ -186,6 +192,310 @@ public class SearchServiceTest extends BaseTemporaryDirectoryTest {
         }
     }
     
+    /**
+     * Verifies that copies of a file are indexed once and found under every path
+     */
+    @Test
+    void identicalFilesAreIndexedOnce() throws Exception {
+        try (var watcher = new FileSystemWatcher(List.of(TEST_DIRECTORY_PATH.toString()))) {
+            IndexSearchService svc = testService();
+            watcher.registerListener(svc);
+            watcher.start();
+
+            Files.copy(Path.of("src/test/resources/CthulhuPlot.txt"), testFile("CthulhuPlot.txt"));
+            Files.copy(Path.of("src/test/resources/CthulhuPlot.txt"), testFile("CthulhuPlotCopy.txt"));
+            Files.copy(Path.of("src/test/resources/TestFile1.txt"), testFile("TestFile1.txt"));
+
+            Awaitility.await().atMost(Duration.ofSeconds(2)).untilAsserted(() -> Assertions.assertEquals(2, svc.findWord("greenish-black").size()));
+            final var color = svc.findWord("greenish-black");
+            Assertions.assertTrue(color.contains(testFileString("CthulhuPlot.txt")));
+            Assertions.assertTrue(color.contains(testFileString("CthulhuPlotCopy.txt")));
+            Assertions.assertEquals(2, svc.indexedContents());
+
+            //the other copy keeps the content in the index
+            Files.delete(testFile("CthulhuPlot.txt"));
+            Awaitility.await().atMost(Duration.ofSeconds(2)).untilAsserted(() -> Assertions.assertEquals(1, color.size()));
+            Assertions.assertTrue(color.contains(testFileString("CthulhuPlotCopy.txt")));
+
+            Files.writeString(testFile("CthulhuPlotCopy.txt"), "Unicorn");
+            Awaitility.await().atMost(Duration.ofSeconds(2)).untilAsserted(() -> Assertions.assertTrue(color.isEmpty()));
+            Assertions.assertEquals(List.of(testFileString("CthulhuPlotCopy.txt")), List.copyOf(svc.findWord("Unicorn")));
+            Assertions.assertEquals(2, svc.indexedContents());
+
+            svc.close();
+        }
+    }
+
+    /**
+     * Verifies that events of files with the same digest share their tokens, also when delivered as a batch
+     */
+    @Test
+    void contentIsTokenizedOncePerDigest() throws Exception {
+        var tokenized = new AtomicInteger();
+        var fact = new SimpleTokenFactory();
+        var tokenizer = new WhiteSpaceTokenizer(fact);
+        var svc = new IndexSearchService(reader -> {
+            tokenized.incrementAndGet();
+            return tokenizer.tokenize(reader);
+        }, fact);
+        createTestFile("a.txt", "vendored library");
+        createTestFile("b.txt", "vendored library");
+        createTestFile("c.txt", "vendored library");
+        byte[] digest = {1, 2, 3};
+
+        svc.onFileChanged(new DefaultFileEvent(testFileString("a.txt"), ChangeType.CREATE, digest));
+        svc.onFilesChanged(List.of(
+                new DefaultFileEvent(testFileString("b.txt"), ChangeType.CREATE, digest),
+                new DefaultFileEvent(testFileString("c.txt"), ChangeType.CREATE, digest)));
+
+        Assertions.assertTrue(svc.awaitIndexed(svc.receivedSequence(), Duration.ofSeconds(2)));
+        Assertions.assertEquals(3, svc.findWord("library").size());
+        Assertions.assertEquals(1, tokenized.get());
+        Assertions.assertEquals(1, svc.indexedContents());
+
+        svc.onFilesChanged(List.of(
+                new DefaultFileEvent(testFileString("a.txt"), ChangeType.DELETE),
+                new DefaultFileEvent(testFileString("b.txt"), ChangeType.DELETE),
+                new DefaultFileEvent(testFileString("c.txt"), ChangeType.DELETE)));
+        Assertions.assertTrue(svc.awaitIndexed(svc.receivedSequence(), Duration.ofSeconds(2)));
+        Assertions.assertEquals(0, svc.indexedContents());
+        Assertions.assertTrue(svc.findWord("library").isEmpty());
+
+        svc.close();
+    }
+
+    /**
+     * Verifies that renamed files keep their tokens under the new path without being read again
+     */
+    @Test
+    void renameMovesContentWithoutTokenizing() throws Exception {
+        var tokenized = new AtomicInteger();
+        var fact = new SimpleTokenFactory();
+        var tokenizer = new WhiteSpaceTokenizer(fact);
+        var svc = new IndexSearchService(reader -> {
+            tokenized.incrementAndGet();
+            return tokenizer.tokenize(reader);
+        }, fact);
+        createTestFile("a.txt", "moved content");
+        createTestFile("b.txt", "plain file");
+        byte[] digest = {1, 2, 3};
+        svc.onFilesChanged(List.of(
+                new DefaultFileEvent(testFileString("a.txt"), ChangeType.CREATE, digest),
+                new DefaultFileEvent(testFileString("b.txt"), ChangeType.CREATE)));
+        Assertions.assertTrue(svc.awaitIndexed(svc.receivedSequence(), Duration.ofSeconds(2)));
+        Assertions.assertEquals(2, tokenized.get());
+
+        Files.move(testFile("a.txt"), testFile("c.txt"));
+        Files.move(testFile("b.txt"), testFile("d.txt"));
+        svc.onFilesChanged(List.of(
+                DefaultFileEvent.rename(testFileString("a.txt"), testFileString("c.txt"), digest),
+                DefaultFileEvent.rename(testFileString("b.txt"), testFileString("d.txt"), null)));
+
+        Assertions.assertTrue(svc.awaitIndexed(svc.receivedSequence(), Duration.ofSeconds(2)));
+        Assertions.assertEquals(List.of(testFileString("c.txt")), List.copyOf(svc.findWord("moved")));
+        Assertions.assertEquals(List.of(testFileString("d.txt")), List.copyOf(svc.findWord("plain")));
+        Assertions.assertEquals(2, tokenized.get());
+        Assertions.assertEquals(2, svc.indexedContents());
+
+        svc.close();
+    }
+
+    /**
+     * Verifies that only the changed chunks of a large file are tokenized again
+     */
+    @Test
+    void largeFilesAreReindexedByChangedChunks() throws Exception {
+        var tokenized = new AtomicInteger();
+        var fact = new SimpleTokenFactory();
+        var tokenizer = new WhiteSpaceTokenizer(fact);
+        var svc = new IndexSearchService(reader -> {
+            tokenized.incrementAndGet();
+            return tokenizer.tokenize(reader);
+        }, fact, 16, 64 * 1024);
+        var random = new Random(7);
+        var words = new StringBuilder();
+        while (words.length() < 512 * 1024) {
+            words.append("word").append(random.nextInt(100_000)).append(random.nextInt(8) == 0 ? '\n' : ' ');
+        }
+        var first = words.substring(0, words.length() / 4);
+        var middle = words.substring(words.length() / 4, words.length() / 2);
+        var last = words.substring(words.length() / 2);
+        var path = testFileString("large.txt");
+
+        writeFile("large.txt", first + " vanishing " + middle + " steady " + last);
+        svc.onFileChanged(new DefaultFileEvent(path, ChangeType.CREATE, new byte[]{1}));
+        Assertions.assertTrue(svc.awaitIndexed(path, Duration.ofSeconds(5)));
+        Assertions.assertEquals(1, svc.findWord("vanishing").size());
+        int initial = tokenized.get();
+        Assertions.assertTrue(initial > 20, "Chunks: " + initial);
+
+        writeFile("large.txt", first + " appearing " + middle + " steady " + last);
+        svc.onFileChanged(new DefaultFileEvent(path, ChangeType.UPDATE, new byte[]{2}));
+        Assertions.assertTrue(svc.awaitIndexed(path, Duration.ofSeconds(5)));
+        Assertions.assertEquals(List.of(path), List.copyOf(svc.findWord("appearing")));
+        Assertions.assertTrue(svc.findWord("vanishing").isEmpty());
+        Assertions.assertTrue(tokenized.get() - initial <= 2, "Tokenized again: " + (tokenized.get() - initial));
+
+        writeFile("large.txt", first + " appearing " + middle + " steady " + last + " batched");
+        svc.onFilesChanged(List.of(new DefaultFileEvent(path, ChangeType.UPDATE, new byte[]{3})));
+        Assertions.assertTrue(svc.awaitIndexed(path, Duration.ofSeconds(5)));
+        Assertions.assertEquals(1, svc.findWord("batched").size());
+        Assertions.assertEquals(List.of(path), List.copyOf(svc.findWord("steady")));
+        Assertions.assertEquals(List.of(path), List.copyOf(svc.findWord("appearing")));
+        Assertions.assertTrue(tokenized.get() - initial <= 4, "Tokenized again: " + (tokenized.get() - initial));
+        Assertions.assertEquals(1, svc.indexedContents());
+
+        svc.onFileChanged(new DefaultFileEvent(path, ChangeType.DELETE));
+        Assertions.assertTrue(svc.awaitIndexed(path, Duration.ofSeconds(5)));
+        Assertions.assertTrue(svc.findWord("steady").isEmpty());
+
+        svc.close();
+    }
+
+    /**
+     * Verifies that an append only tokenizes the tail, unless the previous content ends within a token
+     */
+    @Test
+    void appendTokenizesOnlyTheTail() throws Exception {
+        var svc = testService();
+        var path = testFileString("app.log");
+        writeFile("app.log", "started server\n");
+        svc.onFileChanged(new DefaultFileEvent(path, ChangeType.CREATE, new byte[]{1}));
+        Assertions.assertTrue(svc.awaitIndexed(path, Duration.ofSeconds(2)));
+        Assertions.assertEquals(1, svc.findWord("started").size());
+
+        //the prefix is rewritten on purpose, an append must not read it again
+        writeFile("app.log", "rewritten head\nrequest served\n");
+        svc.onFileChanged(DefaultFileEvent.append(path, "started server\n".length(), new byte[]{2}));
+        Assertions.assertTrue(svc.awaitIndexed(path, Duration.ofSeconds(2)));
+        Assertions.assertEquals(List.of(path), List.copyOf(svc.findWord("served")));
+        Assertions.assertEquals(List.of(path), List.copyOf(svc.findWord("started")));
+        Assertions.assertTrue(svc.findWord("rewritten").isEmpty());
+
+        writeFile("app.log", "rewritten head\nrequest served\nstopped\nagain\n");
+        svc.onFilesChanged(List.of(
+                DefaultFileEvent.append(path, "rewritten head\nrequest served\n".length(), new byte[]{3}),
+                DefaultFileEvent.append(path, "rewritten head\nrequest served\nstopped\n".length(), new byte[]{4})));
+        Assertions.assertTrue(svc.awaitIndexed(path, Duration.ofSeconds(2)));
+        Assertions.assertEquals(1, svc.findWord("stopped").size());
+        Assertions.assertEquals(1, svc.findWord("again").size());
+        Assertions.assertEquals(1, svc.indexedContents());
+
+        //a token spans the offset, the whole file is indexed
+        writeFile("app.log", "rewritten head\nrequest served\nstopped\nagain and again\n");
+        svc.onFileChanged(DefaultFileEvent.append(path, "rewritten head\nrequest served\nstopped\nagai".length(), new byte[]{5}));
+        Assertions.assertTrue(svc.awaitIndexed(path, Duration.ofSeconds(2)));
+        Assertions.assertEquals(1, svc.findWord("rewritten").size());
+        Assertions.assertTrue(svc.findWord("started").isEmpty());
+        Assertions.assertEquals(1, svc.indexedContents());
+
+        svc.close();
+    }
+
+    /**
+     * Verifies that waiting for a sequence or a file blocks until its events are applied
+     */
+    @Test
+    void awaitIndexedBlocksUntilEventsAreApplied() throws Exception {
+        var release = new CountDownLatch(1);
+        var fact = new SimpleTokenFactory();
+        var tokenizer = new WhiteSpaceTokenizer(fact);
+        var svc = new IndexSearchService(reader -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return tokenizer.tokenize(reader);
+        }, fact);
+        createTestFile("slow.txt", "eventually searchable");
+        createTestFile("fast.txt", "quickly searchable");
+        Assertions.assertEquals(0, svc.receivedSequence());
+
+        svc.onFileChanged(new DefaultFileEvent(testFileString("slow.txt"), ChangeType.CREATE));
+        long slow = svc.receivedSequence();
+        svc.onFilesChanged(List.of(new DefaultFileEvent(testFileString("fast.txt"), ChangeType.CREATE)));
+        long fast = svc.receivedSequence();
+        Assertions.assertTrue(fast > slow);
+        Assertions.assertFalse(svc.awaitIndexed(slow, Duration.ofMillis(50)));
+        Assertions.assertFalse(svc.awaitIndexed(testFileString("slow.txt"), Duration.ofMillis(50)));
+        Assertions.assertTrue(svc.indexedSequence() < slow);
+
+        release.countDown();
+        Assertions.assertTrue(svc.awaitIndexed(fast, Duration.ofSeconds(2)));
+        Assertions.assertEquals(fast, svc.indexedSequence());
+        Assertions.assertEquals(1, svc.findWord("eventually").size());
+        Assertions.assertEquals(2, svc.findWord("searchable").size());
+        Assertions.assertTrue(svc.awaitIndexed(testFileString("slow.txt"), Duration.ZERO));
+
+        svc.close();
+    }
+
+    /**
+     * Verifies that updates and searches are recorded in the metrics
+     */
+    @Test
+    void updatesAndSearchesAreMeasured() throws Exception {
+        var metrics = new MetricsRegistry();
+        var fact = new SimpleTokenFactory();
+        var svc = new IndexSearchService(new WhiteSpaceTokenizer(fact), fact, metrics);
+        createTestFile("measured.txt", "measured words");
+
+        svc.onFileChanged(new DefaultFileEvent(testFileString("measured.txt"), ChangeType.CREATE));
+        //the update is recorded after the tokens are searchable, but before the event counts as indexed
+        Assertions.assertTrue(svc.awaitIndexed(testFileString("measured.txt"), Duration.ofSeconds(2)));
+        Assertions.assertEquals(1, svc.findWord("measured").size());
+
+        var snapshot = metrics.snapshot();
+        Assertions.assertEquals(1L, snapshot.get("index.tokenize.micros.count"));
+        Assertions.assertEquals(1L, snapshot.get("index.update.micros.count"));
+        Assertions.assertTrue((long) snapshot.get("search.micros.count") >= 1);
+        Assertions.assertEquals(1L, snapshot.get("search.results.max"));
+        Assertions.assertEquals(1L, snapshot.get("index.contents"));
+
+        svc.close();
+    }
+
+    /**
+     * Verifies that every event of a batch counts against the pending events, so batches are throttled as well
+     */
+    @Test
+    void batchesTakeCapacityPerEvent() throws Exception {
+        var release = new CountDownLatch(1);
+        var fact = new SimpleTokenFactory();
+        var tokenizer = new WhiteSpaceTokenizer(fact);
+        var svc = new IndexSearchService(reader -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return tokenizer.tokenize(reader);
+        }, fact, 4);
+        for (String name : List.of("a.txt", "b.txt", "c.txt", "d.txt", "e.txt")) {
+            createTestFile(name, "throttled " + name);
+        }
+
+        svc.onFilesChanged(List.of(
+                new DefaultFileEvent(testFileString("a.txt"), ChangeType.CREATE),
+                new DefaultFileEvent(testFileString("b.txt"), ChangeType.CREATE),
+                new DefaultFileEvent(testFileString("c.txt"), ChangeType.CREATE)));
+        Assertions.assertEquals(3, svc.pendingEvents());
+
+        var producer = Thread.startVirtualThread(() -> svc.onFilesChanged(List.of(
+                new DefaultFileEvent(testFileString("d.txt"), ChangeType.CREATE),
+                new DefaultFileEvent(testFileString("e.txt"), ChangeType.CREATE))));
+        Thread.sleep(100);
+        Assertions.assertTrue(producer.isAlive());
+
+        release.countDown();
+        producer.join(Duration.ofSeconds(2));
+        Assertions.assertFalse(producer.isAlive());
+        Awaitility.await().atMost(Duration.ofSeconds(2)).untilAsserted(() -> Assertions.assertEquals(5, svc.findWord("throttled").size()));
+
+        svc.close();
+    }
+
     private IndexSearchService testService(){
         var fact = new SimpleTokenFactory();
         return new IndexSearchService(new WhiteSpaceTokenizer(fact),fact);
@@ -0,0 +1,51 @@
+package com.jetbrains.index.index;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class WatermarkTest {
+
+    @Test
+    void watermarkStopsBelowTheLowestPendingSequence() {
+        var watermark = new Watermark();
+        long first = watermark.receive();
+        long second = watermark.receive();
+        long third = watermark.receive();
+        Assertions.assertEquals(0, watermark.value());
+
+        watermark.apply(second);
+        watermark.apply(third);
+        Assertions.assertEquals(0, watermark.value());
+
+        watermark.apply(first);
+        Assertions.assertEquals(3, watermark.value());
+        Assertions.assertEquals(3, watermark.received());
+    }
+
+    @Test
+    void awaitReturnsOnceTheSequenceIsApplied() throws Exception {
+        var watermark = new Watermark();
+        long first = watermark.receive();
+        long second = watermark.receive();
+        Assertions.assertFalse(watermark.await(first, Duration.ofMillis(20)));
+
+        var waiter = CompletableFuture.supplyAsync(() -> {
+            try {
+                return watermark.await(second, Duration.ofSeconds(5));
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        watermark.apply(second);
+        Thread.sleep(20);
+        Assertions.assertFalse(waiter.isDone());
+
+        watermark.apply(first);
+        Assertions.assertTrue(waiter.get(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(watermark.await(second, Duration.ZERO));
+    }
+}
@@ -7,8 +7,10 @@ import com.jetbrains.index.token.factory.TokenFactory;
  * Runs tests with the memory optimized {@link CachingTokenFactory}
  */
 public class ConcurrentIndexCachedFactoryTest extends ConcurrentIndexFunctionalTest {
+    private final CachingTokenFactory factory = new CachingTokenFactory();
+
     @Override
     protected TokenFactory getTokenFactory() {
-        return CachingTokenFactory.getInstance();
+        return factory;
     }
 }
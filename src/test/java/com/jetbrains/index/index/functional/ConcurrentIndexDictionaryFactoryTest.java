@@ -0,0 +1,16 @@
+package com.jetbrains.index.index.functional;
+
+import com.jetbrains.index.token.factory.DictionaryTokenFactory;
+import com.jetbrains.index.token.factory.TokenFactory;
+
+/**
+ * Runs tests with the arena backed {@link DictionaryTokenFactory}
+ */
+public class ConcurrentIndexDictionaryFactoryTest extends ConcurrentIndexFunctionalTest {
+    private final DictionaryTokenFactory factory = new DictionaryTokenFactory();
+
+    @Override
+    protected TokenFactory getTokenFactory() {
+        return factory;
+    }
+}
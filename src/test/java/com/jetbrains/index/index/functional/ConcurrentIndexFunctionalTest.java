@@ -7,6 +7,7 @@ import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -236,10 +237,70 @@ public abstract class ConcurrentIndexFunctionalTest {
         Assertions.assertTrue(index.search(token(3)).contains("/test/container2"));
     }
 
+    /**
+     * Verifies that updating a container which was never ingested inserts it
+     */
+    @Test
+    void updateOfUnknownContainerInsertsTokens(){
+        var index = new ConcurrentIndex<Token, String>();
+        index.update(List.of(token(1), token(2)),"/test/container1");
+
+        indexHas(index, "/test/container1", token(1));
+        indexHas(index, "/test/container1", token(2));
+    }
+
+    /**
+     * Verifies that a batch updates, inserts and removes containers in one go
+     */
+    @Test
+    void applyBatchUpdatesInsertsAndRemovesContainers(){
+        var index = new ConcurrentIndex<Token, String>();
+        index.ingestTokens(List.of(token(1), token(2)),"/test/container1");
+        index.ingestTokens(List.of(token(2), token(3)),"/test/container2");
+
+        index.applyBatch(Map.of(
+                "/test/container1", List.of(token(2), token(4)),
+                "/test/container3", List.of(token(3))), List.of("/test/container2"));
+
+        Assertions.assertTrue(index.search(token(1)).isEmpty());
+        indexHas(index, "/test/container1", token(2));
+        indexHas(index, "/test/container3", token(3));
+        indexHas(index, "/test/container1", token(4));
+    }
+
     private Token token(int param) {
         return getTokenFactory().getToken("Token" + param);
     }
 
+    @Test
+    void renameKeepsTokensUnderNewContainer(){
+        var index = new ConcurrentIndex<Token, String>();
+        index.ingestTokens(List.of(token(1), token(2)),"/test/container1");
+        index.ingestTokens(List.of(token(3)),"/test/container2");
+
+        index.rename("/test/container1", "/test/container2");
+
+        indexHas(index, "/test/container2", token(1));
+        indexHas(index, "/test/container2", token(2));
+        Assertions.assertFalse(index.search(token(1)).contains("/test/container1"));
+        Assertions.assertTrue(index.search(token(3)).isEmpty());
+        Assertions.assertEquals(List.of(token(1), token(2)).size(), index.remove("/test/container2").size());
+    }
+
+    @Test
+    void addAndRemoveTokensOnlyTouchGivenTokens(){
+        var index = new ConcurrentIndex<Token, String>();
+        index.ingestTokens(List.of(token(1), token(2)),"/test/container1");
+        index.ingestTokens(List.of(token(2)),"/test/container2");
+
+        index.addTokens(List.of(token(3)), "/test/container1");
+        index.removeTokens(List.of(token(1), token(2)), "/test/container1");
+
+        Assertions.assertTrue(index.search(token(1)).isEmpty());
+        Assertions.assertEquals(List.of("/test/container2"), List.copyOf(index.search(token(2))));
+        indexHas(index, "/test/container1", token(3));
+    }
+
     private void indexHas(ConcurrentIndex<Token,String> index, String container, Token token) {
         var result = index.search(token);
         Assertions.assertEquals(1, result.size());
@@ -0,0 +1,92 @@
+package com.jetbrains.index.jfr;
+
+import com.jetbrains.index.BaseTemporaryDirectoryTest;
+import com.jetbrains.index.index.IndexSearchService;
+import com.jetbrains.index.token.factory.SimpleTokenFactory;
+import com.jetbrains.index.token.tokenizer.WhiteSpaceTokenizer;
+import com.jetbrains.index.watcher.ChangeType;
+import com.jetbrains.index.watcher.DefaultFileEvent;
+import com.jetbrains.index.watcher.FileChangeEvent;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+public class JfrEventsTest extends BaseTemporaryDirectoryTest {
+
+    @Test
+    void indexingAndSearchAreRecorded() throws IOException, InterruptedException {
+        List<RecordedEvent> events;
+        try (var recording = new Recording()) {
+            recording.enable(TokenizeEvent.class).withoutThreshold();
+            recording.enable(IndexEvent.class).withoutThreshold();
+            recording.enable(SearchEvent.class).withoutThreshold();
+            recording.start();
+
+            var fact = new SimpleTokenFactory();
+            var svc = new IndexSearchService(new WhiteSpaceTokenizer(fact), fact);
+            createTestFile("recorded.txt", "recorded words recorded");
+            svc.onFileChanged(new DefaultFileEvent(testFileString("recorded.txt"), ChangeType.CREATE));
+            Assertions.assertTrue(svc.awaitIndexed(svc.receivedSequence(), Duration.ofSeconds(2)));
+            Assertions.assertEquals(1, svc.findWord("words").size());
+            svc.close();
+
+            recording.stop();
+            Path dump = testFile("recording.jfr");
+            recording.dump(dump);
+            events = RecordingFile.readAllEvents(dump);
+        }
+
+        var tokenize = single(events, "com.jetbrains.index.Tokenize");
+        Assertions.assertEquals(3, tokenize.getInt("tokens"));
+        Assertions.assertEquals("WhiteSpaceTokenizer", tokenize.getString("tokenizer"));
+        var update = single(events, "com.jetbrains.index.IndexModification");
+        Assertions.assertEquals("update", update.getString("operation"));
+        Assertions.assertEquals(2, update.getInt("tokens"));
+        Assertions.assertTrue(events.stream().anyMatch(event -> event.getEventType().getName().equals("com.jetbrains.index.Search")
+                && "words".equals(event.getString("word")) && event.getInt("results") == 1));
+    }
+
+    @Test
+    void watcherScansAreRecorded() throws IOException, InterruptedException {
+        List<RecordedEvent> events;
+        try (var recording = new Recording()) {
+            recording.enable(ScanEvent.class).withoutThreshold();
+            recording.enable(InspectionEvent.class).withoutThreshold();
+            recording.start();
+
+            createTestFile("watched.txt", "watched");
+            var published = new ConcurrentLinkedDeque<FileChangeEvent>();
+            var thread = oneDirectoryWatcher(TEST_DIRECTORY_PATH, published::add);
+            thread.start();
+            Awaitility.await().atMost(Duration.ofSeconds(2)).until(() -> !published.isEmpty());
+            thread.interrupt();
+            thread.join(Duration.ofMillis(200));
+
+            recording.stop();
+            Path dump = testFile("recording.jfr");
+            recording.dump(dump);
+            events = RecordingFile.readAllEvents(dump);
+        }
+
+        Assertions.assertTrue(events.stream().anyMatch(event -> event.getEventType().getName().equals("com.jetbrains.index.Scan")
+                && event.getInt("trackedFiles") == 1));
+        Assertions.assertTrue(events.stream().anyMatch(event -> event.getEventType().getName().equals("com.jetbrains.index.Inspection")
+                && event.getString("path").endsWith("watched.txt") && "CREATE".equals(event.getString("change"))
+                && event.getLong("size") == "watched".length()));
+    }
+
+    private static RecordedEvent single(List<RecordedEvent> events, String name) {
+        var matching = events.stream().filter(event -> event.getEventType().getName().equals(name)).toList();
+        Assertions.assertEquals(1, matching.size(), matching.toString());
+        return matching.getFirst();
+    }
+}
@@ -0,0 +1,43 @@
+package com.jetbrains.index.metrics;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+
+public class HistogramTest {
+
+    @Test
+    void bucketsCoverTheWholeRange() {
+        var random = new Random(3);
+        for (int i = 0; i < 10_000; i++) {
+            long value = (random.nextLong() >>> 1) >>> random.nextInt(63);
+            int bucket = Histogram.bucketOf(value);
+            Assertions.assertTrue(Histogram.highestValueOf(bucket) >= value, "Value " + value);
+            Assertions.assertTrue(bucket == 0 || Histogram.highestValueOf(bucket - 1) < value, "Value " + value);
+        }
+        Assertions.assertEquals(Long.MAX_VALUE, Histogram.highestValueOf(Histogram.bucketOf(Long.MAX_VALUE)));
+    }
+
+    @Test
+    void percentilesAreWithinRelativeError() {
+        var histogram = new Histogram();
+        IntStream.rangeClosed(1, 100_000).forEach(histogram::record);
+
+        Assertions.assertEquals(100_000, histogram.count());
+        Assertions.assertEquals(100_000, histogram.max());
+        Assertions.assertEquals(50_000.5, histogram.mean(), 0.001);
+        Assertions.assertEquals(50_000, histogram.percentile(50), 50_000 / 32.0);
+        Assertions.assertEquals(99_000, histogram.percentile(99), 99_000 / 32.0);
+        Assertions.assertEquals(100_000, histogram.percentile(100));
+    }
+
+    @Test
+    void emptyHistogramReportsZero() {
+        var histogram = new Histogram();
+
+        Assertions.assertEquals(0, histogram.percentile(99));
+        Assertions.assertEquals(0, histogram.mean());
+    }
+}
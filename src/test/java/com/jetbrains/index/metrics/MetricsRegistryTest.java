@@ -0,0 +1,56 @@
+package com.jetbrains.index.metrics;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.management.JMException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+public class MetricsRegistryTest {
+
+    @Test
+    void snapshotFlattensHistograms() {
+        var registry = new MetricsRegistry();
+        registry.counter("files").add(3);
+        registry.gauge("pending", () -> 7);
+        registry.histogram("latency").record(40);
+        registry.histogram("latency").record(60);
+
+        var snapshot = registry.snapshot();
+
+        Assertions.assertEquals(3L, snapshot.get("files"));
+        Assertions.assertEquals(7L, snapshot.get("pending"));
+        Assertions.assertEquals(2L, snapshot.get("latency.count"));
+        Assertions.assertEquals(50.0, snapshot.get("latency.mean"));
+        Assertions.assertEquals(60L, snapshot.get("latency.max"));
+        Assertions.assertSame(registry.counter("files"), registry.counter("files"));
+    }
+
+    @Test
+    void metricsAreExposedOverJmx() throws JMException {
+        var registry = new MetricsRegistry();
+        registry.counter("watcher.files.inspected").add(5);
+        var name = MetricsMBean.register(registry, "test");
+        var server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            Assertions.assertEquals(5L, server.getAttribute(name, "watcher.files.inspected"));
+
+            registry.histogram("search.micros").record(10);
+            var attributes = Arrays.stream(server.getMBeanInfo(name).getAttributes()).map(info -> info.getName()).toList();
+            Assertions.assertTrue(attributes.contains("search.micros.p99"), attributes.toString());
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+
+    @Test
+    void snapshotIsFormattedForLogs() {
+        var registry = new MetricsRegistry();
+        registry.counter("b").increment();
+        registry.histogram("a").record(1);
+
+        Assertions.assertEquals("{a.count=1, a.max=1, a.mean=1.0, a.p50=1, a.p90=1, a.p99=1, b=1}",
+                MetricsLogger.format(registry.snapshot()));
+    }
+}
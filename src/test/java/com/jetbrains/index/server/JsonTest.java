@@ -0,0 +1,40 @@
+package com.jetbrains.index.server;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class JsonTest {
+
+    @Test
+    void writtenStringsAreParsedBack() {
+        var words = List.of("plain", "quoted \"word\"", "back\\slash", "line\nbreak", "bell\u0007", "47°9′S");
+
+        var json = Json.array(words);
+
+        Assertions.assertEquals(words, Json.parseStringArray(json));
+        Assertions.assertEquals("[\"bell\\u0007\"]", Json.array(List.of("bell\u0007")));
+        Assertions.assertEquals(List.of("a/b", "é"), Json.parseStringArray(" [ \"a\\/b\" , \"\\u00e9\" ] "));
+        Assertions.assertEquals(List.of(), Json.parseStringArray("[]"));
+    }
+
+    @Test
+    void malformedArraysAreRejected() {
+        for (String json : List.of("", "[", "[\"open]", "[\"a\",]", "[1]", "[\"a\"] trailing", "[\"\\x\"]", "[\"\\u12\"]")) {
+            Assertions.assertThrows(IllegalArgumentException.class, () -> Json.parseStringArray(json), json);
+        }
+    }
+
+    @Test
+    void objectsKeepTheirOrderAndNest() {
+        Map<String, Object> object = new LinkedHashMap<>();
+        object.put("count", 3L);
+        object.put("mean", 2.25);
+        object.put("nested", Map.of("size", 1));
+
+        Assertions.assertEquals("{\"count\":3,\"mean\":2.3,\"nested\":{\"size\":1}}", Json.object(object));
+    }
+}
@@ -0,0 +1,120 @@
+package com.jetbrains.index.server;
+
+import com.jetbrains.index.BaseTemporaryDirectoryTest;
+import com.jetbrains.index.index.IndexSearchService;
+import com.jetbrains.index.metrics.MetricsRegistry;
+import com.jetbrains.index.token.factory.SimpleTokenFactory;
+import com.jetbrains.index.token.tokenizer.WhiteSpaceTokenizer;
+import com.jetbrains.index.watcher.ChangeType;
+import com.jetbrains.index.watcher.DefaultFileEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class QueryServerTest extends BaseTemporaryDirectoryTest {
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private IndexSearchService service;
+    private QueryServer server;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        var fact = new SimpleTokenFactory();
+        service = new IndexSearchService(new WhiteSpaceTokenizer(fact), fact, metrics);
+        createTestFile("a.txt", "shared 47°9′S alpha");
+        createTestFile("b.txt", "shared beta");
+        service.onFilesChanged(List.of(
+                new DefaultFileEvent(testFileString("a.txt"), ChangeType.CREATE),
+                new DefaultFileEvent(testFileString("b.txt"), ChangeType.CREATE)));
+        Assertions.assertTrue(service.awaitIndexed(service.receivedSequence(), Duration.ofSeconds(2)));
+        server = new QueryServer(service, metrics, 0);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+        service.close();
+    }
+
+    @Test
+    void searchReturnsTheMatchingFiles() throws Exception {
+        var response = get("/search?word=" + URLEncoder.encode("47°9′S", StandardCharsets.UTF_8));
+
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals("{\"word\":\"47°9′S\",\"count\":1,\"files\":" + Json.array(List.of(testFileString("a.txt"))) + "}",
+                response.body());
+        Assertions.assertEquals("{\"word\":\"unknown\",\"count\":0,\"files\":[]}", get("/search?word=unknown").body());
+        Assertions.assertTrue(get("/search?word=shared&limit=1").body().matches("\\{\"word\":\"shared\",\"count\":2,\"files\":\\[\"[^\"]*\"]}"));
+        Assertions.assertEquals(400, get("/search").statusCode());
+        Assertions.assertEquals(400, get("/search?word=shared&limit=-1").statusCode());
+        Assertions.assertEquals(404, get("/searching?word=alpha").statusCode());
+    }
+
+    @Test
+    void batchAnswersEveryWordOnce() throws Exception {
+        var response = post("/batch", "[\"beta\", \"missing\", \"beta\"]");
+
+        Assertions.assertEquals(200, response.statusCode());
+        Assertions.assertEquals("{\"results\":{\"beta\":{\"count\":1,\"files\":" + Json.array(List.of(testFileString("b.txt")))
+                + "},\"missing\":{\"count\":0,\"files\":[]}}}", response.body());
+        Assertions.assertEquals("{\"results\":{\"shared\":{\"count\":2,\"files\":[]}}}",
+                post("/batch?limit=0", "[\"shared\"]").body());
+        Assertions.assertEquals(400, post("/batch", "[\"unterminated]").statusCode());
+        Assertions.assertEquals(400, post("/batch", Json.array(Collections.nCopies(QueryServer.MAX_BATCH_WORDS + 1, "w"))).statusCode());
+        Assertions.assertEquals(405, get("/batch").statusCode());
+    }
+
+    @Test
+    void statsReportTheIndexAndMetrics() throws Exception {
+        get("/search?word=alpha");
+
+        var body = get("/stats").body();
+
+        Assertions.assertTrue(body.startsWith("{\"indexedContents\":2,\"pendingEvents\":0,\"receivedSequence\":1,\"indexedSequence\":1,\"metrics\":{"), body);
+        Assertions.assertTrue(body.contains("\"server.request.micros.count\":1"), body);
+        Assertions.assertTrue(body.contains("\"search.results.max\":1"), body);
+    }
+
+    @Test
+    void concurrentQueriesAreAnswered() throws Exception {
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<HttpResponse<String>>> responses = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                responses.add(executor.submit(() -> get("/search?word=shared")));
+            }
+            for (var response : responses) {
+                Assertions.assertEquals(200, response.get().statusCode());
+                Assertions.assertTrue(response.get().body().contains(testFileString("b.txt")));
+            }
+        }
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(uri(path)).GET().build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> post(String path, String body) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(uri(path)).POST(HttpRequest.BodyPublishers.ofString(body)).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + server.port() + path);
+    }
+}
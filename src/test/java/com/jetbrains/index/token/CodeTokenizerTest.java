@@ -0,0 +1,68 @@
+package com.jetbrains.index.token;
+
+import com.jetbrains.index.token.factory.SimpleTokenFactory;
+import com.jetbrains.index.token.tokenizer.CodeTokenizer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.StreamSupport;
+
+public class CodeTokenizerTest {
+
+    @Test
+    void operatorsAndPunctuationAreDelimiters() {
+        var res = tokenize("foo(bar){x=y/z;}");
+        Assertions.assertEquals(List.of("foo", "bar", "x", "y", "z"), res);
+    }
+
+    @Test
+    void camelCaseIdentifierProducesSubWords() {
+        var res = tokenize("parseHttpRequest");
+        Assertions.assertEquals(List.of("parseHttpRequest", "parse", "Http", "Request"), res);
+    }
+
+    @Test
+    void acronymIsKeptAsOneSubWord() {
+        var res = tokenize("HTTPServer");
+        Assertions.assertEquals(List.of("HTTPServer", "HTTP", "Server"), res);
+    }
+
+    @Test
+    void snakeCaseIdentifierProducesSubWords() {
+        var res = tokenize("__max_file_size");
+        Assertions.assertEquals(List.of("__max_file_size", "max", "file", "size"), res);
+    }
+
+    @Test
+    void simpleIdentifierIsNotDuplicated() {
+        var res = tokenize("return value;");
+        Assertions.assertEquals(List.of("return", "value"), res);
+    }
+
+    @Test
+    void longNumericLiteralsAreSkipped() {
+        var res = tokenize("int a = 42 + 1234567890123 + 0x1F;");
+        Assertions.assertEquals(List.of("int", "a", "42", "0x1F"), res);
+    }
+
+    @Test
+    void numericThresholdIsConfigurable() {
+        var res = tokenize(new CodeTokenizer(new SimpleTokenFactory(), 1), "7 42");
+        Assertions.assertEquals(List.of("7"), res);
+    }
+
+    private static List<String> tokenize(String input) {
+        return tokenize(new CodeTokenizer(new SimpleTokenFactory()), input);
+    }
+
+    private static List<String> tokenize(CodeTokenizer tokenizer, String input) {
+        Iterable<Token> tokenize = tokenizer.tokenize(new InputStreamReader(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8))));
+        return StreamSupport.stream(tokenize.spliterator(), false)
+                .map(Token::value)
+                .toList();
+    }
+}
@@ -0,0 +1,79 @@
+package com.jetbrains.index.token;
+
+import com.jetbrains.index.BaseTemporaryDirectoryTest;
+import com.jetbrains.index.token.factory.SimpleTokenFactory;
+import com.jetbrains.index.token.tokenizer.CodeTokenizer;
+import com.jetbrains.index.token.tokenizer.ParallelFileTokenizer;
+import com.jetbrains.index.token.tokenizer.Tokenizer;
+import com.jetbrains.index.token.tokenizer.WhiteSpaceTokenizer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+public class ParallelFileTokenizerTest extends BaseTemporaryDirectoryTest {
+
+    /**
+     * Splitting the file into many small ranges must produce
+     * the same term set as tokenizing it in one go
+     */
+    @Test
+    void chunkedTokenizationMatchesSequential() throws IOException {
+        var delegate = new WhiteSpaceTokenizer(new SimpleTokenFactory());
+        var file = Path.of("src/test/resources/CthulhuPlot.txt");
+
+        var expected = termSet(delegate, file);
+        var actual = termSet(new ParallelFileTokenizer(delegate, 0, 64), file);
+
+        Assertions.assertEquals(expected, actual);
+    }
+
+    /**
+     * Multibyte characters around split points must not be cut in half
+     */
+    @Test
+    void splitsNeverCutMultibyteCharacters() throws IOException {
+        var builder = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            builder.append("čvor").append(i).append(" 47°9′S\n");
+        }
+        createTestFile("multibyte.txt", builder.toString());
+        var delegate = new CodeTokenizer(new SimpleTokenFactory());
+
+        var expected = termSet(delegate, testFile("multibyte.txt"));
+        var actual = termSet(new ParallelFileTokenizer(delegate, 0, 33), testFile("multibyte.txt"));
+
+        Assertions.assertEquals(expected, actual);
+        Assertions.assertTrue(actual.contains("čvor499"));
+    }
+
+    /**
+     * A range without any white space can not be split and is tokenized as a whole
+     */
+    @Test
+    void rangeWithoutDelimitersIsNotSplit() throws IOException {
+        createTestFile("single.txt", "a".repeat(1000));
+        var tokenizer = new ParallelFileTokenizer(new WhiteSpaceTokenizer(new SimpleTokenFactory()), 0, 10);
+
+        Assertions.assertEquals(Set.of("a".repeat(1000)), termSet(tokenizer, testFile("single.txt")));
+    }
+
+    @Test
+    void smallFilesAreDelegated() throws IOException {
+        var delegate = new WhiteSpaceTokenizer(new SimpleTokenFactory());
+        var file = Path.of("src/test/resources/10Words.txt");
+        var tokenizer = new ParallelFileTokenizer(delegate, Files.size(file) + 1, 4);
+
+        Assertions.assertEquals(termSet(delegate, file), termSet(tokenizer, file));
+    }
+
+    private static Set<String> termSet(Tokenizer tokenizer, Path file) throws IOException {
+        Set<String> terms = new HashSet<>();
+        tokenizer.tokenize(file).forEach(token -> terms.add(token.value()));
+        return terms;
+    }
+}
@@ -1,22 +1,26 @@
 package com.jetbrains.index.token;
 
 import com.jetbrains.index.token.factory.CachingTokenFactory;
+import org.awaitility.Awaitility;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class TokenCachingTest {
 
+    private final CachingTokenFactory factory = new CachingTokenFactory();
+
     /**
      * Verifies that same values produce the same object
      * from the heap
      */
     @Test
     void sameTokenObjectForSameTokenValue(){
-        var token1 = CachingTokenFactory.getToken("Value1");
-        var token2 = CachingTokenFactory.getToken("Value1");
+        var token1 = factory.getToken("Value1");
+        var token2 = factory.getToken("Value1");
         Assertions.assertNotNull(token1);
         Assertions.assertNotNull(token2);
         Assertions.assertEquals(token1, token2);
@@ -29,8 +33,8 @@ public class TokenCachingTest {
      */
     @Test
     void differentObjectForDifferentTokenValue(){
-        var token1 = CachingTokenFactory.getToken("Value1");
-        var token2 = CachingTokenFactory.getToken("Value2");
+        var token1 = factory.getToken("Value1");
+        var token2 = factory.getToken("Value2");
         Assertions.assertNotNull(token1);
         Assertions.assertNotNull(token2);
         Assertions.assertNotEquals(token1, token2);
@@ -45,7 +49,7 @@ public class TokenCachingTest {
      */
     @Test
     void removingTokenAndCausingGCCycleGivesDifferentAddress() throws InterruptedException {
-        var token = CachingTokenFactory.getToken("Value");
+        var token = factory.getToken("Value");
         Assertions.assertNotNull(token);
         int tokenAddress = System.identityHashCode(token);
         //remove reference
@@ -58,10 +62,55 @@ public class TokenCachingTest {
             System.gc();
             Thread.sleep(100);
         }
-        token = CachingTokenFactory.getToken("Value");
+        token = factory.getToken("Value");
         int newAddress = System.identityHashCode(token);
         Assertions.assertNotEquals(tokenAddress, newAddress);
         Assertions.assertNotNull(token);
     }
 
+    /**
+     * Entries of collected tokens are removed from the cache
+     * instead of piling up as cleared references
+     */
+    @Test
+    void collectedTokensAreExpunged() {
+        for (int i = 0; i < 1000; i++) {
+            factory.getToken("Value" + i);
+        }
+        var misses = new AtomicInteger();
+        Awaitility.await().atMost(Duration.ofSeconds(5)).pollInterval(Duration.ofMillis(100)).until(() -> {
+            System.gc();
+            //Expunging happens on a cache miss, every poll looks up a value which was never cached
+            factory.getToken("Miss" + misses.incrementAndGet());
+            return factory.size() <= 1;
+        });
+    }
+
+    /**
+     * Factories are independent of each other
+     */
+    @Test
+    void factoriesDoNotShareTokens() {
+        var other = new CachingTokenFactory();
+        var token1 = factory.getToken("Value1");
+        var token2 = other.getToken("Value1");
+        Assertions.assertEquals(token1, token2);
+        Assertions.assertNotSame(token1, token2);
+        Assertions.assertEquals(1, other.size());
+    }
+
+    /**
+     * Looking up tokens must not populate the cache
+     */
+    @Test
+    void findTokenDoesNotCache() {
+        Assertions.assertNull(factory.findToken("Unknown"));
+        Assertions.assertEquals(0, factory.size());
+
+        var token = factory.getToken("Known");
+        Assertions.assertSame(token, factory.findToken("Known"));
+        Assertions.assertSame(token, factory.findToken(new StringBuilder("Known")));
+        Assertions.assertEquals(1, factory.size());
+    }
+
 }
@@ -0,0 +1,101 @@
+package com.jetbrains.index.token.dictionary;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+
+public class TermDictionaryTest {
+
+    @Test
+    void sameTermGetsSameId() {
+        var dictionary = new TermDictionary();
+        int first = dictionary.intern("Value1");
+        int second = dictionary.intern(new StringBuilder("Value1"));
+
+        Assertions.assertEquals(first, second);
+        Assertions.assertEquals(1, dictionary.size());
+    }
+
+    @Test
+    void differentTermsGetDifferentIds() {
+        var dictionary = new TermDictionary();
+        Assertions.assertNotEquals(dictionary.intern("Value1"), dictionary.intern("Value2"));
+        Assertions.assertEquals("Value1", dictionary.term(0));
+        Assertions.assertEquals("Value2", dictionary.term(1));
+    }
+
+    /**
+     * Byte slices and character sequences of the same text resolve to the same id
+     */
+    @Test
+    void bytesAndCharactersShareIds() {
+        var dictionary = new TermDictionary();
+        var text = "čvor 𝄞 47°9′S";
+        byte[] padded = ("xx" + text + "yy").getBytes(StandardCharsets.UTF_8);
+        int fromChars = dictionary.intern(text);
+        int fromBytes = dictionary.intern(padded, 2, text.getBytes(StandardCharsets.UTF_8).length);
+
+        Assertions.assertEquals(fromChars, fromBytes);
+        Assertions.assertEquals(text, dictionary.term(fromChars));
+        Assertions.assertEquals(text.getBytes(StandardCharsets.UTF_8).length, dictionary.arenaSize());
+    }
+
+    /**
+     * Growing the arena and the hash table must keep every id stable
+     */
+    @Test
+    void idsStayStableWhileGrowing() {
+        var dictionary = new TermDictionary(16, 16);
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            ids.add(dictionary.intern("Token" + i));
+        }
+        for (int i = 0; i < 10_000; i++) {
+            Assertions.assertEquals(ids.get(i), dictionary.intern("Token" + i));
+            Assertions.assertEquals("Token" + i, dictionary.term(ids.get(i)));
+        }
+        Assertions.assertEquals(10_000, dictionary.size());
+    }
+
+    @Test
+    void concurrentInterningAgreesOnIds() throws Exception {
+        var dictionary = new TermDictionary(16, 16);
+        int threads = 4;
+        Callable<int[]> task = () -> {
+            int[] ids = new int[5_000];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = dictionary.intern("Token" + i);
+            }
+            return ids;
+        };
+        try (var executor = Executors.newFixedThreadPool(threads)) {
+            var futures = new ArrayList<java.util.concurrent.Future<int[]>>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(task));
+            }
+            int[] expected = futures.getFirst().get();
+            for (var future : futures) {
+                Assertions.assertArrayEquals(expected, future.get());
+            }
+        }
+        Assertions.assertEquals(5_000, dictionary.size());
+    }
+
+    @Test
+    void findDoesNotIntern() {
+        var dictionary = new TermDictionary();
+        int id = dictionary.intern("Known");
+        byte[] bytes = "Known".getBytes(StandardCharsets.UTF_8);
+
+        Assertions.assertEquals(id, dictionary.find("Known"));
+        Assertions.assertEquals(id, dictionary.find(bytes, 0, bytes.length));
+        Assertions.assertEquals(-1, dictionary.find("Unknown"));
+        Assertions.assertEquals(-1, dictionary.find(bytes, 0, 2));
+        Assertions.assertEquals(1, dictionary.size());
+    }
+}
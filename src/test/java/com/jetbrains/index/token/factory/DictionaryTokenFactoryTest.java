@@ -0,0 +1,36 @@
+package com.jetbrains.index.token.factory;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+public class DictionaryTokenFactoryTest {
+
+    @Test
+    void lookupsReturnTheInternedToken() {
+        var factory = new DictionaryTokenFactory();
+        var token = factory.getToken("Value1");
+        byte[] bytes = "Value1".getBytes(StandardCharsets.UTF_8);
+
+        Assertions.assertSame(token, factory.getToken(new StringBuilder("Value1")));
+        Assertions.assertSame(token, factory.findToken("Value1"));
+        Assertions.assertSame(token, factory.findToken(bytes, 0, bytes.length));
+        Assertions.assertNull(factory.findToken("Value2"));
+    }
+
+    /**
+     * Tokens stay the same instances once the cache has grown past its initial size
+     */
+    @Test
+    void tokensSurviveGrowth() {
+        var factory = new DictionaryTokenFactory();
+        var first = factory.getToken("term0");
+        for (int i = 1; i < 5000; i++) {
+            factory.getToken("term" + i);
+        }
+
+        Assertions.assertSame(first, factory.findToken("term0"));
+        Assertions.assertEquals("term4999", factory.findToken("term4999").value());
+    }
+}
@@ -0,0 +1,130 @@
+package com.jetbrains.index.watcher;
+
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+public class CoalescingListenerTest {
+    private static final Duration QUIET_PERIOD = Duration.ofMillis(50);
+
+    @Test
+    void mergeRules() {
+        Assertions.assertEquals(ChangeType.UPDATE, CoalescingListener.merge(ChangeType.UPDATE, ChangeType.UPDATE));
+        Assertions.assertEquals(ChangeType.CREATE, CoalescingListener.merge(ChangeType.CREATE, ChangeType.UPDATE));
+        Assertions.assertNull(CoalescingListener.merge(ChangeType.CREATE, ChangeType.DELETE));
+        Assertions.assertEquals(ChangeType.UPDATE, CoalescingListener.merge(ChangeType.DELETE, ChangeType.CREATE));
+        Assertions.assertEquals(ChangeType.DELETE, CoalescingListener.merge(ChangeType.UPDATE, ChangeType.DELETE));
+        Assertions.assertEquals(ChangeType.APPEND, CoalescingListener.merge(ChangeType.APPEND, ChangeType.APPEND));
+        Assertions.assertEquals(ChangeType.CREATE, CoalescingListener.merge(ChangeType.CREATE, ChangeType.APPEND));
+        Assertions.assertEquals(ChangeType.UPDATE, CoalescingListener.merge(ChangeType.APPEND, ChangeType.UPDATE));
+        Assertions.assertEquals(ChangeType.CREATE, CoalescingListener.merge(ChangeType.RENAME, ChangeType.UPDATE));
+        Assertions.assertNull(CoalescingListener.merge(ChangeType.RENAME, ChangeType.DELETE));
+    }
+
+    @Test
+    void appendsKeepTheFirstOffset() {
+        var events = new ConcurrentLinkedDeque<FileChangeEvent>();
+        var listener = new CoalescingListener(events::add, Duration.ofMinutes(1));
+        listener.onFileChanged(DefaultFileEvent.append("log.txt", 100, new byte[]{1}));
+        listener.onFileChanged(DefaultFileEvent.append("log.txt", 150, new byte[]{2}));
+        listener.close();
+        Assertions.assertEquals(List.of(DefaultFileEvent.append("log.txt", 100, null)), List.copyOf(events));
+        Assertions.assertArrayEquals(new byte[]{2}, events.getFirst().contentDigest());
+    }
+
+    @Test
+    void repeatedUpdatesAreEmittedOnce() {
+        var events = new ConcurrentLinkedDeque<FileChangeEvent>();
+        try (var listener = new CoalescingListener(events::add, QUIET_PERIOD)) {
+            for (int i = 0; i < 10; i++) {
+                listener.onFileChanged(new DefaultFileEvent("a.txt", ChangeType.UPDATE));
+            }
+
+            Awaitility.await().atMost(Duration.ofSeconds(1)).until(() -> !events.isEmpty());
+            Assertions.assertEquals(List.of(new DefaultFileEvent("a.txt", ChangeType.UPDATE)), List.copyOf(events));
+            Assertions.assertEquals(10, listener.receivedCount());
+            Assertions.assertEquals(1, listener.emittedCount());
+        }
+    }
+
+    @Test
+    void temporaryFilesAreDropped() throws InterruptedException {
+        var events = new ConcurrentLinkedDeque<FileChangeEvent>();
+        try (var listener = new CoalescingListener(events::add, QUIET_PERIOD)) {
+            listener.onFileChanged(new DefaultFileEvent("tmp.txt", ChangeType.CREATE));
+            listener.onFileChanged(new DefaultFileEvent("tmp.txt", ChangeType.UPDATE));
+            listener.onFileChanged(new DefaultFileEvent("tmp.txt", ChangeType.DELETE));
+            listener.onFileChanged(new DefaultFileEvent("b.txt", ChangeType.DELETE));
+            listener.onFileChanged(new DefaultFileEvent("b.txt", ChangeType.CREATE));
+
+            Awaitility.await().atMost(Duration.ofSeconds(1)).until(() -> !events.isEmpty());
+            Thread.sleep(QUIET_PERIOD.toMillis() * 2);
+            Assertions.assertEquals(List.of(new DefaultFileEvent("b.txt", ChangeType.UPDATE)), List.copyOf(events));
+        }
+    }
+
+    @Test
+    void continuousWritesAreEmittedAfterMaxDelay() throws InterruptedException {
+        var events = new ConcurrentLinkedDeque<FileChangeEvent>();
+        try (var listener = new CoalescingListener(events::add, QUIET_PERIOD, QUIET_PERIOD.multipliedBy(3))) {
+            long end = System.nanoTime() + Duration.ofMillis(600).toNanos();
+            while (System.nanoTime() < end && events.isEmpty()) {
+                listener.onFileChanged(new DefaultFileEvent("log.txt", ChangeType.UPDATE));
+                Thread.sleep(5);
+            }
+            Assertions.assertFalse(events.isEmpty());
+        }
+    }
+
+    @Test
+    void renameIsMergedAsDeletionAndCreation() {
+        var events = new ConcurrentLinkedDeque<FileChangeEvent>();
+        var listener = new CoalescingListener(events::add, Duration.ofMinutes(1));
+        listener.onFileChanged(new DefaultFileEvent("b.txt", ChangeType.DELETE));
+        listener.onFileChanged(DefaultFileEvent.rename("a.txt", "b.txt", new byte[]{1}));
+        listener.close();
+        Assertions.assertEquals(Set.of(new DefaultFileEvent("a.txt", ChangeType.DELETE), new DefaultFileEvent("b.txt", ChangeType.UPDATE)),
+                Set.copyOf(events));
+        Assertions.assertArrayEquals(new byte[]{1}, events.stream().filter(e -> e.filePath().equals("b.txt")).findFirst().orElseThrow().contentDigest());
+    }
+
+    @Test
+    void renameIsKeptWithoutOtherEvents() {
+        var events = new ConcurrentLinkedDeque<FileChangeEvent>();
+        try (var listener = new CoalescingListener(events::add, QUIET_PERIOD)) {
+            listener.onFileChanged(DefaultFileEvent.rename("a.txt", "b.txt", new byte[]{1}));
+
+            Awaitility.await().atMost(Duration.ofSeconds(1)).until(() -> !events.isEmpty());
+            Assertions.assertEquals(List.of(DefaultFileEvent.rename("a.txt", "b.txt", null)), List.copyOf(events));
+            Assertions.assertArrayEquals(new byte[]{1}, events.getFirst().contentDigest());
+        }
+    }
+
+    @Test
+    void renameIsSplitByLaterEvents() {
+        var events = new ConcurrentLinkedDeque<FileChangeEvent>();
+        var listener = new CoalescingListener(events::add, Duration.ofMinutes(1));
+        listener.onFileChanged(DefaultFileEvent.rename("a.txt", "b.txt", new byte[]{1}));
+        listener.onFileChanged(DefaultFileEvent.rename("c.txt", "d.txt", new byte[]{3}));
+        listener.onFileChanged(new DefaultFileEvent("b.txt", ChangeType.UPDATE, new byte[]{2}));
+        listener.onFileChanged(new DefaultFileEvent("c.txt", ChangeType.CREATE, new byte[]{4}));
+        listener.close();
+        Assertions.assertEquals(Set.of(new DefaultFileEvent("a.txt", ChangeType.DELETE), new DefaultFileEvent("b.txt", ChangeType.CREATE),
+                        new DefaultFileEvent("c.txt", ChangeType.UPDATE), new DefaultFileEvent("d.txt", ChangeType.CREATE)),
+                Set.copyOf(events));
+    }
+
+    @Test
+    void closeEmitsPendingEvents() {
+        var events = new ConcurrentLinkedDeque<FileChangeEvent>();
+        var listener = new CoalescingListener(events::add, Duration.ofMinutes(1));
+        listener.onFileChanged(new DefaultFileEvent("a.txt", ChangeType.CREATE));
+        listener.close();
+        Assertions.assertEquals(List.of(new DefaultFileEvent("a.txt", ChangeType.CREATE)), List.copyOf(events));
+    }
+}
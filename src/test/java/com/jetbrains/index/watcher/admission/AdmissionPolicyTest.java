@@ -0,0 +1,66 @@
+package com.jetbrains.index.watcher.admission;
+
+import com.jetbrains.index.BaseTemporaryDirectoryTest;
+import com.jetbrains.index.watcher.admission.AdmissionPolicy.Verdict;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Set;
+
+public class AdmissionPolicyTest extends BaseTemporaryDirectoryTest {
+
+    @Test
+    void plainTextIsAdmitted() throws IOException {
+        createTestFile("notes.txt", "Plain old text");
+        var policy = AdmissionPolicy.defaults();
+
+        Assertions.assertEquals(Verdict.ADMITTED, policy.evaluate(testFile("notes.txt").toFile()));
+        Assertions.assertEquals(0, policy.rejectedCount());
+    }
+
+    @Test
+    void deniedExtensionIsRejectedWithoutReading() throws IOException {
+        createTestFile("Main.class", "looks like text but is not");
+        var policy = AdmissionPolicy.defaults();
+
+        Assertions.assertEquals(Verdict.EXTENSION_DENIED, policy.evaluate(testFile("Main.class").toFile()));
+        Assertions.assertEquals(1, policy.count(Verdict.EXTENSION_DENIED));
+    }
+
+    @Test
+    void fileWithNulBytesIsRejected() throws IOException {
+        Files.write(testFile("core"), new byte[]{'a', 'b', 0, 'c'});
+        var policy = AdmissionPolicy.defaults();
+
+        Assertions.assertEquals(Verdict.BINARY_CONTENT, policy.evaluate(testFile("core").toFile()));
+    }
+
+    @Test
+    void fileWithBinaryMagicNumberIsRejected() throws IOException {
+        Files.write(testFile("archive.txt"), new byte[]{0x50, 0x4B, 0x03, 0x04, 'x', 'y'});
+        var policy = AdmissionPolicy.defaults();
+
+        Assertions.assertEquals(Verdict.BINARY_CONTENT, policy.evaluate(testFile("archive.txt").toFile()));
+    }
+
+    @Test
+    void fileLargerThanLimitIsRejected() throws IOException {
+        createTestFile("big.txt", "0123456789");
+        var policy = new AdmissionPolicy(5, Set.of(), Set.of(), false);
+
+        Assertions.assertEquals(Verdict.TOO_LARGE, policy.evaluate(testFile("big.txt").toFile()));
+    }
+
+    @Test
+    void allowListRejectsOtherExtensions() throws IOException {
+        createTestFile("Main.java", "class Main {}");
+        createTestFile("notes.txt", "notes");
+        var policy = new AdmissionPolicy(Long.MAX_VALUE, Set.of(".java"), Set.of(), true);
+
+        Assertions.assertEquals(Verdict.ADMITTED, policy.evaluate(testFile("Main.java").toFile()));
+        Assertions.assertEquals(Verdict.EXTENSION_NOT_ALLOWED, policy.evaluate(testFile("notes.txt").toFile()));
+        Assertions.assertEquals(1, policy.rejectedCount());
+    }
+}
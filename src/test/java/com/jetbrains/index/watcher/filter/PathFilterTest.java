@@ -0,0 +1,85 @@
+package com.jetbrains.index.watcher.filter;
+
+import com.jetbrains.index.BaseTemporaryDirectoryTest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+public class PathFilterTest extends BaseTemporaryDirectoryTest {
+
+    @Test
+    void excludePatterns() {
+        var filter = new PathFilter(List.of(), List.of("node_modules", "target/", "/build", "*.log", "docs/**/*.tmp"), false);
+
+        Assertions.assertTrue(filter.excludes(root(), path("node_modules"), true));
+        Assertions.assertTrue(filter.excludes(root(), path("web/node_modules"), true));
+        Assertions.assertTrue(filter.excludes(root(), path("module/target"), true));
+        Assertions.assertFalse(filter.excludes(root(), path("module/target"), false));
+        Assertions.assertTrue(filter.excludes(root(), path("build"), true));
+        Assertions.assertFalse(filter.excludes(root(), path("src/build"), true));
+        Assertions.assertTrue(filter.excludes(root(), path("logs/app.log"), false));
+        Assertions.assertTrue(filter.excludes(root(), path("docs/a.tmp"), false));
+        Assertions.assertTrue(filter.excludes(root(), path("docs/x/y/a.tmp"), false));
+        Assertions.assertFalse(filter.excludes(root(), path("src/Main.java"), false));
+        Assertions.assertFalse(filter.excludes(root(), root(), true));
+    }
+
+    @Test
+    void includePatternsOnlyApplyToFiles() {
+        var filter = new PathFilter(List.of("*.java", "*.md"), List.of(), false);
+
+        Assertions.assertFalse(filter.excludes(root(), path("src/Main.java"), false));
+        Assertions.assertFalse(filter.excludes(root(), path("Readme.md"), false));
+        Assertions.assertTrue(filter.excludes(root(), path("src/image.png"), false));
+        Assertions.assertFalse(filter.excludes(root(), path("src"), true));
+    }
+
+    @Test
+    void negatedPatternReIncludes() {
+        var filter = new PathFilter(List.of(), List.of("*.txt", "!keep.txt"), false);
+
+        Assertions.assertTrue(filter.excludes(root(), path("notes.txt"), false));
+        Assertions.assertFalse(filter.excludes(root(), path("keep.txt"), false));
+    }
+
+    @Test
+    void ignoreFilesAreHonored() throws IOException {
+        Files.createDirectories(testFile("sub"));
+        createTestFile(".gitignore", "# build output\ntarget/\n*.class\n");
+        createTestFile("sub/.ignore", "generated.txt\n!Keep.class\n");
+        var filter = new PathFilter(List.of(), List.of(), true);
+
+        Assertions.assertTrue(filter.excludes(root(), path("target"), true));
+        Assertions.assertTrue(filter.excludes(root(), path("Main.class"), false));
+        Assertions.assertTrue(filter.excludes(root(), path("sub/generated.txt"), false));
+        Assertions.assertFalse(filter.excludes(root(), path("generated.txt"), false));
+        Assertions.assertFalse(filter.excludes(root(), path("sub/Keep.class"), false));
+        Assertions.assertTrue(filter.excludes(root(), path(".git"), true));
+        Assertions.assertTrue(filter.isIgnoreFile(path(".gitignore")));
+    }
+
+    @Test
+    void ignoreFilesAreReadAgainAfterReload() throws IOException {
+        createTestFile(".gitignore", "a.txt\n");
+        var filter = new PathFilter(List.of(), List.of(), true);
+        Assertions.assertTrue(filter.excludes(root(), path("a.txt"), false));
+
+        writeFile(".gitignore", "b.txt\n");
+        filter.reload(root());
+
+        Assertions.assertFalse(filter.excludes(root(), path("a.txt"), false));
+        Assertions.assertTrue(filter.excludes(root(), path("b.txt"), false));
+    }
+
+    private static Path root() {
+        return TEST_DIRECTORY_PATH.toAbsolutePath();
+    }
+
+    private static Path path(String relative) {
+        return root().resolve(relative);
+    }
+}
@@ -0,0 +1,101 @@
+package com.jetbrains.index.watcher.hash;
+
+import com.jetbrains.index.BaseTemporaryDirectoryTest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.StructuredTaskScope;
+
+public class FileHasherTest extends BaseTemporaryDirectoryTest {
+
+    @Test
+    void sha256MatchesMessageDigest() throws IOException, InterruptedException, NoSuchAlgorithmException {
+        var content = new byte[100_000];
+        new Random(1).nextBytes(content);
+        var file = testFile("content.bin");
+        Files.write(file, content);
+
+        var hash = new FileHasher(ContentHash.SHA_256, 4096, 1).hash(file.toFile());
+
+        Assertions.assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(content), hash);
+    }
+
+    @Test
+    void xxh64DiffersForDifferentContent() throws IOException, InterruptedException {
+        createTestFile("test1.txt", "first");
+        createTestFile("test2.txt", "second");
+        var hasher = new FileHasher(ContentHash.XXH64);
+
+        var first = hasher.hash(testFile("test1.txt").toFile());
+        Assertions.assertEquals(Long.BYTES, first.length);
+        Assertions.assertFalse(Arrays.equals(first, hasher.hash(testFile("test2.txt").toFile())));
+        Assertions.assertArrayEquals(first, hasher.hash(testFile("test1.txt").toFile()));
+    }
+
+    @Test
+    void resumedHashMatchesHashOfWholeFile() throws IOException, InterruptedException {
+        var file = testFile("grown.log");
+        for (var contentHash : ContentHash.values()) {
+            Files.writeString(file, "first line\n".repeat(1000));
+            var hasher = new FileHasher(contentHash, 1024, 1);
+            var previous = hasher.hashResumable(file.toFile());
+            Assertions.assertArrayEquals(hasher.hash(file.toFile()), previous.digest());
+
+            Files.writeString(file, "second line\n", StandardOpenOption.APPEND);
+            var resumed = hasher.resume(file.toFile(), previous);
+
+            Assertions.assertNotNull(resumed);
+            Assertions.assertEquals(Files.size(file), resumed.length());
+            Assertions.assertArrayEquals(hasher.hash(file.toFile()), resumed.digest());
+            //the previous state is not affected by resuming
+            Assertions.assertArrayEquals(resumed.digest(), hasher.resume(file.toFile(), previous).digest());
+        }
+    }
+
+    @Test
+    void resumeRejectsChangedLastBlock() throws IOException, InterruptedException {
+        var file = testFile("rewritten.log");
+        Files.writeString(file, "first line\n".repeat(1000));
+        var hasher = new FileHasher(ContentHash.XXH64);
+        var previous = hasher.hashResumable(file.toFile());
+
+        Files.writeString(file, "first line\n".repeat(999) + "other line\nsecond line\n");
+
+        Assertions.assertNull(hasher.resume(file.toFile(), previous));
+    }
+
+    @Test
+    void concurrentReadsShareBoundedBuffers() throws IOException, InterruptedException {
+        var paths = new ArrayList<File>();
+        for (int i = 0; i < 100; i++) {
+            createTestFile("test" + i + ".txt", "content " + i);
+            paths.add(testFile("test" + i + ".txt").toFile());
+        }
+        var pool = new BufferPool(1024, 4);
+
+        try (var scope = new StructuredTaskScope.ShutdownOnFailure()) {
+            for (var path : paths) {
+                scope.fork(() -> {
+                    var buffer = pool.acquire();
+                    try {
+                        return Files.size(path.toPath());
+                    } finally {
+                        pool.release(buffer);
+                    }
+                });
+            }
+            scope.join();
+        }
+
+        Assertions.assertTrue(pool.allocated() <= 4);
+    }
+}
@@ -0,0 +1,56 @@
+package com.jetbrains.index.watcher.hash;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+public class Xxh64Test {
+
+    @Test
+    void referenceValues() {
+        Assertions.assertEquals(0xEF46DB3751D8E999L, hash(""));
+        Assertions.assertEquals(0xD24EC4F1A98C6E5BL, hash("a"));
+        Assertions.assertEquals(0x44BC2CF5AD770999L, hash("abc"));
+        Assertions.assertEquals(0xFBCEA83C8A378BF1L, hash("Nobody inspects the spammish repetition"));
+    }
+
+    @Test
+    void streamingMatchesSingleUpdate() {
+        var bytes = new byte[1000];
+        new Random(42).nextBytes(bytes);
+        var whole = new Xxh64();
+        whole.update(bytes, 0, bytes.length);
+
+        for (int step : new int[]{1, 7, 31, 32, 33, 100}) {
+            var streamed = new Xxh64();
+            for (int offset = 0; offset < bytes.length; offset += step) {
+                streamed.update(bytes, offset, Math.min(step, bytes.length - offset));
+            }
+            Assertions.assertEquals(whole.value(), streamed.value(), "step " + step);
+        }
+    }
+
+    @Test
+    void directBufferMatchesHeapBuffer() {
+        var bytes = new byte[257];
+        new Random(7).nextBytes(bytes);
+        var heap = new Xxh64();
+        heap.update(bytes, 0, bytes.length);
+        var direct = new Xxh64();
+        var buffer = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+        direct.update(buffer);
+
+        Assertions.assertEquals(heap.value(), direct.value());
+        Assertions.assertFalse(buffer.hasRemaining());
+    }
+
+    private static long hash(String value) {
+        var hasher = new Xxh64();
+        var bytes = value.getBytes(StandardCharsets.UTF_8);
+        hasher.update(bytes, 0, bytes.length);
+        return hasher.value();
+    }
+}
@@ -0,0 +1,108 @@
+package com.jetbrains.index.watcher.limit;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AdaptiveLimiterTest {
+
+    @Test
+    void concurrencyStaysWithinLimit() throws InterruptedException {
+        var limiter = new AdaptiveLimiter(4, 4, 4);
+        var running = new AtomicInteger();
+        var maxRunning = new AtomicInteger();
+
+        try (var scope = new StructuredTaskScope<Void>()) {
+            for (int i = 0; i < 200; i++) {
+                scope.fork(() -> {
+                    limiter.acquire();
+                    try {
+                        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                        Thread.sleep(1);
+                        running.decrementAndGet();
+                    } finally {
+                        limiter.release(1_000_000);
+                    }
+                    return null;
+                });
+            }
+            scope.join();
+        }
+
+        Assertions.assertTrue(maxRunning.get() <= 4);
+        Assertions.assertTrue(limiter.maxQueueDepth() > 0);
+        Assertions.assertEquals(0, limiter.queueDepth());
+        Assertions.assertEquals(0, limiter.inFlight());
+        Assertions.assertEquals(200, limiter.completed());
+        Assertions.assertEquals(1_000_000, limiter.averageLatencyNanos());
+    }
+
+    @Test
+    void limitGrowsWhileLatencyIsStable() throws InterruptedException {
+        var limiter = new AdaptiveLimiter(2, 1, 10);
+        for (int i = 0; i < 50; i++) {
+            saturate(limiter, 1_000_000);
+        }
+        Assertions.assertEquals(10, limiter.limit());
+    }
+
+    @Test
+    void limitShrinksWhenLatencyGrows() throws InterruptedException {
+        var limiter = new AdaptiveLimiter(10, 2, 10);
+        for (int i = 0; i < 100; i++) {
+            saturate(limiter, 1_000_000);
+        }
+        //the baseline catches up with a lasting change of latency, so only a short spike is checked
+        for (int i = 0; i < 5; i++) {
+            saturate(limiter, 50_000_000);
+        }
+        Assertions.assertTrue(limiter.limit() < 10);
+        Assertions.assertTrue(limiter.limit() >= 2);
+    }
+
+    @Test
+    void interruptedWaiterDoesNotStrandOthers() throws InterruptedException {
+        var limiter = new AdaptiveLimiter(1, 1, 1);
+        limiter.acquire();
+        var acquired = new AtomicInteger();
+        Runnable waiter = () -> {
+            try {
+                limiter.acquire();
+                acquired.incrementAndGet();
+                limiter.release(1_000_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        var interrupted = Thread.startVirtualThread(waiter);
+        var patient = Thread.startVirtualThread(waiter);
+        while (limiter.queueDepth() < 2) {
+            Thread.sleep(1);
+        }
+
+        limiter.release(1_000_000);
+        interrupted.interrupt();
+        interrupted.join(Duration.ofSeconds(1));
+        patient.join(Duration.ofSeconds(1));
+
+        Assertions.assertFalse(patient.isAlive());
+        Assertions.assertTrue(acquired.get() >= 1);
+        Assertions.assertEquals(0, limiter.inFlight());
+    }
+
+    /**
+     * Take all permits and release them reporting the given latency
+     */
+    private static void saturate(AdaptiveLimiter limiter, long latencyNanos) throws InterruptedException {
+        int permits = limiter.limit();
+        for (int i = 0; i < permits; i++) {
+            limiter.acquire();
+        }
+        for (int i = 0; i < permits; i++) {
+            limiter.release(latencyNanos);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.jetbrains.index.watcher.task;
+
+import com.jetbrains.index.BaseTemporaryDirectoryTest;
+import com.jetbrains.index.watcher.filter.PathFilter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+public class DirectoryTreeTest extends BaseTemporaryDirectoryTest {
+
+    @Test
+    void scanFindsFilesInSubdirectories() throws IOException {
+        Files.createDirectories(testFile("sub/nested"));
+        createTestFile("test1.txt", "content");
+        createTestFile("sub/nested/test2.txt", "content");
+        var tree = new DirectoryTree(Duration.ZERO, acceptAll());
+
+        var scan = tree.scan(List.of(root()));
+
+        Assertions.assertEquals(Set.of(file("test1.txt"), file("sub/nested/test2.txt")), Set.copyOf(scan.files()));
+        Assertions.assertTrue(scan.deletedFiles().isEmpty());
+    }
+
+    @Test
+    void unchangedDirectoriesAreNotListedAgain() throws IOException {
+        Files.createDirectories(testFile("sub"));
+        createTestFile("sub/test1.txt", "content");
+        age(testFile("sub"));
+        age(root());
+        var tree = new DirectoryTree(Duration.ofSeconds(2), acceptAll());
+        tree.scan(List.of(root()));
+        long listed = tree.listedCount();
+
+        var scan = tree.scan(List.of(root()));
+
+        Assertions.assertEquals(listed, tree.listedCount());
+        Assertions.assertEquals(List.of(file("sub/test1.txt")), scan.files());
+    }
+
+    @Test
+    void deletionsAreInferredFromListings() throws IOException {
+        Files.createDirectories(testFile("sub"));
+        createTestFile("test1.txt", "content");
+        createTestFile("sub/test2.txt", "content");
+        var tree = new DirectoryTree(Duration.ZERO, acceptAll());
+        tree.scan(List.of(root()));
+
+        deleteFile(testFile("test1.txt"));
+        deleteFile(testFile("sub/test2.txt"));
+        deleteFile(testFile("sub"));
+        var scan = tree.scan(List.of(root()));
+
+        Assertions.assertTrue(scan.files().isEmpty());
+        Assertions.assertEquals(Set.of(file("test1.txt"), file("sub/test2.txt")), Set.copyOf(scan.deletedFiles()));
+    }
+
+    @Test
+    void excludedDirectoriesAreNotListed() throws IOException {
+        Files.createDirectories(testFile("node_modules/lib"));
+        createTestFile("node_modules/lib/index.js", "content");
+        createTestFile("test1.txt", "content");
+        var filter = new TraversalFilter(List.of(root()), new PathFilter(List.of(), List.of("node_modules/"), false));
+        var tree = new DirectoryTree(Duration.ZERO, filter);
+
+        var scan = tree.scan(List.of(root()));
+
+        Assertions.assertEquals(List.of(file("test1.txt")), scan.files());
+        Assertions.assertEquals(1, tree.listedCount());
+    }
+
+    @Test
+    void editedIgnoreFilesRefilterListingsBelow() throws IOException {
+        Files.createDirectories(testFile("sub"));
+        createTestFile("sub/test1.txt", "content");
+        createTestFile("sub/test2.log", "content");
+        createTestFile(".gitignore", "*.log");
+        for (String name : List.of("sub/test1.txt", "sub/test2.log", ".gitignore", "sub")) {
+            age(testFile(name));
+        }
+        age(root());
+        var filter = new TraversalFilter(List.of(root()), new PathFilter(List.of(), List.of(), true));
+        var tree = new DirectoryTree(Duration.ofSeconds(2), filter);
+        Assertions.assertFalse(tree.scan(List.of(root())).files().contains(file("sub/test2.log")));
+
+        //an edit in place leaves the directory untouched
+        Files.writeString(testFile(".gitignore"), "*.txt");
+        var scan = tree.scan(List.of(root()));
+
+        Assertions.assertEquals(Set.of(file(".gitignore"), file("sub/test2.log")), Set.copyOf(scan.files()));
+        Assertions.assertEquals(List.of(file("sub/test1.txt")), scan.deletedFiles());
+    }
+
+    private static TraversalFilter acceptAll() {
+        return new TraversalFilter(List.of(root()), PathFilter.acceptAll());
+    }
+
+    private static Path root() {
+        return TEST_DIRECTORY_PATH.toAbsolutePath();
+    }
+
+    private static File file(String name) {
+        return testFile(name).toAbsolutePath().toFile();
+    }
+
+    private static void age(Path path) throws IOException {
+        Files.setLastModifiedTime(path, FileTime.from(Instant.now().minus(Duration.ofMinutes(1))));
+    }
+}
@@ -0,0 +1,44 @@
+package com.jetbrains.index.watcher.task;
+
+import com.jetbrains.index.watcher.ChangeType;
+import com.jetbrains.index.watcher.DefaultFileEvent;
+import com.jetbrains.index.watcher.FileChangeEvent;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class EventBatcherTest {
+
+    @Test
+    void eventsArePublishedOnFlush() {
+        List<List<FileChangeEvent>> batches = new ArrayList<>();
+        var batcher = new EventBatcher(batches::add, 10);
+
+        batcher.add(new DefaultFileEvent("a.txt", ChangeType.CREATE));
+        batcher.add(new DefaultFileEvent("b.txt", ChangeType.UPDATE));
+        Assertions.assertTrue(batches.isEmpty());
+
+        batcher.flush();
+        Assertions.assertEquals(List.of(List.of(
+                new DefaultFileEvent("a.txt", ChangeType.CREATE),
+                new DefaultFileEvent("b.txt", ChangeType.UPDATE))), batches);
+
+        batcher.flush();
+        Assertions.assertEquals(1, batches.size());
+    }
+
+    @Test
+    void fullBatchIsPublishedImmediately() {
+        List<List<FileChangeEvent>> batches = new ArrayList<>();
+        var batcher = new EventBatcher(batches::add, 2);
+
+        for (int i = 0; i < 5; i++) {
+            batcher.add(new DefaultFileEvent(i + ".txt", ChangeType.CREATE));
+        }
+        Assertions.assertEquals(2, batches.size());
+        batcher.flush();
+        Assertions.assertEquals(List.of(2, 2, 1), batches.stream().map(List::size).toList());
+    }
+}
@@ -0,0 +1,161 @@
+package com.jetbrains.index.watcher.task;
+
+import com.jetbrains.index.BaseTemporaryDirectoryTest;
+import com.jetbrains.index.watcher.ChangeType;
+import com.jetbrains.index.watcher.FileChangeEvent;
+import com.jetbrains.index.watcher.WatchMode;
+import com.jetbrains.index.watcher.WatcherConfig;
+import com.jetbrains.index.watcher.filter.PathFilter;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.function.Consumer;
+
+/**
+ * Same scenarios as {@link WatcherTaskTest} but driven by the {@link java.nio.file.WatchService}
+ */
+public class EventWatcherTaskTest extends BaseTemporaryDirectoryTest {
+
+    @Test
+    void watcherThreadTerminatesWhileWaitingForEvents() throws InterruptedException {
+        var thread = eventWatcher(new ConcurrentLinkedDeque<>());
+        thread.start();
+        Thread.sleep(200);
+        Assertions.assertTrue(thread.isAlive());
+        thread.interrupt();
+        thread.join(Duration.ofSeconds(1));
+        Assertions.assertFalse(thread.isAlive());
+    }
+
+    @Test
+    void existingFilesAreReportedOnStart() throws IOException, InterruptedException {
+        createTestFile("test1.txt", "content");
+        var events = new ConcurrentLinkedDeque<FileChangeEvent>();
+        var thread = eventWatcher(events);
+        thread.start();
+
+        Awaitility.await().atMost(Duration.ofSeconds(2)).untilAsserted(() -> Assertions.assertTrue(events.contains(event(testFileString("test1.txt"), ChangeType.CREATE))));
+
+        thread.interrupt();
+        thread.join(Duration.ofMillis(200));
+    }
+
+    @Test
+    void watcherReactsToCreateUpdateAndDelete() throws IOException, InterruptedException {
+        var events = new ConcurrentLinkedDeque<FileChangeEvent>();
+        var thread = eventWatcher(events);
+        thread.start();
+        Thread.sleep(200);
+
+        createTestFile("test1.txt", "first");
+        Awaitility.await().atMost(Duration.ofSeconds(2)).untilAsserted(() -> Assertions.assertTrue(events.contains(event(testFileString("test1.txt"), ChangeType.CREATE))));
+
+        writeFile("test1.txt", "second");
+        Awaitility.await().atMost(Duration.ofSeconds(2)).untilAsserted(() -> Assertions.assertTrue(events.contains(event(testFileString("test1.txt"), ChangeType.UPDATE))));
+
+        deleteFile(testFile("test1.txt"));
+        Awaitility.await().atMost(Duration.ofSeconds(2)).untilAsserted(() -> Assertions.assertTrue(events.contains(event(testFileString("test1.txt"), ChangeType.DELETE))));
+
+        thread.interrupt();
+        thread.join(Duration.ofMillis(200));
+    }
+
+    /**
+     * Directories created after the start are watched as well,
+     * deleting them reports all files they contained
+     */
+    @Test
+    void watcherFollowsCreatedAndDeletedDirectories() throws IOException, InterruptedException {
+        var events = new ConcurrentLinkedDeque<FileChangeEvent>();
+        var thread = eventWatcher(events);
+        thread.start();
+        Thread.sleep(200);
+
+        Files.createDirectories(testFile("sub/nested"));
+        createTestFile("sub/nested/test1.txt", "first");
+        Awaitility.await().atMost(Duration.ofSeconds(2)).untilAsserted(() -> Assertions.assertTrue(events.contains(event(testFileString("sub/nested/test1.txt"), ChangeType.CREATE))));
+
+        createTestFile("sub/nested/test2.txt", "second");
+        Awaitility.await().atMost(Duration.ofSeconds(2)).untilAsserted(() -> Assertions.assertTrue(events.contains(event(testFileString("sub/nested/test2.txt"), ChangeType.CREATE))));
+
+        deleteFile(testFile("sub/nested/test1.txt"));
+        deleteFile(testFile("sub/nested/test2.txt"));
+        deleteFile(testFile("sub/nested"));
+        Awaitility.await().atMost(Duration.ofSeconds(2)).untilAsserted(() -> Assertions.assertTrue(events.contains(event(testFileString("sub/nested/test1.txt"), ChangeType.DELETE))));
+        Awaitility.await().atMost(Duration.ofSeconds(2)).untilAsserted(() -> Assertions.assertTrue(events.contains(event(testFileString("sub/nested/test2.txt"), ChangeType.DELETE))));
+
+        thread.interrupt();
+        thread.join(Duration.ofMillis(200));
+    }
+
+    /**
+     * A directory moved out of the watched tree reports the files it contained,
+     * but not the files of siblings whose name starts with its name
+     */
+    @Test
+    void movedDirectoryReportsOnlyItsOwnFiles() throws IOException, InterruptedException {
+        Files.createDirectories(testFile("sub"));
+        Files.createDirectories(testFile("sub-x"));
+        createTestFile("sub/a.txt", "first");
+        createTestFile("sub-x/b.txt", "second");
+        var events = new ConcurrentLinkedDeque<FileChangeEvent>();
+        var thread = eventWatcher(events);
+        thread.start();
+        Awaitility.await().atMost(Duration.ofSeconds(2)).untilAsserted(() -> Assertions.assertTrue(events.contains(event(testFileString("sub-x/b.txt"), ChangeType.CREATE))));
+        Awaitility.await().atMost(Duration.ofSeconds(2)).untilAsserted(() -> Assertions.assertTrue(events.contains(event(testFileString("sub/a.txt"), ChangeType.CREATE))));
+
+        var outside = Files.createTempDirectory("moved");
+        Files.move(testFile("sub"), outside.resolve("sub"));
+        Awaitility.await().atMost(Duration.ofSeconds(2)).untilAsserted(() -> Assertions.assertTrue(events.contains(event(testFileString("sub/a.txt"), ChangeType.DELETE))));
+        Thread.sleep(200);
+        Assertions.assertFalse(events.contains(event(testFileString("sub-x/b.txt"), ChangeType.DELETE)));
+
+        thread.interrupt();
+        thread.join(Duration.ofMillis(200));
+        Files.delete(outside.resolve("sub/a.txt"));
+        Files.delete(outside.resolve("sub"));
+        Files.delete(outside);
+    }
+
+    @Test
+    void changedIgnoreFilesApplyToTrackedFiles() throws IOException, InterruptedException {
+        Files.createDirectories(testFile("sub"));
+        Files.writeString(testFile(".gitignore"), "*.log\n");
+        //distinct contents, otherwise a deletion and a creation are paired into a rename
+        createTestFile("a.txt", "first");
+        createTestFile("b.log", "second");
+        createTestFile("sub/c.txt", "third");
+
+        var events = new ConcurrentLinkedDeque<FileChangeEvent>();
+        var config = WatcherConfig.defaults().withWatchMode(WatchMode.EVENTS)
+                .withPathFilter(new PathFilter(List.of(), List.of(), true));
+        var thread = new Thread(new WatcherTask(List.of(TEST_DIRECTORY_PATH.toString()), (Consumer<FileChangeEvent>) events::add, config));
+        thread.start();
+        Awaitility.await().atMost(Duration.ofSeconds(2)).untilAsserted(()-> Assertions.assertTrue(events.contains(event(testFileString("sub/c.txt"), ChangeType.CREATE))));
+        Assertions.assertFalse(events.contains(event(testFileString("b.log"), ChangeType.CREATE)));
+
+        //rewritten in place, the directory is not modified
+        Files.writeString(testFile(".gitignore"), "*.txt\n", StandardOpenOption.TRUNCATE_EXISTING);
+
+        Awaitility.await().atMost(Duration.ofSeconds(5)).untilAsserted(()-> Assertions.assertTrue(events.contains(event(testFileString("b.log"), ChangeType.CREATE))));
+        Awaitility.await().atMost(Duration.ofSeconds(5)).untilAsserted(()-> Assertions.assertTrue(events.contains(event(testFileString("a.txt"), ChangeType.DELETE))));
+        Awaitility.await().atMost(Duration.ofSeconds(5)).untilAsserted(()-> Assertions.assertTrue(events.contains(event(testFileString("sub/c.txt"), ChangeType.DELETE))));
+
+        thread.interrupt();
+        thread.join(Duration.ofMillis(200));
+    }
+
+    private static Thread eventWatcher(ConcurrentLinkedDeque<FileChangeEvent> events) {
+        var config = WatcherConfig.defaults().withWatchMode(WatchMode.EVENTS);
+        var thread = new Thread(new WatcherTask(List.of(TEST_DIRECTORY_PATH.toString()), events::add, config));
+        thread.setName("Event watcher test trd");
+        return thread;
+    }
+}
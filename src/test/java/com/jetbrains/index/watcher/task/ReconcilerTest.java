@@ -0,0 +1,81 @@
+package com.jetbrains.index.watcher.task;
+
+import com.jetbrains.index.BaseTemporaryDirectoryTest;
+import com.jetbrains.index.watcher.ChangeType;
+import com.jetbrains.index.watcher.filter.PathFilter;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class ReconcilerTest extends BaseTemporaryDirectoryTest {
+
+    @Test
+    void scanStartsOnlyAfterInterval() throws IOException {
+        createTestFile("test1.txt", "content");
+        List<File> inspected = new ArrayList<>();
+        var reconciler = reconciler(Duration.ofMinutes(1), 1000, inspected, new HashSet<>());
+        var start = Instant.now();
+
+        reconciler.tick(start);
+        reconciler.tick(start.plusSeconds(30));
+        Assertions.assertTrue(inspected.isEmpty());
+
+        reconciler.tick(start.plusSeconds(61));
+        Assertions.assertEquals(List.of(testFile("test1.txt").toAbsolutePath().toFile()), inspected);
+    }
+
+    @Test
+    void scanIsSpreadByRate() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            createTestFile("test" + i + ".txt", "content");
+        }
+        List<File> inspected = new ArrayList<>();
+        var reconciler = reconciler(Duration.ZERO, 4, inspected, new HashSet<>());
+        var start = Instant.now();
+
+        reconciler.tick(start);
+        //the first path is the root directory itself
+        reconciler.tick(start.plusSeconds(1));
+        Assertions.assertEquals(3, inspected.size());
+        //budget does not accumulate beyond one second
+        reconciler.tick(start.plusSeconds(10));
+        Assertions.assertEquals(7, inspected.size());
+        reconciler.tick(start.plusSeconds(11));
+        Assertions.assertEquals(10, inspected.size());
+    }
+
+    @Test
+    void driftIsCounted() throws IOException {
+        createTestFile("test1.txt", "content");
+        var missing = testFile("missing.txt").toAbsolutePath().toFile();
+        Set<File> tracked = new HashSet<>(Set.of(missing));
+        var reconciler = reconciler(Duration.ZERO, 1000, new ArrayList<>(), tracked);
+        var start = Instant.now();
+
+        reconciler.tick(start);
+        reconciler.tick(start.plusSeconds(1));
+
+        //test1.txt was reported as created and missing.txt as deleted
+        Assertions.assertEquals(2, reconciler.totalDrift());
+        Assertions.assertFalse(tracked.contains(missing));
+    }
+
+    private static Reconciler reconciler(Duration interval, int rate, List<File> inspected, Set<File> tracked) {
+        var roots = List.of(TEST_DIRECTORY_PATH.toAbsolutePath());
+        return new Reconciler(roots, new TraversalFilter(roots, PathFilter.acceptAll()), interval, rate,
+                file -> {
+                    inspected.add(file);
+                    return tracked.add(file) ? ChangeType.CREATE : null;
+                },
+                () -> tracked,
+                file -> !file.exists() && tracked.remove(file));
+    }
+}
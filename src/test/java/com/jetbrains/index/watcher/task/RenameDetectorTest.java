@@ -0,0 +1,53 @@
+package com.jetbrains.index.watcher.task;
+
+import com.jetbrains.index.watcher.ChangeType;
+import com.jetbrains.index.watcher.DefaultFileEvent;
+import com.jetbrains.index.watcher.FileChangeEvent;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class RenameDetectorTest {
+    private static final byte[] CONTENT = {1, 2, 3};
+    private static final byte[] OTHER_CONTENT = {4, 5, 6};
+
+    @Test
+    void deletionAndCreationOfSameContentBecomeRename() {
+        var events = RenameDetector.detect(List.of(
+                new DefaultFileEvent("new/a.txt", ChangeType.CREATE, CONTENT),
+                new DefaultFileEvent("b.txt", ChangeType.CREATE, OTHER_CONTENT),
+                new DefaultFileEvent("old/a.txt", ChangeType.DELETE, CONTENT)));
+
+        Assertions.assertEquals(List.of(
+                DefaultFileEvent.rename("old/a.txt", "new/a.txt", CONTENT),
+                new DefaultFileEvent("b.txt", ChangeType.CREATE)), events);
+    }
+
+    @Test
+    void copiesArePairedInOrder() {
+        var events = RenameDetector.detect(List.of(
+                new DefaultFileEvent("old/a.txt", ChangeType.DELETE, CONTENT),
+                new DefaultFileEvent("old/b.txt", ChangeType.DELETE, CONTENT),
+                new DefaultFileEvent("new/a.txt", ChangeType.CREATE, CONTENT),
+                new DefaultFileEvent("new/b.txt", ChangeType.CREATE, CONTENT),
+                new DefaultFileEvent("new/c.txt", ChangeType.CREATE, CONTENT)));
+
+        Assertions.assertEquals(List.of(
+                DefaultFileEvent.rename("old/a.txt", "new/a.txt", CONTENT),
+                DefaultFileEvent.rename("old/b.txt", "new/b.txt", CONTENT),
+                new DefaultFileEvent("new/c.txt", ChangeType.CREATE)), events);
+    }
+
+    @Test
+    void pathsWithOtherEventsOrUnknownContentAreNotPaired() {
+        List<FileChangeEvent> batch = List.of(
+                new DefaultFileEvent("a.txt", ChangeType.DELETE, CONTENT),
+                new DefaultFileEvent("a.txt", ChangeType.CREATE, OTHER_CONTENT),
+                new DefaultFileEvent("b.txt", ChangeType.CREATE, CONTENT),
+                new DefaultFileEvent("c.txt", ChangeType.DELETE),
+                new DefaultFileEvent("d.txt", ChangeType.CREATE));
+
+        Assertions.assertEquals(batch, RenameDetector.detect(batch));
+    }
+}
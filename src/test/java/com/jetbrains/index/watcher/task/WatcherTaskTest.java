@@ -2,14 +2,22 @@ package com.jetbrains.index.watcher.task;
 
 import com.jetbrains.index.BaseTemporaryDirectoryTest;
 import com.jetbrains.index.watcher.ChangeType;
+import com.jetbrains.index.watcher.DefaultFileEvent;
+import com.jetbrains.index.watcher.FileChangeEvent;
+import com.jetbrains.index.watcher.WatchMode;
+import com.jetbrains.index.watcher.WatcherConfig;
+import com.jetbrains.index.watcher.filter.PathFilter;
 import org.awaitility.Awaitility;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.util.List;
 import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.function.Consumer;
 
 public class WatcherTaskTest extends BaseTemporaryDirectoryTest {
 
@@ -100,4 +108,71 @@ public class WatcherTaskTest extends BaseTemporaryDirectoryTest {
         thread.join(Duration.ofMillis(200));
     }
 
+    @Test
+    void watcherReportsAppendsToLargeFiles() throws IOException, InterruptedException {
+        var line = "request served\n";
+        Files.writeString(testFile("app.log"), line.repeat(10_000));
+        long size = Files.size(testFile("app.log"));
+
+        var events = new ConcurrentLinkedDeque<>();
+        var thread = oneDirectoryWatcher(TEST_DIRECTORY_PATH, events::add);
+        thread.start();
+        Awaitility.await().atMost(Duration.ofSeconds(2)).untilAsserted(()-> Assertions.assertTrue(events.contains(event(testFileString("app.log"), ChangeType.CREATE))));
+
+        Files.writeString(testFile("app.log"), line, StandardOpenOption.APPEND);
+
+        Awaitility.await().atMost(Duration.ofSeconds(2)).untilAsserted(()-> Assertions.assertTrue(events.contains(DefaultFileEvent.append(testFileString("app.log"), size, null))));
+        Assertions.assertEquals(2, events.size());
+
+        thread.interrupt();
+        thread.join(Duration.ofMillis(200));
+    }
+
+    @Test
+    void watcherIgnoresBinaryFiles() throws IOException, InterruptedException {
+        var events = new ConcurrentLinkedDeque<>();
+        var thread = oneDirectoryWatcher(TEST_DIRECTORY_PATH, events::add);
+        thread.start();
+        Thread.sleep(200);
+
+        Files.write(testFile("image.png"), new byte[]{1, 2, 3});
+        Files.write(testFile("dump"), new byte[]{'a', 0, 'b'});
+        createTestFile("test1.txt");
+
+        Awaitility.await().atMost(Duration.ofSeconds(2)).untilAsserted(()-> Assertions.assertTrue(events.contains(event(testFileString("test1.txt"), ChangeType.CREATE))));
+        Thread.sleep(200);
+        Assertions.assertEquals(1, events.size());
+
+        thread.interrupt();
+        thread.join(Duration.ofMillis(200));
+    }
+
+    @Test
+    void changedIgnoreFilesApplyToTrackedFiles() throws IOException, InterruptedException {
+        Files.createDirectories(testFile("sub"));
+        Files.writeString(testFile(".gitignore"), "*.log\n");
+        //distinct contents, otherwise a deletion and a creation are paired into a rename
+        createTestFile("a.txt", "first");
+        createTestFile("b.log", "second");
+        createTestFile("sub/c.txt", "third");
+
+        var events = new ConcurrentLinkedDeque<FileChangeEvent>();
+        var config = WatcherConfig.defaults().withWatchMode(WatchMode.POLLING)
+                .withPathFilter(new PathFilter(List.of(), List.of(), true));
+        var thread = new Thread(new WatcherTask(List.of(TEST_DIRECTORY_PATH.toString()), (Consumer<FileChangeEvent>) events::add, config));
+        thread.start();
+        Awaitility.await().atMost(Duration.ofSeconds(2)).untilAsserted(()-> Assertions.assertTrue(events.contains(event(testFileString("sub/c.txt"), ChangeType.CREATE))));
+        Assertions.assertFalse(events.contains(event(testFileString("b.log"), ChangeType.CREATE)));
+
+        //rewritten in place, the directory is not modified
+        Files.writeString(testFile(".gitignore"), "*.txt\n", StandardOpenOption.TRUNCATE_EXISTING);
+
+        Awaitility.await().atMost(Duration.ofSeconds(5)).untilAsserted(()-> Assertions.assertTrue(events.contains(event(testFileString("b.log"), ChangeType.CREATE))));
+        Awaitility.await().atMost(Duration.ofSeconds(5)).untilAsserted(()-> Assertions.assertTrue(events.contains(event(testFileString("a.txt"), ChangeType.DELETE))));
+        Awaitility.await().atMost(Duration.ofSeconds(5)).untilAsserted(()-> Assertions.assertTrue(events.contains(event(testFileString("sub/c.txt"), ChangeType.DELETE))));
+
+        thread.interrupt();
+        thread.join(Duration.ofMillis(200));
+    }
+
 }